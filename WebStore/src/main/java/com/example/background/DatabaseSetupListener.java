@@ -1,8 +1,14 @@
 package com.example.background;
 
+import com.example.db.ConnectionPool;
+import com.example.db.Database;
+import com.example.db.PoolConfig;
+import com.example.model.UserCache;
+import com.example.model.UserDAO;
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.Statement;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 import javax.servlet.annotation.WebListener;
@@ -12,29 +18,63 @@ public class DatabaseSetupListener implements ServletContextListener {
 
     @Override
     public void contextInitialized(ServletContextEvent sce) {
+        ServletContext context = sce.getServletContext();
         try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            Connection conn = DriverManager.getConnection("jdbc:mysql://localhost:3306/test", "root", "");
-            Statement stmt = conn.createStatement();
-            String sql = "CREATE TABLE IF NOT EXISTS users (" +
-                         "id INT AUTO_INCREMENT PRIMARY KEY, " +
-                         "username VARCHAR(255) NOT NULL UNIQUE, " +
-                         "password VARCHAR(255) NOT NULL, " +
-                         "name VARCHAR(255), " +
-                         "email VARCHAR(255), " +
-                         "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                         "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP)";
-            stmt.executeUpdate(sql);
-
-            sql = "CREATE TABLE IF NOT EXISTS resumes (" +
-                  "id INT AUTO_INCREMENT PRIMARY KEY, " +
-                  "user_id INT, " +
-                  "resume_text TEXT, " +
-                  "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                  "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE)";
-            stmt.executeUpdate(sql);
-
-            conn.close();
+            ConnectionPool pool = Database.start(readPoolConfig(context));
+            context.setAttribute("connectionPool", pool);
+
+            UserCache userCache = new UserCache(
+                    intParam(context, "userCache.maxEntries", 10000),
+                    intParam(context, "userCache.ttlMillis", 60000),
+                    intParam(context, "userCache.negativeTtlMillis", 5000));
+            UserDAO.setCache(userCache);
+            context.setAttribute("userCache", userCache);
+
+            try (Connection conn = pool.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                String sql = "CREATE TABLE IF NOT EXISTS users (" +
+                             "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                             "username VARCHAR(255) NOT NULL UNIQUE, " +
+                             "password VARCHAR(255) NOT NULL, " +
+                             "name VARCHAR(255), " +
+                             "email VARCHAR(255), " +
+                             "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                             "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP)";
+                stmt.executeUpdate(sql);
+
+                sql = "CREATE TABLE IF NOT EXISTS resumes (" +
+                      "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                      "user_id INT, " +
+                      "resume_text TEXT, " +
+                      "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                      "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE)";
+                stmt.executeUpdate(sql);
+
+                // StudentDAO pages through this by id, so the primary key is the only index it needs
+                sql = "CREATE TABLE IF NOT EXISTS students (" +
+                      "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                      "name VARCHAR(255) NOT NULL, " +
+                      "email VARCHAR(255))";
+                stmt.executeUpdate(sql);
+                try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM students")) {
+                    if (rs.next() && rs.getInt(1) == 0) {
+                        // the students the list used to hard-code, so a fresh install still shows something
+                        stmt.executeUpdate("INSERT INTO students (name, email) VALUES " +
+                                "('Alice', 'alice@example.com'), " +
+                                "('Bob', 'bob@example.com'), " +
+                                "('Charlie', 'charlie@example.com')");
+                    }
+                }
+            }
+
+            // Started after the pool and stopped before it, so queued resumes can still be flushed
+            ResumeIngestionService ingestion = new ResumeIngestionService(
+                    intParam(context, "resumeIngest.queueCapacity", 1000),
+                    intParam(context, "resumeIngest.batchSize", 50),
+                    intParam(context, "resumeIngest.maxStatementBytes", 1024 * 1024),
+                    intParam(context, "resumeIngest.flushIntervalMillis", 200),
+                    intParam(context, "resumeIngest.workers", 2));
+            context.setAttribute("resumeIngestion", ingestion);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -42,6 +82,37 @@ public class DatabaseSetupListener implements ServletContextListener {
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
-        // No cleanup needed
+        ServletContext context = sce.getServletContext();
+        ResumeIngestionService ingestion = (ResumeIngestionService) context.getAttribute("resumeIngestion");
+        if (ingestion != null) {
+            context.removeAttribute("resumeIngestion");
+            ingestion.shutdown(10000);
+        }
+        context.removeAttribute("connectionPool");
+        context.removeAttribute("userCache");
+        Database.shutdown();
+    }
+
+    // Pool settings come from <context-param> entries in web.xml; anything missing keeps its default
+    private PoolConfig readPoolConfig(ServletContext context) {
+        PoolConfig config = new PoolConfig();
+        String value;
+        if ((value = context.getInitParameter("db.url")) != null) config.setUrl(value);
+        if ((value = context.getInitParameter("db.username")) != null) config.setUsername(value);
+        if ((value = context.getInitParameter("db.password")) != null) config.setPassword(value);
+        if ((value = context.getInitParameter("db.driver")) != null) config.setDriverClassName(value);
+        if ((value = context.getInitParameter("db.pool.minIdle")) != null) config.setMinIdle(Integer.parseInt(value.trim()));
+        if ((value = context.getInitParameter("db.pool.maxSize")) != null) config.setMaxSize(Integer.parseInt(value.trim()));
+        if ((value = context.getInitParameter("db.pool.borrowTimeoutMillis")) != null) config.setBorrowTimeoutMillis(Long.parseLong(value.trim()));
+        if ((value = context.getInitParameter("db.pool.idleTimeoutMillis")) != null) config.setIdleTimeoutMillis(Long.parseLong(value.trim()));
+        if ((value = context.getInitParameter("db.pool.evictionIntervalMillis")) != null) config.setEvictionIntervalMillis(Long.parseLong(value.trim()));
+        if ((value = context.getInitParameter("db.pool.validationIntervalMillis")) != null) config.setValidationIntervalMillis(Long.parseLong(value.trim()));
+        if ((value = context.getInitParameter("db.pool.statementCacheSize")) != null) config.setStatementCacheSize(Integer.parseInt(value.trim()));
+        return config;
+    }
+
+    private int intParam(ServletContext context, String name, int defaultValue) {
+        String value = context.getInitParameter(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
     }
 }
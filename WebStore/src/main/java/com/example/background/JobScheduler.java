@@ -0,0 +1,230 @@
+package com.example.background;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the webapp's periodic background jobs on one shared, fixed-size pool,
+ * in place of a java.util.Timer per job.
+ *
+ * Unlike Timer, a job that throws is logged and simply runs again next time.
+ * Fixed-rate jobs are scheduled against their original start time, so they
+ * don't drift; if the pool falls behind, the missed slots are skipped and
+ * counted rather than run back to back. A job never overlaps itself: a run
+ * that comes due while the previous one is still going is skipped and
+ * counted as missed. Optional jitter adds a random 0..jitter delay to each
+ * run so jobs registered together don't all fire in the same instant.
+ */
+public class JobScheduler {
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public JobScheduler(int poolSize) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ScheduledThreadPoolExecutor(poolSize, r -> {
+            Thread t = new Thread(r, "job-scheduler-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /** Runs {@code task} every {@code periodMillis}, measured from when the job started. */
+    public Job scheduleAtFixedRate(String name, Runnable task, long initialDelayMillis, long periodMillis, long jitterMillis) {
+        return register(new Job(name, task, true, periodMillis, jitterMillis), initialDelayMillis);
+    }
+
+    /** Runs {@code task} again {@code delayMillis} after each run finishes. */
+    public Job scheduleWithFixedDelay(String name, Runnable task, long initialDelayMillis, long delayMillis, long jitterMillis) {
+        return register(new Job(name, task, false, delayMillis, jitterMillis), initialDelayMillis);
+    }
+
+    private Job register(Job job, long initialDelayMillis) {
+        if (jobs.putIfAbsent(job.name, job) != null) {
+            throw new IllegalArgumentException("A job named " + job.name + " is already scheduled");
+        }
+        job.nextNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(initialDelayMillis);
+        job.scheduleAt(job.nextNanos + job.jitter());
+        return job;
+    }
+
+    public Collection<Job> getJobs() {
+        return Collections.unmodifiableCollection(jobs.values());
+    }
+
+    public Job getJob(String name) {
+        return jobs.get(name);
+    }
+
+    /** Cancels every job and waits up to {@code timeoutMillis} for running ones to finish. */
+    public void shutdown(long timeoutMillis) {
+        for (Job job : jobs.values()) {
+            job.cancel();
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public class Job implements Runnable {
+        private final String name;
+        private final Runnable task;
+        private final boolean fixedRate;
+        private final long periodNanos;
+        private final long jitterNanos;
+        private final AtomicBoolean running = new AtomicBoolean();
+        private volatile boolean cancelled;
+        private volatile ScheduledFuture<?> future;
+        private long nextNanos; // only touched by the thread currently running this job's trigger
+
+        private final AtomicLong runs = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong missed = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private volatile long lastNanos;
+        private volatile long lastFinishedAtMillis;
+
+        Job(String name, Runnable task, boolean fixedRate, long periodMillis, long jitterMillis) {
+            if (periodMillis <= 0) {
+                throw new IllegalArgumentException("period must be positive");
+            }
+            this.name = name;
+            this.task = task;
+            this.fixedRate = fixedRate;
+            this.periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+            this.jitterNanos = TimeUnit.MILLISECONDS.toNanos(jitterMillis);
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            if (fixedRate) {
+                // book the next slot before running, so a slow run can't push the schedule back
+                long now = System.nanoTime();
+                nextNanos += periodNanos;
+                if (now - nextNanos >= 0) {
+                    long behind = (now - nextNanos) / periodNanos + 1;
+                    missed.addAndGet(behind);
+                    nextNanos += behind * periodNanos;
+                }
+                scheduleAt(nextNanos + jitter());
+            }
+
+            if (!running.compareAndSet(false, true)) {
+                missed.incrementAndGet(); // previous run is still going
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                failures.incrementAndGet();
+                System.err.println("Job " + name + " failed: " + t);
+                t.printStackTrace();
+            } finally {
+                record(System.nanoTime() - start);
+                running.set(false);
+            }
+
+            if (!fixedRate) {
+                scheduleAt(System.nanoTime() + periodNanos + jitter());
+            }
+        }
+
+        private void scheduleAt(long atNanos) {
+            if (cancelled || executor.isShutdown()) {
+                return;
+            }
+            future = executor.schedule(this, Math.max(0, atNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+
+        private long jitter() {
+            return jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos + 1) : 0;
+        }
+
+        private void record(long nanos) {
+            runs.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            lastNanos = nanos;
+            lastFinishedAtMillis = System.currentTimeMillis();
+            long max;
+            while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+                // retry until we win or someone recorded a longer run
+            }
+        }
+
+        public void cancel() {
+            cancelled = true;
+            jobs.remove(name, this);
+            ScheduledFuture<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isFixedRate() {
+            return fixedRate;
+        }
+
+        public long getPeriodMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(periodNanos);
+        }
+
+        public boolean isRunning() {
+            return running.get();
+        }
+
+        public long getRunCount() {
+            return runs.get();
+        }
+
+        public long getFailureCount() {
+            return failures.get();
+        }
+
+        public long getMissedCount() {
+            return missed.get();
+        }
+
+        public double getLastDurationMillis() {
+            return lastNanos / 1_000_000.0;
+        }
+
+        public double getAverageDurationMillis() {
+            long count = runs.get();
+            return count == 0 ? 0.0 : totalNanos.get() / (count * 1_000_000.0);
+        }
+
+        public double getMaxDurationMillis() {
+            return maxNanos.get() / 1_000_000.0;
+        }
+
+        public long getLastFinishedAtMillis() {
+            return lastFinishedAtMillis;
+        }
+    }
+}
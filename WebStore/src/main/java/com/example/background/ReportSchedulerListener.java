@@ -1,6 +1,7 @@
 package com.example.background;
 
-import java.util.Timer;
+import java.nio.file.Paths;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 import javax.servlet.annotation.WebListener;
@@ -8,18 +9,42 @@ import javax.servlet.annotation.WebListener;
 @WebListener
 public class ReportSchedulerListener implements ServletContextListener {
 
-    private Timer timer;
+    private JobScheduler scheduler;
+    private ReportStore reports;
 
     @Override
     public void contextInitialized(ServletContextEvent sce) {
-        timer = new Timer();
-        timer.schedule(new ReportGeneratorTask(sce.getServletContext()), 0, 10000); // Run every 10 seconds
+        ServletContext context = sce.getServletContext();
+        String spillFile = context.getInitParameter("reports.spillFile");
+        reports = new ReportStore(intParam(context, "reports.capacity", 100),
+                spillFile == null || spillFile.trim().isEmpty() ? null : Paths.get(spillFile.trim()),
+                intParam(context, "reports.spillMaxBytes", 1024 * 1024),
+                intParam(context, "reports.spillMaxFiles", 5));
+        context.setAttribute("reports", reports);
+
+        scheduler = new JobScheduler(intParam(context, "scheduler.poolSize", 2));
+        scheduler.scheduleAtFixedRate("report-generator", new ReportGeneratorTask(reports),
+                0,
+                intParam(context, "reports.periodMillis", 10000),
+                intParam(context, "reports.jitterMillis", 0));
+        context.setAttribute("jobScheduler", scheduler);
     }
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
-        if (timer != null) {
-            timer.cancel();
+        ServletContext context = sce.getServletContext();
+        context.removeAttribute("jobScheduler");
+        if (scheduler != null) {
+            scheduler.shutdown(intParam(context, "scheduler.shutdownTimeoutMillis", 5000));
+        }
+        context.removeAttribute("reports");
+        if (reports != null) {
+            reports.close();
         }
     }
+
+    private int intParam(ServletContext context, String name, int defaultValue) {
+        String value = context.getInitParameter(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
 }
@@ -0,0 +1,246 @@
+package com.example.background;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Holds the most recent reports in a fixed-size ring buffer. Replaces the
+ * ArrayList that used to live under the "reports" context attribute and grew
+ * forever.
+ *
+ * Appends are serialized among writers, but readers never lock: they read the
+ * published sequence number and then the slots behind it, skipping any slot
+ * that a writer has already reused. A page render therefore never blocks the
+ * report job and never sees a ConcurrentModificationException.
+ *
+ * If a spill file is configured, reports pushed out of the ring are appended
+ * to it, so older history stays on disk instead of on the heap. The file is
+ * rolled to .1, .2, ... once it reaches {@code spillMaxBytes}.
+ *
+ * Every report has a sequence number, so readers can page through the ring
+ * or ask for just what they haven't seen, and listeners are told about each
+ * new report as it is appended.
+ */
+public class ReportStore implements AutoCloseable {
+
+    public static final class Report {
+        private final long sequence;
+        private final long createdAtMillis;
+        private final String text;
+
+        Report(long sequence, long createdAtMillis, String text) {
+            this.sequence = sequence;
+            this.createdAtMillis = createdAtMillis;
+            this.text = text;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getCreatedAtMillis() {
+            return createdAtMillis;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    private final AtomicReferenceArray<Report> slots;
+    private final int capacity;
+    private volatile long published; // sequence the next report will get; reports 0..published-1 exist
+
+    private final Path spillFile;
+    private final long spillMaxBytes;
+    private final int spillMaxFiles;
+    private Writer spillWriter; // guarded by this
+    private long spillBytes; // guarded by this
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong spillFailures = new AtomicLong();
+    private final List<Consumer<Report>> listeners = new CopyOnWriteArrayList<>();
+
+    public ReportStore(int capacity) {
+        this(capacity, null, 0, 0);
+    }
+
+    /** {@code spillFile} may be null to simply drop reports that fall out of the ring. */
+    public ReportStore(int capacity, Path spillFile, long spillMaxBytes, int spillMaxFiles) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.spillFile = spillFile;
+        this.spillMaxBytes = spillMaxBytes;
+        this.spillMaxFiles = Math.max(spillMaxFiles, 1);
+    }
+
+    public Report append(String text) {
+        Report report;
+        synchronized (this) {
+            long sequence = published;
+            int slot = (int) (sequence % capacity);
+            report = new Report(sequence, System.currentTimeMillis(), text);
+            Report evicted = slots.getAndSet(slot, report);
+            published = sequence + 1;
+            if (evicted != null && spillFile != null) {
+                spill(evicted);
+            }
+        }
+        for (Consumer<Report> listener : listeners) {
+            try {
+                listener.accept(report);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        return report;
+    }
+
+    /** Called on the appending thread after each new report; keep it short. */
+    public void addListener(Consumer<Report> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Report> listener) {
+        listeners.remove(listener);
+    }
+
+    /** The reports still held in memory, oldest first. */
+    public List<Report> getRecent() {
+        long end = published;
+        return collect(Math.max(0, end - capacity), end);
+    }
+
+    /** Up to {@code limit} reports with a sequence of at least {@code sequence}, oldest first. */
+    public List<Report> getSince(long sequence, int limit) {
+        long end = published;
+        long start = Math.max(sequence, Math.max(0, end - capacity));
+        return collect(start, Math.min(end, start + limit));
+    }
+
+    /** Up to {@code limit} reports with a sequence below {@code sequence}, oldest first. */
+    public List<Report> getBefore(long sequence, int limit) {
+        long published = this.published;
+        long end = Math.min(sequence, published);
+        long start = Math.max(end - limit, Math.max(0, published - capacity));
+        return collect(start, end);
+    }
+
+    private List<Report> collect(long start, long end) {
+        if (end <= start) {
+            return Collections.emptyList();
+        }
+        List<Report> result = new ArrayList<>((int) (end - start));
+        for (long seq = start; seq < end; seq++) {
+            Report report = slots.get((int) (seq % capacity));
+            // a writer may have lapped us and reused the slot; that report is gone from memory
+            if (report != null && report.sequence == seq) {
+                result.add(report);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /** Lowest sequence that may still be in memory. */
+    public long getOldestSequence() {
+        return Math.max(0, published - capacity);
+    }
+
+    /** Sequence number the next report will get (equivalently, how many have ever been appended). */
+    public long getNextSequence() {
+        return published;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getSpilledCount() {
+        return spilled.get();
+    }
+
+    public long getSpillFailureCount() {
+        return spillFailures.get();
+    }
+
+    // called with the lock held
+    private void spill(Report report) {
+        String line = report.sequence + "\t" + report.createdAtMillis + "\t"
+                + report.text.replace('\n', ' ') + System.lineSeparator();
+        try {
+            if (spillWriter == null) {
+                openSpill();
+            }
+            spillWriter.write(line);
+            spillWriter.flush();
+            spillBytes += line.getBytes(StandardCharsets.UTF_8).length;
+            spilled.incrementAndGet();
+            if (spillMaxBytes > 0 && spillBytes >= spillMaxBytes) {
+                rollSpill();
+            }
+        } catch (IOException e) {
+            spillFailures.incrementAndGet();
+            e.printStackTrace();
+            closeSpill();
+        }
+    }
+
+    private void openSpill() throws IOException {
+        if (spillFile.getParent() != null) {
+            Files.createDirectories(spillFile.getParent());
+        }
+        spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        spillBytes = Files.size(spillFile);
+    }
+
+    private void rollSpill() throws IOException {
+        closeSpill();
+        for (int i = spillMaxFiles - 1; i >= 1; i--) {
+            Path older = rolled(i);
+            if (Files.exists(older)) {
+                Files.move(older, rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(spillFile, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path rolled(int index) {
+        return spillFile.resolveSibling(spillFile.getFileName() + "." + index);
+    }
+
+    private void closeSpill() {
+        if (spillWriter != null) {
+            try {
+                spillWriter.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+            spillWriter = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closeSpill();
+    }
+}
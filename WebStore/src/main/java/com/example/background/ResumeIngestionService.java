@@ -0,0 +1,182 @@
+package com.example.background;
+
+import com.example.model.Resume;
+import com.example.model.ResumeDAO;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue between ResumeUploadServlet and the resumes table.
+ *
+ * Upload requests only {@link #offer} the parsed resume and return. Worker
+ * threads take up to {@code batchSize} resumes at a time, waiting at most
+ * {@code flushIntervalMillis} for a batch to fill, and write each batch with
+ * {@link ResumeDAO#saveResumes}, in statements of at most
+ * {@code maxStatementBytes}. A row the database refuses is dropped and
+ * counted as failed without taking the rest of its batch with it. When the
+ * queue is full, offer returns false and the servlet answers 503.
+ */
+public class ResumeIngestionService {
+
+    private final BlockingQueue<Resume> queue;
+    private final int batchSize;
+    private final int maxStatementBytes;
+    private final long flushIntervalNanos;
+    private final ExecutorService workers;
+    private final ResumeDAO resumeDAO = new ResumeDAO();
+    private volatile boolean running = true;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong failedRows = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushNanosTotal = new AtomicLong();
+    private final AtomicLong flushNanosMax = new AtomicLong();
+
+    public ResumeIngestionService(int queueCapacity, int batchSize, int maxStatementBytes, long flushIntervalMillis,
+                                  int workerCount) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.maxStatementBytes = maxStatementBytes;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, r -> {
+            Thread t = new Thread(r, "resume-ingest-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::drainLoop);
+        }
+    }
+
+    /** Queues a resume for insertion. Returns false if the queue is full or shutting down. */
+    public boolean offer(Resume resume) {
+        if (running && queue.offer(resume)) {
+            accepted.incrementAndGet();
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /** Stops accepting work, flushes what is already queued and waits for the workers. */
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                System.err.println("Resume ingestion did not drain in time; " + queue.size() + " resumes dropped");
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLoop() {
+        List<Resume> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Resume first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Top the batch up from the queue until it is full or the flush interval has passed
+    private void fillBatch(List<Resume> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                return;
+            }
+            Resume next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<Resume> batch) {
+        long start = System.nanoTime();
+        try {
+            List<Resume> rejected = resumeDAO.saveResumes(batch, batchSize, maxStatementBytes);
+            flushedRows.addAndGet(batch.size() - rejected.size());
+            failedRows.addAndGet(rejected.size());
+        } catch (Exception e) {
+            failedRows.addAndGet(batch.size());
+            System.err.println("Failed to insert " + batch.size() + " resumes: " + e.getMessage());
+            e.printStackTrace();
+        }
+        long nanos = System.nanoTime() - start;
+        flushes.incrementAndGet();
+        flushNanosTotal.addAndGet(nanos);
+        long max;
+        while (nanos > (max = flushNanosMax.get()) && !flushNanosMax.compareAndSet(max, nanos)) {
+            // retry until we win or someone recorded a slower flush
+        }
+    }
+
+    // ---- metrics ----
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    public long getAcceptedCount() {
+        return accepted.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getFlushedRowCount() {
+        return flushedRows.get();
+    }
+
+    public long getFailedRowCount() {
+        return failedRows.get();
+    }
+
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    public double getAverageFlushMillis() {
+        long count = flushes.get();
+        return count == 0 ? 0.0 : flushNanosTotal.get() / (count * 1_000_000.0);
+    }
+
+    public double getMaxFlushMillis() {
+        return flushNanosMax.get() / 1_000_000.0;
+    }
+}
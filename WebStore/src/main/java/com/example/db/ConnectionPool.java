@@ -0,0 +1,392 @@
+package com.example.db;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * A small bounded JDBC connection pool.
+ *
+ * Callers borrow with {@link #getConnection()} and give the connection back by
+ * closing it, so existing try-with-resources code keeps working unchanged.
+ * Idle connections are reused most-recently-used first, which lets the
+ * background evictor trim the ones that have gone cold.
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+
+    private final PoolConfig config;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final ScheduledExecutorService evictor;
+
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong borrowNanosTotal = new AtomicLong();
+    private final AtomicLong borrowNanosMax = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final StatementCache.Stats statementStats = new StatementCache.Stats();
+
+    private volatile boolean closed;
+    private PrintWriter logWriter;
+
+    public ConnectionPool(PoolConfig config) throws SQLException {
+        if (config.getMaxSize() < 1 || config.getMinIdle() > config.getMaxSize()) {
+            throw new IllegalArgumentException("Pool needs 0 <= minIdle <= maxSize and maxSize >= 1");
+        }
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxSize(), true);
+
+        try {
+            Class.forName(config.getDriverClassName());
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("Driver not found: " + config.getDriverClassName(), e);
+        }
+
+        fillToMinIdle();
+
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        evictor.scheduleWithFixedDelay(this::evictIdle,
+                config.getEvictionIntervalMillis(), config.getEvictionIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+
+        waiting.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(config.getBorrowTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        if (!acquired) {
+            timeoutCount.incrementAndGet();
+            throw new SQLTimeoutException("Timed out after " + config.getBorrowTimeoutMillis()
+                    + " ms waiting for a connection (active=" + active.get() + ", max=" + config.getMaxSize() + ")");
+        }
+
+        PooledConnection pc;
+        try {
+            pc = takeValidConnection();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        active.incrementAndGet();
+        recordBorrow(System.nanoTime() - start);
+        return pc.lease();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections all use the configured credentials");
+    }
+
+    private PooledConnection takeValidConnection() throws SQLException {
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pc.lastUsedNanos);
+            if (idleMillis < config.getValidationIntervalMillis() || isUsable(pc)) {
+                return pc;
+            }
+            discard(pc);
+        }
+        return createPhysical();
+    }
+
+    private boolean isUsable(PooledConnection pc) {
+        try {
+            return pc.physical.isValid(config.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection createPhysical() throws SQLException {
+        Connection conn = DriverManager.getConnection(config.getUrl(), config.getUsername(), config.getPassword());
+        total.incrementAndGet();
+        createdCount.incrementAndGet();
+        return new PooledConnection(conn);
+    }
+
+    // Called from the proxy when the borrower closes its connection
+    private void release(PooledConnection pc) {
+        active.decrementAndGet();
+        pc.statements.releaseAll();
+        try {
+            boolean reusable = !closed && !pc.physical.isClosed();
+            if (reusable && !pc.physical.getAutoCommit()) {
+                pc.physical.rollback();
+                pc.physical.setAutoCommit(true);
+            }
+            if (reusable) {
+                pc.physical.clearWarnings();
+                pc.lastUsedNanos = System.nanoTime();
+                idle.offerFirst(pc);
+            } else {
+                discard(pc);
+            }
+        } catch (SQLException e) {
+            discard(pc);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledConnection pc) {
+        total.decrementAndGet();
+        pc.statements.close();
+        try {
+            pc.physical.close();
+        } catch (SQLException e) {
+            // already broken, nothing else to do
+        }
+    }
+
+    private void evictIdle() {
+        try {
+            long now = System.nanoTime();
+            long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+
+            // oldest connections sit at the tail of the deque
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && total.get() > config.getMinIdle()) {
+                PooledConnection pc = it.next();
+                if (now - pc.lastUsedNanos > idleTimeoutNanos && idle.remove(pc)) {
+                    evictedCount.incrementAndGet();
+                    discard(pc);
+                }
+            }
+            fillToMinIdle();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void fillToMinIdle() {
+        while (!closed && idle.size() < config.getMinIdle() && total.get() < config.getMaxSize()) {
+            try {
+                idle.offerLast(createPhysical());
+            } catch (SQLException e) {
+                System.err.println("Connection pool could not pre-fill: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void recordBorrow(long nanos) {
+        borrowCount.incrementAndGet();
+        borrowNanosTotal.addAndGet(nanos);
+        long max;
+        while (nanos > (max = borrowNanosMax.get()) && !borrowNanosMax.compareAndSet(max, nanos)) {
+            // retry until we win or someone recorded a longer wait
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            discard(pc);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public PoolConfig getConfig() {
+        return config;
+    }
+
+    // ---- metrics ----
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getTotalCount() {
+        return total.get();
+    }
+
+    public int getWaitingCount() {
+        return waiting.get();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    public double getAverageBorrowMillis() {
+        long count = borrowCount.get();
+        return count == 0 ? 0.0 : borrowNanosTotal.get() / (count * 1_000_000.0);
+    }
+
+    public double getMaxBorrowMillis() {
+        return borrowNanosMax.get() / 1_000_000.0;
+    }
+
+    public StatementCache.Stats getStatementCacheStats() {
+        return statementStats;
+    }
+
+    // ---- DataSource boilerplate ----
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    /**
+     * A physical connection plus the bookkeeping the pool needs. Each borrow
+     * hands out a fresh proxy so a stale reference cannot close someone
+     * else's lease. Its prepared statements outlive the lease, so the next
+     * borrower running the same SQL skips the prepare.
+     */
+    private final class PooledConnection {
+        final Connection physical;
+        final StatementCache statements;
+        volatile long lastUsedNanos = System.nanoTime();
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statements = new StatementCache(physical, config.getStatementCacheSize(), statementStats);
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new LeaseHandler(this));
+        }
+    }
+
+    private final class LeaseHandler implements InvocationHandler {
+        private final PooledConnection pc;
+        private boolean returned;
+
+        LeaseHandler(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    synchronized (this) {
+                        if (!returned) {
+                            returned = true;
+                            release(pc);
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pc.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + pc.physical + "]";
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if (method.getName().equals("prepareStatement") && args.length == 1
+                    && config.getStatementCacheSize() > 0) {
+                return pc.statements.prepare((String) args[0]);
+            }
+            try {
+                return method.invoke(pc.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
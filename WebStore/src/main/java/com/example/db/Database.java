@@ -0,0 +1,49 @@
+package com.example.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Holds the webapp's shared {@link ConnectionPool}. DatabaseSetupListener
+ * starts it when the context comes up; code running outside the container
+ * (the socket demos, a main method) gets a pool with the default settings on
+ * first use.
+ */
+public final class Database {
+
+    private static volatile ConnectionPool pool;
+
+    private Database() {}
+
+    public static synchronized ConnectionPool start(PoolConfig config) throws SQLException {
+        if (pool != null) {
+            pool.close();
+        }
+        pool = new ConnectionPool(config);
+        return pool;
+    }
+
+    public static ConnectionPool getPool() throws SQLException {
+        ConnectionPool current = pool;
+        if (current == null) {
+            synchronized (Database.class) {
+                if (pool == null) {
+                    pool = new ConnectionPool(new PoolConfig());
+                }
+                current = pool;
+            }
+        }
+        return current;
+    }
+
+    public static Connection getConnection() throws SQLException {
+        return getPool().getConnection();
+    }
+
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.example.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Response wrapper for {@link CompressionFilter}. The first minBytes of the
+ * body are held back; once the body grows past that (and the type, status
+ * and headers allow it) the rest is compressed straight through to the
+ * container. A body that ends before then goes out as-is; one that is
+ * flushed before then is compressed from the flush on, since its size
+ * can't be known yet.
+ */
+final class CompressingResponse extends HoldingResponse {
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private enum State { UNDECIDED, PASSTHROUGH, COMPRESSING, FINISHED }
+
+    private final CompressionFilter filter;
+    private final boolean gzip;
+    private final byte[] pending;
+    private int pendingLength;
+    private volatile State state = State.UNDECIDED; // written under the lock
+    // An async servlet may write from its own thread while the container completes or times out
+    // the request on another, so the body and the Deflater are only touched under this lock.
+    private final Object lock = new Object();
+
+    private Deflater deflater;
+    private DeflaterOutputStream compressor;
+    private final CRC32 crc = new CRC32();
+    private long bytesIn;
+    private long bytesOut;
+    // What one call produces for the container, written in a single write at the end of the call:
+    // in non-blocking mode, a second write after the first has filled the connection is an error.
+    private byte[] staged = new byte[8192];
+    private int stagedLength;
+
+    CompressingResponse(HttpServletResponse response, CompressionFilter filter, String encoding) {
+        super(response);
+        this.filter = filter;
+        this.gzip = "gzip".equals(encoding);
+        this.pending = new byte[filter.getMinBytes()];
+    }
+
+    @Override
+    public void reset() {
+        discard();
+        declaredLength = -1;
+        super.reset();
+    }
+
+    @Override
+    public void resetBuffer() {
+        if (state == State.COMPRESSING) {
+            discard();
+        }
+        pendingLength = 0;
+        super.resetBuffer();
+    }
+
+    /** Writes out whatever is held back, ends the compressed stream and returns the Deflater. */
+    @Override
+    void finish() throws IOException {
+        if (state != State.FINISHED) {
+            // outside the lock: the writer takes its own lock before it calls into ours
+            flushWriter();
+        }
+        synchronized (lock) {
+            if (state != State.FINISHED) {
+                finishLocked();
+            }
+        }
+    }
+
+    private void finishLocked() throws IOException {
+        try {
+            if (state == State.UNDECIDED && (getStatus() == SC_NOT_MODIFIED || getStatus() == SC_NO_CONTENT)) {
+                // no body, and no Content-Length to give it
+                filter.getStats().skipped.incrementAndGet();
+                passThrough();
+            } else if (state == State.UNDECIDED) {
+                // the whole body fit under the threshold
+                filter.getStats().tooSmall.incrementAndGet();
+                passThrough();
+                if (declaredLength < 0 && !isCommitted()) {
+                    sendContentLength(pendingLength);
+                }
+                writePending();
+                emit();
+            } else if (state == State.COMPRESSING) {
+                compressor.finish();
+                if (gzip) {
+                    writeIntLE((int) crc.getValue());
+                    writeIntLE((int) bytesIn);
+                }
+                emit();
+                CompressionStats stats = filter.getStats();
+                stats.compressed.incrementAndGet();
+                stats.bytesIn.addAndGet(bytesIn);
+                stats.bytesOut.addAndGet(bytesOut);
+            }
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Ends the response without finishing the body, for requests that failed
+     * or timed out. Any later write or flush fails, so once this returns
+     * nothing can reach the Deflater and it goes back to the pool.
+     */
+    void release() {
+        synchronized (lock) {
+            state = State.FINISHED;
+            compressor = null;
+            if (deflater != null) {
+                filter.getDeflaterPool().release(deflater, gzip);
+                deflater = null;
+            }
+        }
+    }
+
+    private void decide() throws IOException {
+        String contentType = getContentType();
+        int status = getStatus();
+        if (declaredLength >= 0 && declaredLength < pending.length) {
+            filter.getStats().tooSmall.incrementAndGet();
+            passThrough();
+        } else if (status == SC_NO_CONTENT || status == SC_PARTIAL_CONTENT || status == SC_NOT_MODIFIED
+                || containsHeader("Content-Encoding") || containsHeader("Content-Range")
+                || filter.isSkipped(contentType)) {
+            filter.getStats().skipped.incrementAndGet();
+            passThrough();
+        } else {
+            startCompressing();
+        }
+    }
+
+    private void passThrough() {
+        state = State.PASSTHROUGH;
+        sendDeclaredLength();
+    }
+
+    private void startCompressing() throws IOException {
+        String encoding = gzip ? "gzip" : "deflate";
+        super.setHeader("Content-Encoding", encoding);
+        super.addHeader("Vary", "Accept-Encoding");
+        String etag = getHeader("ETag");
+        if (etag != null) {
+            // the compressed bytes are a different representation; see ConditionalGet
+            super.setHeader("ETag", ConditionalGet.forEncoding(etag, encoding));
+        }
+        deflater = filter.getDeflaterPool().borrow(gzip);
+        OutputStream counted = new OutputStream() {
+            @Override
+            public void write(int b) {
+                stage(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                stage(b, off, len);
+            }
+        };
+        compressor = new DeflaterOutputStream(counted, deflater, 8192, true);
+        state = State.COMPRESSING;
+        if (gzip) {
+            counted.write(GZIP_HEADER);
+        }
+    }
+
+    // Drops compression from a response that hasn't gone out yet, keeping the servlet's own headers
+    @Override
+    void discard() {
+        synchronized (lock) {
+            discardLocked();
+        }
+    }
+
+    private void discardLocked() {
+        if (state == State.COMPRESSING && !isCommitted()) {
+            Map<String, List<String>> headers = new LinkedHashMap<>();
+            for (String name : getHeaderNames()) {
+                if (!"Content-Encoding".equalsIgnoreCase(name) && !"Content-Length".equalsIgnoreCase(name)) {
+                    headers.put(name, new ArrayList<>(getHeaders(name)));
+                }
+            }
+            int status = getStatus();
+            String contentType = getContentType();
+            super.reset();
+            super.setStatus(status);
+            if (contentType != null) {
+                super.setContentType(contentType);
+            }
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                for (String value : header.getValue()) {
+                    super.addHeader(header.getKey(), value);
+                }
+            }
+        }
+        if (state == State.FINISHED) {
+            return;
+        }
+        if (deflater != null) {
+            filter.getDeflaterPool().release(deflater, gzip);
+            deflater = null;
+        }
+        compressor = null;
+        crc.reset();
+        bytesIn = 0;
+        bytesOut = 0;
+        stagedLength = 0;
+        pendingLength = 0;
+        state = State.PASSTHROUGH;
+    }
+
+    private void drainPending() throws IOException {
+        if (state == State.COMPRESSING) {
+            compress(pending, 0, pendingLength);
+            pendingLength = 0;
+        } else {
+            writePending();
+        }
+    }
+
+    private void writePending() {
+        if (pendingLength > 0) {
+            stage(pending, 0, pendingLength);
+            pendingLength = 0;
+        }
+    }
+
+    private void writeIntLE(int value) {
+        stage(new byte[] {(byte) value, (byte) (value >>> 8), (byte) (value >>> 16), (byte) (value >>> 24)}, 0, 4);
+    }
+
+    private void stage(byte[] b, int off, int len) {
+        if (stagedLength + len > staged.length) {
+            staged = Arrays.copyOf(staged, Math.max(stagedLength + len, 2 * staged.length));
+        }
+        System.arraycopy(b, off, staged, stagedLength, len);
+        stagedLength += len;
+        bytesOut += len;
+    }
+
+    private void emit() throws IOException {
+        if (stagedLength > 0) {
+            int length = stagedLength;
+            stagedLength = 0;
+            body().write(staged, 0, length);
+        }
+    }
+
+    private void flushBody() throws IOException {
+        // a non-blocking stream that can't take more flushes what it holds by itself
+        if (!nonBlocking || body().isReady()) {
+            body().flush();
+        }
+    }
+
+    @Override
+    boolean isPassingThrough() {
+        return state == State.PASSTHROUGH;
+    }
+
+    @Override
+    void write(byte[] b, int off, int len) throws IOException {
+        synchronized (lock) {
+            writeLocked(b, off, len);
+            emit();
+        }
+    }
+
+    private void writeLocked(byte[] b, int off, int len) throws IOException {
+        switch (state) {
+            case UNDECIDED:
+                if (pendingLength + len <= pending.length) {
+                    System.arraycopy(b, off, pending, pendingLength, len);
+                    pendingLength += len;
+                    return;
+                }
+                decide();
+                drainPending();
+                writeLocked(b, off, len);
+                return;
+            case COMPRESSING:
+                compress(b, off, len);
+                return;
+            case PASSTHROUGH:
+                if (stagedLength == 0) {
+                    body().write(b, off, len);
+                } else {
+                    stage(b, off, len);
+                }
+                return;
+            default:
+                throw new IOException("The response has already been completed");
+        }
+    }
+
+    private void compress(byte[] b, int off, int len) throws IOException {
+        compressor.write(b, off, len);
+        if (gzip) {
+            crc.update(b, off, len);
+        }
+        bytesIn += len;
+    }
+
+    @Override
+    void flushStream() throws IOException {
+        synchronized (lock) {
+            flushLocked();
+        }
+    }
+
+    private void flushLocked() throws IOException {
+        switch (state) {
+            case UNDECIDED:
+                if (finishing) {
+                    return; // finish() decides on the size alone
+                }
+                // the servlet wants these bytes out now, before we know how big the body is; like a
+                // body past the threshold, it is compressed unless its type or headers rule that out
+                decide();
+                drainPending();
+                flushLocked();
+                return;
+            case COMPRESSING:
+                compressor.flush(); // SYNC_FLUSH, so the client can decode everything sent so far
+                emit();
+                flushBody();
+                return;
+            case PASSTHROUGH:
+                emit();
+                flushBody();
+                return;
+            default:
+                throw new IOException("The response has already been completed");
+        }
+    }
+}
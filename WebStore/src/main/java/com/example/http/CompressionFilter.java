@@ -0,0 +1,296 @@
+package com.example.http;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Compresses responses with gzip or deflate, whichever the client's
+ * Accept-Encoding prefers (gzip on a tie), as they are written: nothing
+ * past the first compression.minBytes is buffered. Bodies smaller than that,
+ * HEAD requests, and types listed in compression.skipTypes (images, archives
+ * and anything else already compressed) go out unchanged.
+ *
+ * Deflaters come from a {@link DeflaterPool}. Byte counts are kept in
+ * {@link CompressionStats} under the "compression" context attribute.
+ *
+ * For async requests the body is finished when the servlet calls
+ * AsyncContext.complete(), which this filter intercepts by wrapping the
+ * AsyncContext handed out by startAsync().
+ */
+public class CompressionFilter implements Filter {
+
+    private ServletContext context;
+    private int minBytes;
+    private String[] skipTypes;
+    private DeflaterPool pool;
+    private CompressionStats stats;
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        context = config.getServletContext();
+        minBytes = intParam(context, "compression.minBytes", 1024);
+        String types = context.getInitParameter("compression.skipTypes");
+        skipTypes = (types == null
+                ? "image/,video/,audio/,font/woff,application/zip,application/gzip,application/x-gzip,"
+                        + "application/octet-stream,application/pdf,text/event-stream"
+                : types).trim().toLowerCase(Locale.ROOT).split("\\s*,\\s*");
+        pool = new DeflaterPool(intParam(context, "compression.level", Deflater.DEFAULT_COMPRESSION),
+                intParam(context, "compression.poolMaxIdle", 64));
+        stats = new CompressionStats(pool);
+        context.setAttribute("compression", stats);
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (!(request instanceof HttpServletRequest) || request.getDispatcherType() != DispatcherType.REQUEST
+                || "HEAD".equals(((HttpServletRequest) request).getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String encoding = negotiate(((HttpServletRequest) request).getHeader("Accept-Encoding"));
+        if (encoding == null) {
+            stats.notAccepted.incrementAndGet();
+            chain.doFilter(request, response);
+            return;
+        }
+
+        CompressingResponse compressing = new CompressingResponse((HttpServletResponse) response, this, encoding);
+        boolean failed = true;
+        try {
+            chain.doFilter(new AsyncFinishingRequest((HttpServletRequest) request, compressing), compressing);
+            failed = false;
+        } finally {
+            // an async body is finished by AsyncContext.complete() instead
+            if (failed) {
+                compressing.release();
+            } else if (!request.isAsyncStarted()) {
+                compressing.finish();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        context.removeAttribute("compression");
+        pool.close();
+    }
+
+    int getMinBytes() {
+        return minBytes;
+    }
+
+    DeflaterPool getDeflaterPool() {
+        return pool;
+    }
+
+    CompressionStats getStats() {
+        return stats;
+    }
+
+    boolean isSkipped(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        for (String skip : skipTypes) {
+            if (!skip.isEmpty() && type.startsWith(skip)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** "gzip", "deflate", or null if the client accepts neither. */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double any = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1.0;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=") || param.startsWith("Q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = Math.max(gzip, q);
+            } else if (coding.equals("deflate")) {
+                deflate = q;
+            } else if (coding.equals("*")) {
+                any = q;
+            }
+        }
+        // codings not named explicitly get the wildcard's weight
+        if (gzip < 0) {
+            gzip = any;
+        }
+        if (deflate < 0) {
+            deflate = any;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return "gzip";
+        }
+        return deflate > 0 ? "deflate" : null;
+    }
+
+    /** Hands out AsyncContexts whose complete() finishes the compressed body first. */
+    private static final class AsyncFinishingRequest extends HttpServletRequestWrapper {
+        private final CompressingResponse response;
+
+        AsyncFinishingRequest(HttpServletRequest request, CompressingResponse response) {
+            super(request);
+            this.response = response;
+        }
+
+        @Override
+        public AsyncContext startAsync() {
+            return started(super.startAsync());
+        }
+
+        @Override
+        public AsyncContext startAsync(ServletRequest request, ServletResponse response) {
+            return started(super.startAsync(request, response));
+        }
+
+        private AsyncContext started(AsyncContext context) {
+            // ends the response if it times out or fails instead of calling complete(); a write still
+            // running on the servlet's thread gets to finish, later ones fail, then the Deflater goes back
+            context.addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) {
+                    response.release();
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+            return new FinishingAsyncContext(context, response);
+        }
+
+        @Override
+        public AsyncContext getAsyncContext() {
+            return new FinishingAsyncContext(super.getAsyncContext(), response);
+        }
+    }
+
+    private static final class FinishingAsyncContext implements AsyncContext {
+        private final AsyncContext delegate;
+        private final CompressingResponse response;
+
+        FinishingAsyncContext(AsyncContext delegate, CompressingResponse response) {
+            this.delegate = delegate;
+            this.response = response;
+        }
+
+        @Override
+        public void complete() {
+            try {
+                response.finish();
+            } catch (IOException | RuntimeException e) {
+                // the client went away; completing is all that's left to do
+                response.release();
+            }
+            delegate.complete();
+        }
+
+        @Override
+        public ServletRequest getRequest() {
+            return delegate.getRequest();
+        }
+
+        @Override
+        public ServletResponse getResponse() {
+            return delegate.getResponse();
+        }
+
+        @Override
+        public boolean hasOriginalRequestAndResponse() {
+            return delegate.hasOriginalRequestAndResponse();
+        }
+
+        @Override
+        public void dispatch() {
+            delegate.dispatch();
+        }
+
+        @Override
+        public void dispatch(String path) {
+            delegate.dispatch(path);
+        }
+
+        @Override
+        public void dispatch(ServletContext context, String path) {
+            delegate.dispatch(context, path);
+        }
+
+        @Override
+        public void start(Runnable run) {
+            delegate.start(run);
+        }
+
+        @Override
+        public void addListener(AsyncListener listener) {
+            delegate.addListener(listener);
+        }
+
+        @Override
+        public void addListener(AsyncListener listener, ServletRequest request, ServletResponse response) {
+            delegate.addListener(listener, request, response);
+        }
+
+        @Override
+        public <T extends AsyncListener> T createListener(Class<T> clazz) throws ServletException {
+            return delegate.createListener(clazz);
+        }
+
+        @Override
+        public void setTimeout(long timeout) {
+            delegate.setTimeout(timeout);
+        }
+
+        @Override
+        public long getTimeout() {
+            return delegate.getTimeout();
+        }
+    }
+
+    private static int intParam(ServletContext context, String name, int defaultValue) {
+        String value = context.getInitParameter(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What {@link CompressionFilter} did, kept under the "compression" context
+ * attribute and served by /metrics.
+ */
+public class CompressionStats {
+
+    private final DeflaterPool pool;
+    final AtomicLong compressed = new AtomicLong();
+    final AtomicLong bytesIn = new AtomicLong();
+    final AtomicLong bytesOut = new AtomicLong();
+    final AtomicLong tooSmall = new AtomicLong();
+    final AtomicLong skipped = new AtomicLong();
+    final AtomicLong notAccepted = new AtomicLong();
+
+    CompressionStats(DeflaterPool pool) {
+        this.pool = pool;
+    }
+
+    /** Responses sent compressed. */
+    public long getCompressedCount() {
+        return compressed.get();
+    }
+
+    /** Bytes the servlets wrote into compressed responses. */
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    /** Bytes those responses took on the wire. */
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    /** Responses sent as-is because they were under the minimum size. */
+    public long getTooSmallCount() {
+        return tooSmall.get();
+    }
+
+    /** Responses sent as-is because of their type, status or existing encoding. */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    /** Requests whose Accept-Encoding allowed neither gzip nor deflate. */
+    public long getNotAcceptedCount() {
+        return notAccepted.get();
+    }
+
+    public DeflaterPool getDeflaterPool() {
+        return pool;
+    }
+}
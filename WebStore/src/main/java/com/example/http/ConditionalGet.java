@@ -0,0 +1,150 @@
+package com.example.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * ETags and If-None-Match for GET responses, kept under the
+ * "conditionalGet" context attribute by {@link ConditionalGetFilter}.
+ *
+ * A page that knows the version of what it is about to show calls
+ * {@link #isNotModified} before rendering and stops if it returns true: the
+ * client already has that version and has been sent a 304. Pages that can't
+ * tell are mapped to the filter instead, which hashes their output and
+ * answers with a 304 in place of a body the client already has. That saves
+ * the bandwidth but not the rendering.
+ *
+ * CompressionFilter gives a compressed body its own strong ETag by adding
+ * "-gzip" or "-deflate" to it, so a tag the client got with a compressed
+ * body still matches the uncompressed one it was made from.
+ */
+public class ConditionalGet {
+
+    private static final String[] ENCODING_SUFFIXES = {"-gzip", "-deflate"};
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    final AtomicLong versioned = new AtomicLong();
+    final AtomicLong hashed = new AtomicLong();
+    final AtomicLong unhashed = new AtomicLong();
+    final AtomicLong notModified = new AtomicLong();
+
+    ConditionalGet() {
+    }
+
+    /**
+     * Sets the ETag for {@code version} and, if the request's If-None-Match
+     * already has it, sends a 304 and returns true; the caller then returns
+     * without writing anything. Versions only need to be unique within one
+     * deployment of the app; a redeploy makes every earlier tag stale. A
+     * weak tag says the page means the same for a given version, not that it
+     * is the same byte for byte.
+     */
+    public boolean isNotModified(HttpServletRequest request, HttpServletResponse response, String version, boolean weak) {
+        String opaque = epoch + "-" + version;
+        String etag = weak ? "W/\"" + opaque + "\"" : "\"" + opaque + "\"";
+        versioned.incrementAndGet();
+        response.setHeader("ETag", etag);
+        if (!response.containsHeader("Cache-Control")) {
+            response.setHeader("Cache-Control", "no-cache");
+        }
+        String matched = match(request.getHeader("If-None-Match"), etag);
+        if (matched == null || !("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod()))) {
+            return false;
+        }
+        sendNotModified(response, matched, etag);
+        return true;
+    }
+
+    void sendNotModified(HttpServletResponse response, String matched, String etag) {
+        notModified.incrementAndGet();
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        if (!"*".equals(matched) && !opaque(matched).equals(opaque(etag))) {
+            // the client holds a compressed variant; confirm that one
+            response.setHeader("ETag", matched);
+            response.addHeader("Vary", "Accept-Encoding");
+        }
+    }
+
+    /** ETags set up front by a page; the filter leaves those responses alone. */
+    public long getVersionedCount() {
+        return versioned.get();
+    }
+
+    /** Responses the filter hashed to make an ETag. */
+    public long getHashedCount() {
+        return hashed.get();
+    }
+
+    /** Responses the filter sent without an ETag: too big to hold, flushed early, or not a 200. */
+    public long getUnhashedCount() {
+        return unhashed.get();
+    }
+
+    /** 304s sent, by either route. */
+    public long getNotModifiedCount() {
+        return notModified.get();
+    }
+
+    /**
+     * The entity-tag in {@code ifNoneMatch} that matches {@code etag} under
+     * the weak comparison If-None-Match calls for, or null if none does.
+     */
+    static String match(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return null;
+        }
+        String opaque = opaque(etag);
+        int i = 0;
+        int n = ifNoneMatch.length();
+        while (i < n) {
+            char c = ifNoneMatch.charAt(i);
+            if (c == ',' || c == ' ' || c == '\t') {
+                i++;
+                continue;
+            }
+            if (c == '*') {
+                return "*";
+            }
+            int start = i;
+            if (ifNoneMatch.startsWith("W/", i)) {
+                i += 2;
+            }
+            if (i >= n || ifNoneMatch.charAt(i) != '"') {
+                return null; // malformed; treat as no match
+            }
+            int close = ifNoneMatch.indexOf('"', i + 1);
+            if (close < 0) {
+                return null;
+            }
+            String candidate = ifNoneMatch.substring(i + 1, close);
+            if (withoutEncoding(candidate).equals(opaque)) {
+                return ifNoneMatch.substring(start, close + 1);
+            }
+            i = close + 1;
+        }
+        return null;
+    }
+
+    /** The tag a body compressed with {@code encoding} gets; weak tags are shared by every encoding. */
+    static String forEncoding(String etag, String encoding) {
+        if (etag.length() < 2 || etag.charAt(0) != '"' || etag.charAt(etag.length() - 1) != '"') {
+            return etag;
+        }
+        return etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+    }
+
+    private static String opaque(String etag) {
+        int start = etag.startsWith("W/") ? 3 : 1;
+        return etag.substring(start, etag.length() - 1);
+    }
+
+    private static String withoutEncoding(String opaque) {
+        for (String suffix : ENCODING_SUFFIXES) {
+            if (opaque.endsWith(suffix)) {
+                return opaque.substring(0, opaque.length() - suffix.length());
+            }
+        }
+        return opaque;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.http;
+
+import java.io.IOException;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Puts a {@link ConditionalGet} under the "conditionalGet" context attribute
+ * for pages that set their own version ETag, and gives GET responses on the
+ * paths it is mapped to an ETag hashed from their body (held up to
+ * etag.maxBufferBytes), answering a matching If-None-Match with a 304.
+ *
+ * Map it only to pages worth it: a hashed page is held in full before any
+ * of it is sent. It must run inside CompressionFilter, so it sees the body
+ * before compression, and it is not async-supported, since an async body
+ * can't be held.
+ */
+public class ConditionalGetFilter implements Filter {
+
+    private ServletContext context;
+    private ConditionalGet conditionalGet;
+    private int maxBufferBytes;
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        context = config.getServletContext();
+        String value = context.getInitParameter("etag.maxBufferBytes");
+        maxBufferBytes = value == null ? 256 * 1024 : Integer.parseInt(value.trim());
+        conditionalGet = new ConditionalGet();
+        context.setAttribute("conditionalGet", conditionalGet);
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (!(request instanceof HttpServletRequest) || !"GET".equals(((HttpServletRequest) request).getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        HashingResponse hashing = new HashingResponse((HttpServletResponse) response, conditionalGet,
+                ((HttpServletRequest) request).getHeader("If-None-Match"), maxBufferBytes);
+        chain.doFilter(request, hashing);
+        hashing.finish();
+    }
+
+    @Override
+    public void destroy() {
+        context.removeAttribute("conditionalGet");
+    }
+}
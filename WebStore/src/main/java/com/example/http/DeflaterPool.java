@@ -0,0 +1,77 @@
+package com.example.http;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * Reuses Deflaters across responses. Each one holds a few hundred KB of
+ * native zlib memory that is only freed by end() or, much later, by the
+ * garbage collector, so making one per response churns native memory.
+ *
+ * Raw deflaters (for gzip, which frames the stream itself) and zlib ones
+ * (for the "deflate" encoding) are kept apart. At most {@code maxIdle} of
+ * each are kept; extras are ended when returned.
+ */
+public class DeflaterPool {
+
+    private final int level;
+    private final BlockingQueue<Deflater> raw;
+    private final BlockingQueue<Deflater> zlib;
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+
+    public DeflaterPool(int level, int maxIdle) {
+        this.level = level;
+        this.raw = new ArrayBlockingQueue<>(maxIdle);
+        this.zlib = new ArrayBlockingQueue<>(maxIdle);
+    }
+
+    /** A reset Deflater; {@code nowrap} as for the Deflater constructor. */
+    public Deflater borrow(boolean nowrap) {
+        Deflater deflater = (nowrap ? raw : zlib).poll();
+        if (deflater != null) {
+            reused.incrementAndGet();
+            return deflater;
+        }
+        created.incrementAndGet();
+        return new Deflater(level, nowrap);
+    }
+
+    public void release(Deflater deflater, boolean nowrap) {
+        deflater.reset();
+        if (!(nowrap ? raw : zlib).offer(deflater)) {
+            discarded.incrementAndGet();
+            deflater.end();
+        }
+    }
+
+    /** Ends every idle Deflater. */
+    public void close() {
+        Deflater deflater;
+        while ((deflater = raw.poll()) != null) {
+            deflater.end();
+        }
+        while ((deflater = zlib.poll()) != null) {
+            deflater.end();
+        }
+    }
+
+    public int getIdleCount() {
+        return raw.size() + zlib.size();
+    }
+
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    public long getReusedCount() {
+        return reused.get();
+    }
+
+    public long getDiscardedCount() {
+        return discarded.get();
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.http;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Response wrapper for {@link ConditionalGetFilter}. The body is held (up to
+ * maxBytes) and hashed as it is written; at the end it gets a strong ETag
+ * from the hash and goes out, or a 304 goes out instead if the client
+ * already has it. A body that outgrows the buffer, is flushed, or already
+ * has an ETag or a status other than 200 goes out as it is.
+ */
+final class HashingResponse extends HoldingResponse {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int ETAG_BYTES = 16;
+
+    private enum State { HOLDING, PASSTHROUGH, FINISHED }
+
+    private final ConditionalGet conditionalGet;
+    private final String ifNoneMatch;
+    private final int maxBytes;
+    private final MessageDigest digest;
+    private byte[] buffer = new byte[1024];
+    private int length;
+    private State state = State.HOLDING;
+
+    HashingResponse(HttpServletResponse response, ConditionalGet conditionalGet, String ifNoneMatch, int maxBytes) {
+        super(response);
+        this.conditionalGet = conditionalGet;
+        this.ifNoneMatch = ifNoneMatch;
+        this.maxBytes = maxBytes;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        declaredLength = -1;
+        length = 0;
+        digest.reset();
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        length = 0;
+        digest.reset();
+    }
+
+    /** Sends the held body with its ETag, or a 304 in its place. */
+    @Override
+    void finish() throws IOException {
+        if (state == State.FINISHED) {
+            return;
+        }
+        try {
+            flushWriter();
+            if (state == State.HOLDING) {
+                if (getStatus() == SC_OK && !containsHeader("ETag")) {
+                    sendTagged();
+                } else {
+                    conditionalGet.unhashed.incrementAndGet();
+                    passThrough();
+                }
+            }
+        } finally {
+            state = State.FINISHED;
+        }
+    }
+
+    private void sendTagged() throws IOException {
+        conditionalGet.hashed.incrementAndGet();
+        byte[] hash = digest.digest();
+        char[] opaque = new char[2 * ETAG_BYTES];
+        for (int i = 0; i < ETAG_BYTES; i++) {
+            opaque[2 * i] = HEX[(hash[i] >> 4) & 0xf];
+            opaque[2 * i + 1] = HEX[hash[i] & 0xf];
+        }
+        String etag = "\"" + new String(opaque) + "\"";
+        super.setHeader("ETag", etag);
+        if (!containsHeader("Cache-Control")) {
+            super.setHeader("Cache-Control", "no-cache");
+        }
+        String matched = ConditionalGet.match(ifNoneMatch, etag);
+        if (matched != null) {
+            conditionalGet.sendNotModified((HttpServletResponse) getResponse(), matched, etag);
+            length = 0;
+            return;
+        }
+        sendContentLength(length);
+        writeHeld();
+    }
+
+    // Sends what is held as it is and stops holding
+    private void passThrough() throws IOException {
+        state = State.PASSTHROUGH;
+        sendDeclaredLength();
+        writeHeld();
+    }
+
+    @Override
+    void discard() {
+        length = 0;
+        if (state == State.HOLDING) {
+            conditionalGet.unhashed.incrementAndGet();
+            state = State.PASSTHROUGH;
+        }
+    }
+
+    private void writeHeld() throws IOException {
+        if (length > 0) {
+            body().write(buffer, 0, length);
+            length = 0;
+        }
+    }
+
+    @Override
+    boolean isPassingThrough() {
+        return state == State.PASSTHROUGH;
+    }
+
+    @Override
+    void write(byte[] b, int off, int len) throws IOException {
+        switch (state) {
+            case HOLDING:
+                if (length == 0 && (getStatus() != SC_OK || containsHeader("ETag"))) {
+                    // a page that set its own ETag, or an error page: nothing to hash
+                    conditionalGet.unhashed.incrementAndGet();
+                    passThrough();
+                    write(b, off, len);
+                    return;
+                }
+                if (length + len > maxBytes) {
+                    conditionalGet.unhashed.incrementAndGet();
+                    passThrough();
+                    write(b, off, len);
+                    return;
+                }
+                if (length + len > buffer.length) {
+                    buffer = Arrays.copyOf(buffer, Math.min(maxBytes, Math.max(length + len, 2 * buffer.length)));
+                }
+                System.arraycopy(b, off, buffer, length, len);
+                length += len;
+                digest.update(b, off, len);
+                return;
+            case PASSTHROUGH:
+                body().write(b, off, len);
+                return;
+            default:
+                throw new IOException("The response has already been completed");
+        }
+    }
+
+    @Override
+    void flushStream() throws IOException {
+        switch (state) {
+            case HOLDING:
+                if (finishing) {
+                    return;
+                }
+                // the servlet wants the bytes out now, so there won't be a whole body to hash
+                conditionalGet.unhashed.incrementAndGet();
+                passThrough();
+                body().flush();
+                return;
+            case PASSTHROUGH:
+                body().flush();
+                return;
+            default:
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.http;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Base for the response wrappers that hold the start of a body back until
+ * they know what to do with it ({@link CompressingResponse},
+ * {@link HashingResponse}). It hands the servlet a stream or writer that
+ * feeds {@link #write} and {@link #flushStream}, and keeps Content-Length
+ * back until the subclass passes the body through as it is.
+ */
+abstract class HoldingResponse extends HttpServletResponseWrapper {
+
+    /** The Content-Length the servlet set, or -1. */
+    long declaredLength = -1;
+    /** Set while {@link #flushWriter} runs, so that flush isn't taken as the servlet's. */
+    volatile boolean finishing;
+    /** Set once the servlet has given the stream a WriteListener. */
+    volatile boolean nonBlocking;
+
+    private ServletOutputStream stream;
+    private PrintWriter writer;
+
+    HoldingResponse(HttpServletResponse response) {
+        super(response);
+    }
+
+    /** Takes body bytes written by the servlet. */
+    abstract void write(byte[] b, int off, int len) throws IOException;
+
+    /** The servlet flushed the body. */
+    abstract void flushStream() throws IOException;
+
+    /** Sends whatever is still held back; called by the filter once the servlet is done. */
+    abstract void finish() throws IOException;
+
+    /** Drops what is held back because the container is about to write its own body. */
+    abstract void discard();
+
+    /** Whether the body now goes out as it is, Content-Length included. */
+    abstract boolean isPassingThrough();
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        if (stream == null) {
+            stream = new Stream();
+        }
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (stream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called");
+            }
+            stream = new Stream();
+            writer = new PrintWriter(new OutputStreamWriter(stream, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    // Content-Length is held back until the subclass knows what the body will be
+
+    @Override
+    public void setContentLength(int len) {
+        setContentLengthLong(len);
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        declaredLength = len;
+        if (isPassingThrough()) {
+            super.setContentLengthLong(len);
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            setContentLengthLong(value == null ? -1 : Long.parseLong(value.trim()));
+        } else {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            setContentLengthLong(Long.parseLong(value.trim()));
+        } else {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            setContentLengthLong(value);
+        } else {
+            super.setIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            setContentLengthLong(value);
+        } else {
+            super.addIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (stream != null) {
+            stream.flush();
+        } else {
+            super.flushBuffer();
+        }
+    }
+
+    // The container writes its own body for errors and redirects
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        discard();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        discard();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        discard();
+        super.sendRedirect(location);
+    }
+
+    /** Pushes what the servlet's writer still buffers into {@link #write}. */
+    final void flushWriter() {
+        if (writer != null) {
+            finishing = true;
+            writer.flush();
+        }
+    }
+
+    /** Sets the Content-Length the client sees, bypassing the hold. */
+    final void sendContentLength(long len) {
+        super.setContentLengthLong(len);
+    }
+
+    /** Sends the Content-Length the servlet set, if it set one and it isn't too late. */
+    final void sendDeclaredLength() {
+        if (declaredLength >= 0 && !isCommitted()) {
+            super.setContentLengthLong(declaredLength);
+        }
+    }
+
+    /** The wrapped response's own stream. */
+    final ServletOutputStream body() throws IOException {
+        return getResponse().getOutputStream();
+    }
+
+    private final class Stream extends ServletOutputStream {
+        private final byte[] one = new byte[1];
+
+        @Override
+        public void write(int b) throws IOException {
+            one[0] = (byte) b;
+            HoldingResponse.this.write(one, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            HoldingResponse.this.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushStream();
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        @Override
+        public boolean isReady() {
+            try {
+                return body().isReady();
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            try {
+                nonBlocking = true;
+                body().setWriteListener(listener);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
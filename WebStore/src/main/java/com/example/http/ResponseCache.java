@@ -0,0 +1,310 @@
+package com.example.http;
+
+import java.net.http.HttpHeaders;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of upstream GET responses for HttpActionServlet, keyed by URL and
+ * bounded by total body bytes (least recently used entries go first).
+ *
+ * Freshness follows the upstream's Cache-Control (max-age, s-maxage,
+ * no-cache, no-store, private) and Expires headers. Stale entries that carry
+ * an ETag or Last-Modified are kept so the next fetch can be conditional.
+ *
+ * It also tracks the fetch currently in flight for each URL, so concurrent
+ * misses for the same URL can wait for one upstream call instead of each
+ * making their own.
+ */
+public class ResponseCache {
+
+    public static final class Entry {
+        private final int statusCode;
+        private final String contentType;
+        private final byte[] body;
+        private final String etag;
+        private final String lastModified;
+        private final long expiresAtMillis;
+
+        Entry(int statusCode, String contentType, byte[] body, String etag, String lastModified, long expiresAtMillis) {
+            this.statusCode = statusCode;
+            this.contentType = contentType;
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public boolean isFresh(long nowMillis) {
+            return nowMillis < expiresAtMillis;
+        }
+
+        public boolean hasValidators() {
+            return etag != null || lastModified != null;
+        }
+    }
+
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes; // guarded by this
+    private final ConcurrentMap<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidated = new AtomicLong();
+    private final AtomicLong collapsed = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ResponseCache(long maxBytes, int maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    /** Returns the entry for the URL, fresh or stale, or null. */
+    public synchronized Entry get(String url) {
+        return entries.get(url);
+    }
+
+    /**
+     * Registers {@code mine} as the in-flight fetch for the URL. Returns null
+     * if the caller is now the one fetching, or the fetch already under way
+     * that the caller should wait on instead.
+     */
+    public CompletableFuture<Entry> joinInFlight(String url, CompletableFuture<Entry> mine) {
+        CompletableFuture<Entry> existing = inFlight.putIfAbsent(url, mine);
+        if (existing != null) {
+            collapsed.incrementAndGet();
+        }
+        return existing;
+    }
+
+    /** Hands the fetched response (or null if there is nothing to share) to everyone waiting on it. */
+    public void completeInFlight(String url, CompletableFuture<Entry> mine, Entry result) {
+        inFlight.remove(url, mine);
+        mine.complete(result);
+    }
+
+    /**
+     * Builds an entry from a complete upstream response and stores it if the
+     * headers allow. The entry is returned either way, so waiting requests
+     * can reuse the body.
+     */
+    public Entry store(String url, int statusCode, HttpHeaders headers, byte[] body) {
+        long now = System.currentTimeMillis();
+        CacheControl cc = CacheControl.parse(headers);
+        Entry entry = new Entry(statusCode,
+                headers.firstValue("Content-Type").orElse(null),
+                body,
+                headers.firstValue("ETag").orElse(null),
+                headers.firstValue("Last-Modified").orElse(null),
+                now + cc.freshnessMillis(headers));
+
+        boolean storable = statusCode == 200
+                && !cc.noStore
+                && body.length <= maxEntryBytes
+                && !headers.allValues("Vary").contains("*")
+                && (entry.isFresh(now) || entry.hasValidators());
+        if (storable) {
+            put(url, entry);
+        }
+        return entry;
+    }
+
+    /** The upstream answered 304 for a stale entry: extend its lifetime from the new headers. */
+    public Entry revalidated(String url, Entry stale, HttpHeaders headers) {
+        long now = System.currentTimeMillis();
+        CacheControl cc = CacheControl.parse(headers);
+        Entry refreshed = new Entry(stale.statusCode, stale.contentType, stale.body,
+                headers.firstValue("ETag").orElse(stale.etag),
+                headers.firstValue("Last-Modified").orElse(stale.lastModified),
+                now + cc.freshnessMillis(headers));
+        if (cc.noStore) {
+            remove(url);
+        } else {
+            put(url, refreshed);
+        }
+        revalidated.incrementAndGet();
+        bytesSaved.addAndGet(stale.body.length);
+        return refreshed;
+    }
+
+    public void recordHit(Entry entry) {
+        hits.incrementAndGet();
+        bytesSaved.addAndGet(entry.body.length);
+    }
+
+    public void recordCollapsedHit(Entry entry) {
+        bytesSaved.addAndGet(entry.body.length);
+    }
+
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    public synchronized void remove(String url) {
+        Entry old = entries.remove(url);
+        if (old != null) {
+            currentBytes -= old.body.length;
+        }
+    }
+
+    private synchronized void put(String url, Entry entry) {
+        Entry old = entries.put(url, entry);
+        if (old != null) {
+            currentBytes -= old.body.length;
+        }
+        currentBytes += entry.body.length;
+
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            currentBytes -= eldest.getValue().body.length;
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    public int getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    // ---- metrics ----
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getRevalidatedCount() {
+        return revalidated.get();
+    }
+
+    public long getCollapsedCount() {
+        return collapsed.get();
+    }
+
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /** Share of lookups answered without transferring the body from upstream. */
+    public double getHitRatio() {
+        long served = hits.get() + revalidated.get() + collapsed.get();
+        long lookups = served + misses.get();
+        return lookups == 0 ? 0.0 : (double) served / lookups;
+    }
+
+    private static final class CacheControl {
+        boolean noStore;
+        boolean noCache;
+        long maxAgeSeconds = -1;
+
+        static CacheControl parse(HttpHeaders headers) {
+            CacheControl cc = new CacheControl();
+            long sharedMaxAge = -1;
+            for (String header : headers.allValues("Cache-Control")) {
+                for (String directive : header.split(",")) {
+                    String d = directive.trim().toLowerCase(Locale.ROOT);
+                    if (d.equals("no-store") || d.equals("private")) {
+                        cc.noStore = true;
+                    } else if (d.equals("no-cache")) {
+                        cc.noCache = true;
+                    } else if (d.startsWith("max-age=")) {
+                        cc.maxAgeSeconds = parseSeconds(d.substring(8));
+                    } else if (d.startsWith("s-maxage=")) {
+                        sharedMaxAge = parseSeconds(d.substring(9));
+                    }
+                }
+            }
+            // we are a shared cache, so s-maxage wins over max-age
+            if (sharedMaxAge >= 0) {
+                cc.maxAgeSeconds = sharedMaxAge;
+            }
+            return cc;
+        }
+
+        long freshnessMillis(HttpHeaders headers) {
+            if (noStore || noCache) {
+                return 0;
+            }
+            long age = headers.firstValue("Age").map(CacheControl::parseSeconds).orElse(0L);
+            if (maxAgeSeconds >= 0) {
+                return Math.max(0, maxAgeSeconds - Math.max(age, 0)) * 1000;
+            }
+            Optional<String> expires = headers.firstValue("Expires");
+            if (expires.isPresent()) {
+                try {
+                    long expiresAt = ZonedDateTime.parse(expires.get(), DateTimeFormatter.RFC_1123_DATE_TIME)
+                            .toInstant().toEpochMilli();
+                    long date = headers.firstValue("Date")
+                            .map(v -> ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli())
+                            .orElse(System.currentTimeMillis());
+                    return Math.max(0, expiresAt - date);
+                } catch (DateTimeParseException e) {
+                    return 0; // an invalid Expires means "already expired"
+                }
+            }
+            // no freshness information: keep it only for revalidation
+            return 0;
+        }
+
+        private static long parseSeconds(String value) {
+            try {
+                return Long.parseLong(value.trim().replace("\"", ""));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.http;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The one HttpClient used for proxied upstream calls. It keeps connections
+ * alive between requests, and its small executor only runs completion
+ * callbacks, so a slow upstream ties up a socket rather than a thread.
+ *
+ * Each upstream host gets at most {@code maxConcurrentPerHost} requests in
+ * flight; callers that can't get a permit should fail fast instead of
+ * queueing.
+ */
+public class UpstreamClient {
+
+    private final HttpClient client;
+    private final ExecutorService executor;
+    private final Duration readTimeout;
+    private final int maxConcurrentPerHost;
+    // requests in flight per host; a host leaves the map when its last one ends, so hosts taken
+    // from request parameters don't pile up
+    private final ConcurrentMap<String, Integer> hostInFlight = new ConcurrentHashMap<>();
+
+    public UpstreamClient(long connectTimeoutMillis, long readTimeoutMillis, int maxConcurrentPerHost, int threads) {
+        this.readTimeout = Duration.ofMillis(readTimeoutMillis);
+        this.maxConcurrentPerHost = maxConcurrentPerHost;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "upstream-http-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+    }
+
+    public HttpClient getClient() {
+        return client;
+    }
+
+    /** Timeout for an upstream to start answering; pass to HttpRequest.Builder.timeout(). */
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    /** Returns false when the host already has its maximum number of requests in flight. */
+    public boolean tryAcquire(URI uri) {
+        boolean[] acquired = new boolean[1];
+        hostInFlight.compute(hostOf(uri), (host, count) -> {
+            int n = count == null ? 0 : count;
+            if (n >= maxConcurrentPerHost) {
+                return count;
+            }
+            acquired[0] = true;
+            return n + 1;
+        });
+        return acquired[0];
+    }
+
+    public void release(URI uri) {
+        hostInFlight.computeIfPresent(hostOf(uri), (host, count) -> count <= 1 ? null : count - 1);
+    }
+
+    public int getInFlight(URI uri) {
+        return hostInFlight.getOrDefault(hostOf(uri), 0);
+    }
+
+    private static String hostOf(URI uri) {
+        return uri.getHost() + ":" + uri.getPort();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link RouteMetrics} of every route seen so far, kept by
+ * {@link MetricsFilter} under the "httpMetrics" context attribute and
+ * served by /metrics.
+ */
+public class HttpMetrics {
+
+    private final long windowMillis;
+    private final Map<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+
+    public HttpMetrics(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    RouteMetrics route(String route) {
+        RouteMetrics metrics = routes.get(route);
+        if (metrics == null) {
+            metrics = routes.computeIfAbsent(route, r -> new RouteMetrics(r, windowMillis));
+        }
+        return metrics;
+    }
+
+    boolean hasRoute(String route) {
+        return routes.containsKey(route);
+    }
+
+    int getRouteCount() {
+        return routes.size();
+    }
+
+    /** Every route, sorted by name. */
+    public Map<String, RouteMetrics> getRoutes() {
+        return new TreeMap<>(routes);
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latencies in log-linear microsecond buckets: exact below 16 µs, then 16
+ * buckets per power of two, so any recorded value is off by at most 1/16
+ * (about 6%). Covers up to 2^40 µs; anything longer lands in the last bucket.
+ *
+ * Recording is one atomic increment on a preallocated array: no lock and
+ * no allocation, so it can sit on every request.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(nanos / 1000));
+    }
+
+    /** Zeroes every bucket; values recorded while this runs may be lost. */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    /** Adds this histogram's counts into {@code totals}, which must have {@link #BUCKETS} entries. */
+    public void addTo(long[] totals) {
+        for (int i = 0; i < BUCKETS; i++) {
+            totals[i] += counts.get(i);
+        }
+    }
+
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(micros, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /** The largest value, in microseconds, that falls into {@code bucket}. */
+    static long upperBoundMicros(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS);
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * The {@code quantile} (0..1) of the counts in {@code totals}, in
+     * seconds, taken as the upper bound of the bucket it falls in; NaN when
+     * there are no counts.
+     */
+    public static double quantileSeconds(long[] totals, double quantile) {
+        long count = 0;
+        for (long c : totals) {
+            count += c;
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < totals.length; i++) {
+            seen += totals[i];
+            if (seen >= rank) {
+                return upperBoundMicros(i) / 1e6;
+            }
+        }
+        return upperBoundMicros(totals.length - 1) / 1e6;
+    }
+}
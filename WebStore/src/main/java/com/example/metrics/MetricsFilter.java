@@ -0,0 +1,135 @@
+package com.example.metrics;
+
+import java.io.IOException;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletMapping;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Times every request and records it against its route in
+ * {@link HttpMetrics}. The route is the servlet mapping ("/login"), the
+ * page for JSPs ("/dashboard.jsp"), "/" for the context root and "default"
+ * for static files. After metrics.maxRoutes distinct routes, new ones are
+ * counted under "other", so stray URLs can't grow the registry without
+ * bound.
+ *
+ * Async requests (/http-action) are recorded when the async cycle
+ * completes, not when the servlet returns.
+ */
+public class MetricsFilter implements Filter {
+
+    private ServletContext context;
+    private HttpMetrics metrics;
+    private int maxRoutes;
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        context = config.getServletContext();
+        metrics = new HttpMetrics(intParam(context, "metrics.windowSeconds", 60) * 1000L);
+        maxRoutes = intParam(context, "metrics.maxRoutes", 200);
+        context.setAttribute("httpMetrics", metrics);
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (!(request instanceof HttpServletRequest)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        RouteMetrics route = route(httpRequest);
+        long start = System.nanoTime();
+        route.started();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            if (!failed && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncTimer(route, start));
+            } else {
+                int status = ((HttpServletResponse) response).getStatus();
+                route.finished(System.nanoTime() - start, failed ? 500 : status, failed || status >= 500);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        context.removeAttribute("httpMetrics");
+    }
+
+    private RouteMetrics route(HttpServletRequest request) {
+        String name;
+        HttpServletMapping mapping = request.getHttpServletMapping();
+        if (mapping == null || mapping.getMappingMatch() == null) {
+            name = request.getServletPath();
+        } else {
+            switch (mapping.getMappingMatch()) {
+                case CONTEXT_ROOT:
+                    name = "/";
+                    break;
+                case DEFAULT:
+                    name = "default";
+                    break;
+                case EXTENSION:
+                    name = request.getServletPath();
+                    break;
+                default:
+                    name = mapping.getPattern();
+            }
+        }
+        if (metrics.getRouteCount() >= maxRoutes && !metrics.hasRoute(name)) {
+            name = "other";
+        }
+        return metrics.route(name);
+    }
+
+    /** Finishes the timing of an async request; re-registers itself if the request goes async again. */
+    private static final class AsyncTimer implements AsyncListener {
+        private final RouteMetrics route;
+        private final long start;
+        private volatile boolean failed;
+
+        AsyncTimer(RouteMetrics route, long start) {
+            this.route = route;
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            int status = ((HttpServletResponse) event.getSuppliedResponse()).getStatus();
+            route.finished(System.nanoTime() - start, status, failed || status >= 500);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            failed = true;
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            failed = true;
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    private static int intParam(ServletContext context, String name, int defaultValue) {
+        String value = context.getInitParameter(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
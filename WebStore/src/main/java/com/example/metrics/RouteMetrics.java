@@ -0,0 +1,106 @@
+package com.example.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters for one route: requests, responses by status class, errors,
+ * requests in flight, and latency.
+ *
+ * Latency quantiles cover a sliding window, so they show how the route is
+ * doing now rather than since startup. Samples go into one of two
+ * histograms, each covering half the window; the older one is cleared
+ * when it comes round again, and quantiles are read from both. The sum and
+ * count of latencies are kept since startup, as Prometheus expects for a
+ * summary.
+ */
+public final class RouteMetrics {
+
+    private final String route;
+    private final long halfWindowNanos;
+    private final LatencyHistogram[] windows = {new LatencyHistogram(), new LatencyHistogram()};
+    private final AtomicLongArray windowEpochs = new AtomicLongArray(new long[] {-1, -1});
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLongArray statusClasses = new AtomicLongArray(6); // index = status / 100
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    RouteMetrics(String route, long windowMillis) {
+        this.route = route;
+        this.halfWindowNanos = Math.max(1, windowMillis * 1_000_000L / 2);
+    }
+
+    void started() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Records a finished request. {@code error} is true when the request
+     * threw or ended with a 5xx status.
+     */
+    void finished(long nanos, int status, boolean error) {
+        inFlight.decrementAndGet();
+        requests.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        int statusClass = status / 100;
+        if (statusClass >= 1 && statusClass <= 5) {
+            statusClasses.incrementAndGet(statusClass);
+        }
+        if (error) {
+            errors.incrementAndGet();
+        }
+
+        long epoch = System.nanoTime() / halfWindowNanos;
+        int slot = (int) (epoch & 1);
+        long seen = windowEpochs.get(slot);
+        if (seen != epoch && windowEpochs.compareAndSet(slot, seen, epoch)) {
+            windows[slot].reset();
+        }
+        windows[slot].record(nanos);
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    /** Responses with a status of {@code statusClass}xx, for statusClass 1 to 5. */
+    public long getStatusClassCount(int statusClass) {
+        return statusClasses.get(statusClass);
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public double getTotalSeconds() {
+        return totalNanos.get() / 1e9;
+    }
+
+    /** Latency quantiles, in seconds, over the last window; one result per entry of {@code quantiles}. */
+    public double[] getQuantileSeconds(double... quantiles) {
+        long epoch = System.nanoTime() / halfWindowNanos;
+        long[] totals = new long[LatencyHistogram.BUCKETS];
+        for (int slot = 0; slot < 2; slot++) {
+            long slotEpoch = windowEpochs.get(slot);
+            if (slotEpoch == epoch || slotEpoch == epoch - 1) {
+                windows[slot].addTo(totals);
+            }
+        }
+        double[] values = new double[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            values[i] = LatencyHistogram.quantileSeconds(totals, quantiles[i]);
+        }
+        return values;
+    }
+}
@@ -1,15 +1,23 @@
 package com.example.model;
 
+import com.example.db.Database;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.SQLDataException;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ResumeDAO {
 
-    private Connection getConnection() throws SQLException, ClassNotFoundException {
-        Class.forName("com.mysql.cj.jdbc.Driver");
-        return DriverManager.getConnection("jdbc:mysql://localhost:3306/test", "root", "");
+    // One SQL string per batch size, so the pool's statement cache sees the same text every time
+    private static final ConcurrentHashMap<Integer, String> MULTI_ROW_INSERTS = new ConcurrentHashMap<>();
+    private static final int ROW_OVERHEAD_BYTES = 32;
+
+    private Connection getConnection() throws SQLException {
+        return Database.getConnection();
     }
 
     public void saveResume(Resume resume) {
@@ -23,4 +31,122 @@ public class ResumeDAO {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Inserts the resumes with multi-row INSERT ... VALUES (?, ?), (?, ?), ...
+     * statements of up to {@code rowsPerStatement} rows and roughly
+     * {@code maxStatementBytes} bytes each, so that a statement stays under
+     * the server's max_allowed_packet. Keep the byte limit well below it:
+     * the estimate doesn't allow for escaping.
+     *
+     * The rows go in one transaction. If the database refuses a row, that
+     * transaction is rolled back and each half is retried in its own, down
+     * to the rows that fail alone; those, and rows too big for any
+     * statement, are left out and returned. Any other error rolls back
+     * what is uncommitted and is thrown.
+     */
+    public List<Resume> saveResumes(List<Resume> resumes, int rowsPerStatement, int maxStatementBytes)
+            throws SQLException {
+        List<Resume> rejected = new ArrayList<>();
+        List<Resume> rows = new ArrayList<>(resumes.size());
+        for (Resume resume : resumes) {
+            if (estimateBytes(resume) > maxStatementBytes) {
+                System.err.println("Resume for user " + resume.getUserId() + " is over " + maxStatementBytes
+                        + " bytes; not inserted");
+                rejected.add(resume);
+            } else {
+                rows.add(resume);
+            }
+        }
+        if (rows.isEmpty()) {
+            return rejected;
+        }
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                save(conn, rows, rowsPerStatement, maxStatementBytes, rejected);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        return rejected;
+    }
+
+    private void save(Connection conn, List<Resume> rows, int rowsPerStatement, int maxStatementBytes,
+                      List<Resume> rejected) throws SQLException {
+        try {
+            insert(conn, rows, rowsPerStatement, maxStatementBytes);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            if (!isRowError(e)) {
+                throw e;
+            }
+            if (rows.size() == 1) {
+                System.err.println("Resume for user " + rows.get(0).getUserId() + " not inserted: " + e.getMessage());
+                rejected.add(rows.get(0));
+                return;
+            }
+            // bisect, so k bad rows cost about 2k log n statements rather than one per row
+            int half = rows.size() / 2;
+            save(conn, rows.subList(0, half), rowsPerStatement, maxStatementBytes, rejected);
+            save(conn, rows.subList(half, rows.size()), rowsPerStatement, maxStatementBytes, rejected);
+        }
+    }
+
+    private void insert(Connection conn, List<Resume> rows, int rowsPerStatement, int maxStatementBytes)
+            throws SQLException {
+        int offset = 0;
+        while (offset < rows.size()) {
+            int count = 0;
+            long bytes = 0;
+            while (offset + count < rows.size() && count < rowsPerStatement) {
+                long rowBytes = estimateBytes(rows.get(offset + count));
+                if (count > 0 && bytes + rowBytes > maxStatementBytes) {
+                    break;
+                }
+                bytes += rowBytes;
+                count++;
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    MULTI_ROW_INSERTS.computeIfAbsent(count, ResumeDAO::multiRowInsert))) {
+                int index = 1;
+                for (int i = offset; i < offset + count; i++) {
+                    Resume resume = rows.get(i);
+                    stmt.setInt(index++, resume.getUserId());
+                    stmt.setString(index++, resume.getResumeText());
+                }
+                stmt.executeUpdate();
+            }
+            offset += count;
+        }
+    }
+
+    // Data exceptions (SQLState class 22) and constraint violations (23) are about the rows, not the connection
+    private static boolean isRowError(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLDataException || e instanceof SQLIntegrityConstraintViolationException
+                || state != null && (state.startsWith("22") || state.startsWith("23"));
+    }
+
+    // What a row adds to the statement: its "(?, ?), " and user_id, plus the text as UTF-8
+    private static long estimateBytes(Resume resume) {
+        String text = resume.getResumeText();
+        long bytes = ROW_OVERHEAD_BYTES;
+        if (text != null) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                bytes += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+            }
+        }
+        return bytes;
+    }
+
+    private static String multiRowInsert(int rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO resumes (user_id, resume_text) VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?, ?)" : ", (?, ?)");
+        }
+        return sql.toString();
+    }
 }
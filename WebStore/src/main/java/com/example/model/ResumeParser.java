@@ -0,0 +1,174 @@
+package com.example.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Turns an uploaded resume XML file into the text stored in resumes.resume_text:
+ *
+ * <pre>
+ * &lt;resumes&gt;
+ *   &lt;resume&gt;&lt;name&gt;..&lt;/name&gt;&lt;email&gt;..&lt;/email&gt;&lt;phone&gt;..&lt;/phone&gt;&lt;/resume&gt;
+ * &lt;/resumes&gt;
+ * </pre>
+ *
+ * {@link #parseStreaming} pulls events with StAX and keeps only the fields it
+ * is collecting, so memory stays flat however large the file is.
+ * {@link #parseDom} is the original DOM walk, kept for comparison.
+ *
+ * Both factories are built once, with DTDs and external entities switched off.
+ */
+public final class ResumeParser {
+
+    private static final XMLInputFactory STAX_FACTORY = createStaxFactory();
+    private static final DocumentBuilderFactory DOM_FACTORY = createDomFactory();
+
+    // DocumentBuilder isn't thread-safe, but it is reusable after reset()
+    private static final ThreadLocal<DocumentBuilder> DOM_BUILDER = ThreadLocal.withInitial(() -> {
+        try {
+            return DOM_FACTORY.newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private ResumeParser() {}
+
+    public static String parseStreaming(InputStream in) throws XMLStreamException {
+        XMLStreamReader reader = STAX_FACTORY.createXMLStreamReader(in);
+        try {
+            StringBuilder resumeText = new StringBuilder();
+            StringBuilder text = new StringBuilder();
+            String name = null, email = null, phone = null;
+            String field = null;    // the name/email/phone element we're inside, if any
+            int fieldDepth = 0;     // nesting inside that field, for mixed content
+            int resumeDepth = 0;    // > 0 while inside a <resume>
+
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        String tag = reader.getLocalName();
+                        if (field != null) {
+                            fieldDepth++;
+                        } else if ("resume".equals(tag)) {
+                            if (resumeDepth++ == 0) {
+                                name = email = phone = null;
+                            }
+                        } else if (resumeDepth > 0 && isWanted(tag, name, email, phone)) {
+                            field = tag;
+                            text.setLength(0);
+                        }
+                        break;
+
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (field != null) {
+                            text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        }
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (field != null) {
+                            if (fieldDepth > 0) {
+                                fieldDepth--;
+                                break;
+                            }
+                            if ("name".equals(field)) name = text.toString();
+                            else if ("email".equals(field)) email = text.toString();
+                            else phone = text.toString();
+                            field = null;
+                        } else if ("resume".equals(reader.getLocalName()) && --resumeDepth == 0) {
+                            appendResume(resumeText, require(name, "name"), require(email, "email"), require(phone, "phone"));
+                        }
+                        break;
+
+                    default:
+                        break;
+                }
+            }
+            return resumeText.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    public static String parseDom(InputStream in) throws IOException, SAXException {
+        DocumentBuilder builder = DOM_BUILDER.get();
+        builder.reset();
+        Document doc = builder.parse(in);
+        doc.getDocumentElement().normalize();
+
+        StringBuilder resumeText = new StringBuilder();
+        NodeList nList = doc.getElementsByTagName("resume");
+
+        for (int temp = 0; temp < nList.getLength(); temp++) {
+            Node nNode = nList.item(temp);
+            if (nNode.getNodeType() == Node.ELEMENT_NODE) {
+                Element eElement = (Element) nNode;
+                appendResume(resumeText,
+                        eElement.getElementsByTagName("name").item(0).getTextContent(),
+                        eElement.getElementsByTagName("email").item(0).getTextContent(),
+                        eElement.getElementsByTagName("phone").item(0).getTextContent());
+            }
+        }
+        return resumeText.toString();
+    }
+
+    private static void appendResume(StringBuilder out, String name, String email, String phone) {
+        out.append("Name: ").append(name).append("\n");
+        out.append("Email: ").append(email).append("\n");
+        out.append("Phone: ").append(phone).append("\n");
+    }
+
+    // only the first occurrence of each field counts, like getElementsByTagName(..).item(0)
+    private static boolean isWanted(String tag, String name, String email, String phone) {
+        return ("name".equals(tag) && name == null)
+                || ("email".equals(tag) && email == null)
+                || ("phone".equals(tag) && phone == null);
+    }
+
+    private static String require(String value, String tag) throws XMLStreamException {
+        if (value == null) {
+            throw new XMLStreamException("<resume> is missing <" + tag + ">");
+        }
+        return value;
+    }
+
+    private static XMLInputFactory createStaxFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        return factory;
+    }
+
+    private static DocumentBuilderFactory createDomFactory() {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("XML parser does not support hardening features", e);
+        }
+        factory.setXIncludeAware(false);
+        factory.setExpandEntityReferences(false);
+        return factory;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.model;
+
+import com.example.db.Database;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the students table a page at a time, in id order. Pages are found
+ * by seeking past the last id of the previous page ({@code WHERE id > ?}),
+ * not by OFFSET, so the database walks the primary key straight to the page
+ * and page 1000 costs the same as page 1.
+ */
+public class StudentDAO {
+
+    private static final String PAGE =
+            "SELECT id, name, email FROM students WHERE id > ? ORDER BY id LIMIT ?";
+
+    /** Called for each row as it is read. */
+    public interface RowHandler {
+        void row(Student student) throws IOException;
+    }
+
+    private Connection getConnection() throws SQLException {
+        return Database.getConnection();
+    }
+
+    /** Up to {@code limit} students with an id above {@code afterId}, for callers that want the page as a list. */
+    public List<Student> getPage(int afterId, int limit) throws SQLException {
+        List<Student> students = new ArrayList<>(limit);
+        try {
+            forEachInPage(afterId, limit, students::add);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // adding to a list doesn't throw
+        }
+        return students;
+    }
+
+    /**
+     * Hands each of up to {@code limit} students with an id above
+     * {@code afterId} to {@code handler} straight off the result set,
+     * without collecting them first; returns how many there were. The
+     * connection is held until the handler has seen the last row.
+     */
+    public int forEachInPage(int afterId, int limit, RowHandler handler) throws SQLException, IOException {
+        int rows = 0;
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(PAGE)) {
+            stmt.setInt(1, afterId);
+            stmt.setInt(2, limit);
+            stmt.setFetchSize(Math.min(limit, 100));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.row(new Student(rs.getInt("id"), rs.getString("name"), rs.getString("email")));
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.model;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded, TTL-based cache of users keyed by username, used by
+ * {@link UserDAO#getUserByUsername(String)}. Unknown usernames are cached
+ * too (for a shorter time) so repeated failed logins don't reach MySQL.
+ *
+ * Entries are copied on the way in and out, since User is a mutable bean.
+ */
+public class UserCache {
+
+    public interface Loader {
+        User load(String username) throws SQLException;
+    }
+
+    private static final class Entry {
+        final User user; // null for a cached "no such user"
+        final long expiresAtNanos;
+
+        Entry(User user, long expiresAtNanos) {
+            this.user = user;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final Map<String, Entry> entries;
+
+    // all guarded by "this"
+    private long generation;
+    private long hits;
+    private long negativeHits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    public UserCache(int maxEntries, long ttlMillis, long negativeTtlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+        // access order, so the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > UserCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached user, or loads it through {@code loader} on a miss.
+     * Returns null when the username does not exist.
+     */
+    public User get(String username, Loader loader) throws SQLException {
+        long startGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(username);
+            if (entry != null) {
+                if (System.nanoTime() - entry.expiresAtNanos < 0) {
+                    if (entry.user == null) {
+                        negativeHits++;
+                        return null;
+                    }
+                    hits++;
+                    return copy(entry.user);
+                }
+                entries.remove(username);
+                expirations++;
+            }
+            misses++;
+            startGeneration = generation;
+        }
+
+        // load outside the lock so one slow query doesn't stall every login
+        User loaded = loader.load(username);
+
+        synchronized (this) {
+            // a write landed while we were loading; our result may already be stale
+            if (generation == startGeneration) {
+                long ttl = loaded == null ? negativeTtlNanos : ttlNanos;
+                if (ttl > 0) {
+                    entries.put(username, new Entry(copy(loaded), System.nanoTime() + ttl));
+                }
+            }
+        }
+        return copy(loaded);
+    }
+
+    public synchronized void invalidate(String username) {
+        generation++;
+        if (entries.remove(username) != null) {
+            invalidations++;
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        invalidations += entries.size();
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getNegativeHitCount() {
+        return negativeHits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized long getExpirationCount() {
+        return expirations;
+    }
+
+    public synchronized long getInvalidationCount() {
+        return invalidations;
+    }
+
+    public synchronized double getHitRatio() {
+        long lookups = hits + negativeHits + misses;
+        return lookups == 0 ? 0.0 : (double) (hits + negativeHits) / lookups;
+    }
+
+    private static User copy(User user) {
+        if (user == null) {
+            return null;
+        }
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setUsername(user.getUsername());
+        copy.setPassword(user.getPassword());
+        copy.setName(user.getName());
+        copy.setEmail(user.getEmail());
+        return copy;
+    }
+}
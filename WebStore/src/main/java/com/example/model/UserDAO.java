@@ -1,16 +1,26 @@
 package com.example.model;
 
+import com.example.db.Database;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
 public class UserDAO {
 
-    private Connection getConnection() throws SQLException, ClassNotFoundException {
-        Class.forName("com.mysql.cj.jdbc.Driver");
-        return DriverManager.getConnection("jdbc:mysql://localhost:3306/test", "root", "");
+    // Shared by every UserDAO instance; DatabaseSetupListener replaces it with the configured one
+    private static volatile UserCache cache = new UserCache(10000, 60000, 5000);
+
+    public static UserCache getCache() {
+        return cache;
+    }
+
+    public static void setCache(UserCache userCache) {
+        cache = userCache;
+    }
+
+    private Connection getConnection() throws SQLException {
+        return Database.getConnection();
     }
 
     public void registerUser(User user) {
@@ -24,10 +34,22 @@ public class UserDAO {
             stmt.executeUpdate();
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            // drop any cached "no such user" entry even if the insert failed half way
+            cache.invalidate(user.getUsername());
         }
     }
 
     public User getUserByUsername(String username) {
+        try {
+            return cache.get(username, this::loadUserByUsername);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private User loadUserByUsername(String username) throws SQLException {
         String sql = "SELECT * FROM users WHERE username = ?";
         User user = null;
         try (Connection conn = getConnection();
@@ -42,8 +64,6 @@ public class UserDAO {
                 user.setName(rs.getString("name"));
                 user.setEmail(rs.getString("email"));
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
         return user;
     }
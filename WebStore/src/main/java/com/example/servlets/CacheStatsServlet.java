@@ -0,0 +1,47 @@
+package com.example.servlets;
+
+import com.example.http.ResponseCache;
+import com.example.model.UserCache;
+import com.example.model.UserDAO;
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+@WebServlet("/cache-stats")
+public class CacheStatsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        UserCache cache = UserDAO.getCache();
+        response.setContentType("text/plain;charset=UTF-8");
+        PrintWriter out = response.getWriter();
+
+        out.println("user_cache_size: " + cache.size());
+        out.println("user_cache_max: " + cache.getMaxEntries());
+        out.println("user_cache_hits: " + cache.getHitCount());
+        out.println("user_cache_negative_hits: " + cache.getNegativeHitCount());
+        out.println("user_cache_misses: " + cache.getMissCount());
+        out.println("user_cache_evictions: " + cache.getEvictionCount());
+        out.println("user_cache_expirations: " + cache.getExpirationCount());
+        out.println("user_cache_invalidations: " + cache.getInvalidationCount());
+        out.println("user_cache_hit_ratio: " + String.format("%.3f", cache.getHitRatio()));
+
+        ResponseCache responses = (ResponseCache) getServletContext().getAttribute("responseCache");
+        if (responses != null) {
+            out.println("http_cache_entries: " + responses.size());
+            out.println("http_cache_bytes: " + responses.getCurrentBytes());
+            out.println("http_cache_max_bytes: " + responses.getMaxBytes());
+            out.println("http_cache_hits: " + responses.getHitCount());
+            out.println("http_cache_revalidated: " + responses.getRevalidatedCount());
+            out.println("http_cache_collapsed: " + responses.getCollapsedCount());
+            out.println("http_cache_misses: " + responses.getMissCount());
+            out.println("http_cache_evictions: " + responses.getEvictionCount());
+            out.println("http_cache_bytes_saved: " + responses.getBytesSaved());
+            out.println("http_cache_hit_ratio: " + String.format("%.3f", responses.getHitRatio()));
+        }
+    }
+}
@@ -1,23 +1,94 @@
 package com.example.servlets;
 
-import java.io.BufferedReader;
+import com.example.http.ResponseCache;
+import com.example.http.UpstreamClient;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.annotation.WebInitParam;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-@WebServlet("/http-action")
+/**
+ * Relays a GET or POST to the URL given in the "url" parameter.
+ *
+ * The upstream call goes through the shared {@link UpstreamClient}. When the
+ * container allows it the request goes async, so the worker thread returns
+ * to the pool while the upstream is busy; body chunks are then written to
+ * the response as they arrive, without blocking (see {@link Sink}), and the
+ * next chunk is only asked for once the last one is out.
+ *
+ * GETs are also served from a {@link ResponseCache}: fresh entries never
+ * reach the upstream, stale ones are revalidated with If-None-Match /
+ * If-Modified-Since, and concurrent misses for one URL share a single fetch.
+ */
+@WebServlet(
+    urlPatterns = "/http-action",
+    asyncSupported = true,
+    initParams = {
+        @WebInitParam(name = "connectTimeoutMillis", value = "5000"),
+        @WebInitParam(name = "readTimeoutMillis", value = "15000"),
+        @WebInitParam(name = "asyncTimeoutMillis", value = "60000"),
+        @WebInitParam(name = "maxConcurrentPerHost", value = "20"),
+        @WebInitParam(name = "clientThreads", value = "4"),
+        @WebInitParam(name = "cacheMaxBytes", value = "16777216"),
+        @WebInitParam(name = "cacheMaxEntryBytes", value = "1048576")
+    }
+)
 public class HttpActionServlet extends HttpServlet {
     private static final long serialVersionUID = 1L;
 
+    private transient UpstreamClient upstream;
+    private transient ResponseCache cache;
+    private long asyncTimeoutMillis;
+
+    @Override
+    public void init() throws ServletException {
+        upstream = new UpstreamClient(
+                longParam("connectTimeoutMillis", 5000),
+                longParam("readTimeoutMillis", 15000),
+                (int) longParam("maxConcurrentPerHost", 20),
+                (int) longParam("clientThreads", 4));
+        asyncTimeoutMillis = longParam("asyncTimeoutMillis", 60000);
+        cache = new ResponseCache(
+                longParam("cacheMaxBytes", 16 * 1024 * 1024),
+                (int) longParam("cacheMaxEntryBytes", 1024 * 1024));
+        getServletContext().setAttribute("responseCache", cache);
+    }
+
+    @Override
+    public void destroy() {
+        getServletContext().removeAttribute("responseCache");
+        upstream.shutdown();
+    }
+
     protected void doGet(
-    HttpServletRequest request, 
+    HttpServletRequest request,
     HttpServletResponse response)throws ServletException, IOException {
 
         String urlString = request.getParameter("url");
@@ -26,37 +97,52 @@ public class HttpActionServlet extends HttpServlet {
             return;
         }
 
+        URI uri;
+        HttpRequest plainRequest;
         try {
-            @SuppressWarnings("deprecation")
-            URL url = new URL(urlString);
-            HttpURLConnection con = (HttpURLConnection) url.openConnection();
-            con.setRequestMethod("GET");
-            con.setRequestProperty("User-Agent", "Java-HttpUrlConnection-Client");
-
-            int responseCode = con.getResponseCode();
-            response.getWriter().append("GET Response Code :: ").append(String.valueOf(responseCode)).append("\n");
-
-            if (responseCode == HttpURLConnection.HTTP_OK) { // success
-                BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-                String inputLine;
-                StringBuilder responseContent = new StringBuilder();
-                while ((inputLine = in.readLine()) != null) {
-                    responseContent.append(inputLine);
-                }
-                in.close();
-                response.getWriter().append(responseContent.toString());
-            } else {
-                response.getWriter().append("GET request not worked");
-            }
-        } catch (Exception e) {
+            uri = URI.create(urlString);
+            plainRequest = getRequest(uri, null);
+        } catch (IllegalArgumentException e) {
             response.getWriter().append("Error: ").append(e.getMessage());
+            return;
+        }
+
+        Exchange ex = new Exchange(response, "GET", code -> code == HttpServletResponse.SC_OK);
+        String key = uri.toString();
+
+        ResponseCache.Entry cached = cache.get(key);
+        if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+            cache.recordHit(cached);
+            writeEntry(ex, cached);
+            ex.sink.rethrow();
+            return;
+        }
+
+        CompletableFuture<ResponseCache.Entry> mine = new CompletableFuture<>();
+        CompletableFuture<ResponseCache.Entry> leader = cache.joinInFlight(key, mine);
+        if (leader != null) {
+            // someone is already fetching this URL; reuse their response when it lands
+            run(request, ex, () -> leader.thenCompose(shared -> {
+                if (shared == null) {
+                    return fetch(ex, uri, plainRequest, null);
+                }
+                cache.recordCollapsedHit(shared);
+                writeEntry(ex, shared);
+                return CompletableFuture.<Void>completedFuture(null);
+            }));
+            return;
         }
+
+        cache.recordMiss();
+        ResponseCache.Entry stale = cached != null && cached.hasValidators() ? cached : null;
+        CacheFill fill = new CacheFill(key, mine, stale);
+        run(request, ex, () -> fetch(ex, uri, getRequest(uri, stale), fill));
     }
 
     protected void doPost(
         HttpServletRequest request,
         HttpServletResponse response)throws ServletException, IOException {
-            
+
         String urlString = request.getParameter("url");
         String payload = request.getParameter("payload");
 
@@ -65,37 +151,603 @@ public class HttpActionServlet extends HttpServlet {
             return;
         }
 
+        URI uri;
+        HttpRequest upstreamRequest;
+        try {
+            uri = URI.create(urlString);
+            upstreamRequest = HttpRequest.newBuilder(uri)
+                    .timeout(upstream.getReadTimeout())
+                    .header("Content-Type", "application/json; utf-8")
+                    .header("Accept", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(payload == null ? "" : payload, StandardCharsets.UTF_8))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            response.getWriter().append("Error: ").append(e.getMessage());
+            return;
+        }
+
+        Exchange ex = new Exchange(response, "POST",
+                code -> code == HttpServletResponse.SC_CREATED || code == HttpServletResponse.SC_OK);
+        run(request, ex, () -> fetch(ex, uri, upstreamRequest, null));
+    }
+
+    private HttpRequest getRequest(URI uri, ResponseCache.Entry stale) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(upstream.getReadTimeout())
+                .header("User-Agent", "Java-HttpClient")
+                .GET();
+        if (stale != null && stale.getEtag() != null) {
+            builder.header("If-None-Match", stale.getEtag());
+        }
+        if (stale != null && stale.getLastModified() != null) {
+            builder.header("If-Modified-Since", stale.getLastModified());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Runs the exchange asynchronously when the container allows it, otherwise
+     * waits for it on the request thread. Either way it is closed off after
+     * asyncTimeoutMillis.
+     */
+    private void run(HttpServletRequest request, Exchange ex, Supplier<CompletableFuture<Void>> work) {
+        if (!request.isAsyncSupported()) {
+            // something in the filter chain isn't async-capable, so this thread does the writing
+            try {
+                ex.sink.pump(work, asyncTimeoutMillis);
+            } catch (TimeoutException e) {
+                ex.close("upstream timed out");
+            } catch (ExecutionException | RuntimeException e) {
+                ex.close(messageOf(e));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                ex.close("interrupted");
+            }
+            return;
+        }
+
+        AsyncContext ctx = request.startAsync();
+        ctx.setTimeout(asyncTimeoutMillis);
+        try {
+            ex.sink.listen();
+        } catch (IOException e) {
+            ctx.complete();
+            return;
+        }
+        AtomicBoolean completed = new AtomicBoolean();
+        Runnable complete = () -> {
+            if (completed.compareAndSet(false, true)) {
+                ctx.complete();
+            }
+        };
+
+        ctx.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                ex.close("upstream timed out");
+                complete.run();
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                ex.close(null);
+                complete.run();
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        CompletableFuture<Void> future;
         try {
-            @SuppressWarnings("deprecation")
-            URL url = new URL(urlString);
-            HttpURLConnection con = (HttpURLConnection) url.openConnection();
-            con.setRequestMethod("POST");
-            con.setRequestProperty("Content-Type", "application/json; utf-8");
-            con.setRequestProperty("Accept", "application/json");
-            con.setDoOutput(true);
-
-            try (OutputStream os = con.getOutputStream()) {
-                byte[] input = payload.getBytes("utf-8");
-                os.write(input, 0, input.length);
-            }
-
-            int responseCode = con.getResponseCode();
-            response.getWriter().append("POST Response Code :: ").append(String.valueOf(responseCode)).append("\n");
-
-            if (responseCode == HttpURLConnection.HTTP_CREATED || responseCode == HttpURLConnection.HTTP_OK) { // success
-                BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-                String inputLine;
-                StringBuilder responseContent = new StringBuilder();
-                while ((inputLine = in.readLine()) != null) {
-                    responseContent.append(inputLine);
+            future = work.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((ignored, error) -> {
+            if (error != null) {
+                ex.close(messageOf(error));
+            }
+            // complete once the last bytes are out; a client that stops reading runs into the timeout
+            ex.sink.end(complete);
+        });
+    }
+
+    /**
+     * Sends the request upstream and relays the answer into the exchange. With
+     * a {@link CacheFill} the body is also captured for the cache and handed to
+     * any requests waiting on this fetch.
+     */
+    private CompletableFuture<Void> fetch(Exchange ex, URI uri, HttpRequest upstreamRequest, CacheFill fill) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        if (!upstream.tryAcquire(uri)) {
+            if (fill != null) {
+                cache.completeInFlight(fill.key, fill.future, null);
+            }
+            ex.response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            writeError(ex, "too many requests in flight to " + uri.getHost());
+            result.complete(null);
+            return result;
+        }
+
+        AtomicReference<ResponseCache.Entry> shared = new AtomicReference<>();
+        AtomicBoolean settled = new AtomicBoolean();
+        // runs once, whether the fetch finished or the exchange was closed under it
+        ex.settle = () -> {
+            if (settled.compareAndSet(false, true)) {
+                upstream.release(uri);
+                if (fill != null) {
+                    cache.completeInFlight(fill.key, fill.future, shared.get());
+                }
+                result.complete(null);
+            }
+        };
+
+        ByteCapture capture = fill != null ? new ByteCapture(cache.getMaxEntryBytes()) : null;
+        AtomicReference<HttpResponse.ResponseInfo> head = new AtomicReference<>();
+
+        HttpResponse.BodyHandler<Void> handler = info -> {
+            if (ex.closed.get()) {
+                return HttpResponse.BodySubscribers.discarding();
+            }
+            if (fill != null && fill.stale != null && info.statusCode() == HttpServletResponse.SC_NOT_MODIFIED) {
+                ResponseCache.Entry refreshed = cache.revalidated(fill.key, fill.stale, info.headers());
+                shared.set(refreshed);
+                writeEntry(ex, refreshed);
+                return HttpResponse.BodySubscribers.discarding();
+            }
+            head.set(info);
+            if (!writeHead(ex, info.statusCode(), info.headers().firstValue("Content-Type").orElse(null))) {
+                return HttpResponse.BodySubscribers.discarding();
+            }
+            ResponseSubscriber subscriber = new ResponseSubscriber(ex, capture);
+            ex.subscriber = subscriber;
+            return HttpResponse.BodySubscribers.fromSubscriber(subscriber);
+        };
+
+        upstream.getClient().sendAsync(upstreamRequest, handler).whenComplete((ignored, error) -> {
+            HttpResponse.ResponseInfo info = head.get();
+            if (error != null) {
+                if (!ex.closed.get()) {
+                    writeError(ex, messageOf(error));
+                }
+            } else if (capture != null && info != null && !capture.isOverflowed()) {
+                shared.set(cache.store(fill.key, info.statusCode(), info.headers(), capture.toByteArray()));
+            }
+            ex.settle.run();
+        });
+        return result;
+    }
+
+    private void writeEntry(Exchange ex, ResponseCache.Entry entry) {
+        if (writeHead(ex, entry.getStatusCode(), entry.getContentType())) {
+            ex.sink.write(ByteBuffer.wrap(entry.getBody()));
+        }
+    }
+
+    // Writes the status line; returns false (after writing the failure text) if there's no body to relay
+    private boolean writeHead(Exchange ex, int statusCode, String contentType) {
+        if (contentType != null) {
+            ex.response.setContentType(contentType);
+        }
+        ex.sink.write(ex.method + " Response Code :: " + statusCode + "\n");
+        if (!ex.success.test(statusCode)) {
+            ex.sink.write(ex.method + " request not worked");
+            return false;
+        }
+        return true;
+    }
+
+    // a client that is already gone is simply not told; see Sink
+    private static void writeError(Exchange ex, String message) {
+        ex.sink.write("Error: " + message);
+    }
+
+    private static String messageOf(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    private long longParam(String name, long defaultValue) {
+        String value = getInitParameter(name);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    /** One proxied request: where the answer goes, and how to stop it early. */
+    private static final class Exchange {
+        final HttpServletResponse response;
+        final String method;
+        final IntPredicate success;
+        final Sink sink;
+        final AtomicBoolean closed = new AtomicBoolean();
+        volatile ResponseSubscriber subscriber;
+        volatile Runnable settle;
+
+        Exchange(HttpServletResponse response, String method, IntPredicate success) {
+            this.response = response;
+            this.method = method;
+            this.success = success;
+            this.sink = new Sink(response);
+        }
+
+        /** Stops relaying, writing {@code error} if given. Returns false if already closed. */
+        boolean close(String error) {
+            if (!closed.compareAndSet(false, true)) {
+                return false;
+            }
+            ResponseSubscriber s = subscriber;
+            if (s != null) {
+                s.cancel();
+            }
+            if (error != null) {
+                writeError(this, error);
+            }
+            Runnable r = settle;
+            if (r != null) {
+                r.run();
+            }
+            return true;
+        }
+    }
+
+    private static final class CacheFill {
+        final String key;
+        final CompletableFuture<ResponseCache.Entry> future;
+        final ResponseCache.Entry stale;
+
+        CacheFill(String key, CompletableFuture<ResponseCache.Entry> future, ResponseCache.Entry stale) {
+            this.key = key;
+            this.future = future;
+            this.stale = stale;
+        }
+    }
+
+    /** Keeps a copy of the body for the cache, giving up once it passes the entry size limit. */
+    private static final class ByteCapture extends ByteArrayOutputStream {
+        private final int limit;
+        private boolean overflowed;
+
+        ByteCapture(int limit) {
+            super(Math.min(limit, 8192));
+            this.limit = limit;
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            if (overflowed) {
+                return;
+            }
+            if (count + len > limit) {
+                overflowed = true;
+                buf = new byte[0];
+                count = 0;
+                return;
+            }
+            super.write(b, off, len);
+        }
+
+        void write(ByteBuffer buffer) {
+            if (buffer.hasArray()) {
+                write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            } else {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                write(bytes, 0, bytes.length);
+            }
+        }
+
+        synchronized boolean isOverflowed() {
+            return overflowed;
+        }
+    }
+
+    /**
+     * Hands upstream body chunks to the exchange's {@link Sink}, asking for
+     * the next chunk only once the sink has written the previous one. If the
+     * browser goes away mid-body and the response is being captured for the
+     * cache, it keeps reading so the entry can still be stored.
+     */
+    private static final class ResponseSubscriber implements Flow.Subscriber<List<ByteBuffer>> {
+        private final Exchange ex;
+        private final ByteCapture capture;
+        private volatile Flow.Subscription subscription;
+        private volatile boolean cancelled;
+
+        ResponseSubscriber(Exchange ex, ByteCapture capture) {
+            this.ex = ex;
+            this.capture = capture;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (cancelled) {
+                subscription.cancel();
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (cancelled) {
+                return;
+            }
+            for (ByteBuffer buffer : buffers) {
+                if (capture != null) {
+                    capture.write(buffer.duplicate());
+                }
+                if (!ex.closed.get()) {
+                    ex.sink.write(buffer);
+                }
+            }
+            ex.sink.then(this::next);
+        }
+
+        // the chunk is out (or the browser is gone)
+        private void next() {
+            if (ex.sink.isFailed() && (capture == null || capture.isOverflowed())) {
+                ex.close(null);
+                return;
+            }
+            if (!cancelled) {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        void cancel() {
+            cancelled = true;
+            Flow.Subscription s = subscription;
+            if (s != null) {
+                s.cancel();
+            }
+        }
+    }
+
+    /**
+     * Everything the relay sends the browser goes through here, so no
+     * HttpClient thread ever blocks on a slow browser. Bytes, and callbacks
+     * to run once the bytes before them are flushed, are queued in order.
+     *
+     * Until the exchange is handed to {@link #listen} or {@link #pump} the
+     * request thread owns the response and the queue is written at once.
+     * After listen() the stream is in non-blocking mode: the queue is
+     * written while isReady() allows, from whichever thread adds to it, and
+     * the container's onWritePossible writes the rest. For a request that
+     * can't go async, pump() has the waiting request thread do the writing,
+     * taking what is queued and writing it outside the lock.
+     *
+     * A write that fails means the browser is gone: later bytes are dropped
+     * but callbacks still run.
+     */
+    private static final class Sink implements WriteListener {
+        private enum Mode { DIRECT, NON_BLOCKING, PUMPED }
+
+        private final HttpServletResponse response;
+        // guarded by this, except that in PUMPED mode the pumping thread alone writes and owns
+        // out, unflushed and failure
+        private final ArrayDeque<Object> queue = new ArrayDeque<>(); // ByteBuffers, Runnables and an End
+        private Mode mode = Mode.DIRECT;
+        private ServletOutputStream out;
+        private boolean unflushed;
+        private IOException failure;
+        private volatile boolean failed;
+
+        Sink(HttpServletResponse response) {
+            this.response = response;
+        }
+
+        void write(String text) {
+            write(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        /** Queues {@code buffer}, which must not change until it has been written. */
+        void write(ByteBuffer buffer) {
+            enqueue(buffer);
+        }
+
+        /** Runs {@code callback} once everything queued before it has been written and flushed. */
+        void then(Runnable callback) {
+            enqueue(callback);
+        }
+
+        /**
+         * Runs {@code complete} once everything queued before it has been
+         * written. Completing the response flushes it, so it isn't flushed
+         * here first; that would also stop a short body from getting a
+         * Content-Length.
+         */
+        void end(Runnable complete) {
+            enqueue(new End(complete));
+        }
+
+        boolean isFailed() {
+            return failed;
+        }
+
+        /** Switches to non-blocking writes; call right after startAsync, on the request thread. */
+        void listen() throws IOException {
+            ServletOutputStream stream = response.getOutputStream();
+            synchronized (this) {
+                out = stream;
+                stream.setWriteListener(this);
+                mode = Mode.NON_BLOCKING;
+            }
+            // the container calls onWritePossible once the request thread is done
+        }
+
+        /**
+         * Has the request thread write everything {@code work} queues, until
+         * the future it returns is done and the queue is empty, or until
+         * {@code timeoutMillis} runs out.
+         */
+        void pump(Supplier<CompletableFuture<Void>> work, long timeoutMillis)
+                throws TimeoutException, ExecutionException, InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            synchronized (this) {
+                mode = Mode.PUMPED;
+            }
+            try {
+                CompletableFuture<Void> done = work.get();
+                done.whenComplete((ignored, error) -> {
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                });
+                while (true) {
+                    ArrayDeque<Object> batch;
+                    synchronized (this) {
+                        while (queue.isEmpty() && !done.isDone()) {
+                            long remaining = deadline - System.currentTimeMillis();
+                            if (remaining <= 0) {
+                                throw new TimeoutException();
+                            }
+                            wait(remaining);
+                        }
+                        if (queue.isEmpty()) {
+                            break;
+                        }
+                        batch = new ArrayDeque<>(queue);
+                        queue.clear();
+                    }
+                    // blocking writes, so outside the lock: the HttpClient thread queuing the next
+                    // chunk must not wait on the browser
+                    drain(batch).forEach(Runnable::run);
+                }
+                done.get();
+            } finally {
+                synchronized (this) {
+                    mode = Mode.DIRECT;
                 }
-                in.close();
-                response.getWriter().append(responseContent.toString());
+            }
+        }
+
+        /** For the request thread in DIRECT mode: throws if a write failed. */
+        synchronized void rethrow() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            List<Runnable> ready;
+            synchronized (this) {
+                ready = drain(queue);
+            }
+            ready.forEach(Runnable::run);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            List<Runnable> ready;
+            synchronized (this) {
+                failed = true;
+                ready = drain(queue);
+            }
+            ready.forEach(Runnable::run);
+        }
+
+        private void enqueue(Object item) {
+            List<Runnable> ready;
+            synchronized (this) {
+                queue.add(item);
+                if (mode == Mode.PUMPED) {
+                    notifyAll();
+                    return;
+                }
+                ready = drain(queue);
+            }
+            // outside the lock: a callback may ask for the next chunk, which can arrive on this thread
+            ready.forEach(Runnable::run);
+        }
+
+        // Writes what the connection takes now from items; returns the callbacks that came due
+        private List<Runnable> drain(ArrayDeque<Object> items) {
+            List<Runnable> ready = new ArrayList<>();
+            while (!items.isEmpty()) {
+                Object next = items.peek();
+                // callbacks wait too: one may ask for more, or complete the response, which writes
+                if (!failed && !canWrite()) {
+                    break;
+                }
+                if (next instanceof End) {
+                    items.poll();
+                    ready.add(((End) next).complete);
+                    continue;
+                }
+                if (next instanceof Runnable && unflushed && !failed) {
+                    unflushed = false;
+                    try {
+                        stream().flush();
+                    } catch (IOException | IllegalStateException e) {
+                        fail(e);
+                    }
+                    continue;
+                }
+                items.poll();
+                if (next instanceof Runnable) {
+                    ready.add((Runnable) next);
+                } else if (!failed) {
+                    try {
+                        writeBuffer((ByteBuffer) next);
+                        unflushed = true;
+                    } catch (IOException | IllegalStateException e) {
+                        fail(e);
+                    }
+                }
+            }
+            return ready;
+        }
+
+        private boolean canWrite() {
+            return mode != Mode.NON_BLOCKING || out.isReady();
+        }
+
+        private void writeBuffer(ByteBuffer buffer) throws IOException {
+            if (buffer.hasArray()) {
+                stream().write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
             } else {
-                response.getWriter().append("POST request not worked");
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.duplicate().get(bytes);
+                stream().write(bytes);
             }
-        } catch (Exception e) {
-            response.getWriter().append("Error: ").append(e.getMessage());
+        }
+
+        private ServletOutputStream stream() throws IOException {
+            if (out == null) {
+                out = response.getOutputStream();
+            }
+            return out;
+        }
+
+        private static final class End {
+            final Runnable complete;
+
+            End(Runnable complete) {
+                this.complete = complete;
+            }
+        }
+
+        private void fail(Exception e) {
+            failed = true;
+            failure = e instanceof IOException ? (IOException) e : new IOException(e);
         }
     }
 }
@@ -0,0 +1,36 @@
+package com.example.servlets;
+
+import com.example.background.ResumeIngestionService;
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+@WebServlet("/ingest-stats")
+public class IngestStatsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        ResumeIngestionService ingestion = (ResumeIngestionService) getServletContext().getAttribute("resumeIngestion");
+        response.setContentType("text/plain;charset=UTF-8");
+        PrintWriter out = response.getWriter();
+        if (ingestion == null) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            out.println("Resume ingestion is not running.");
+            return;
+        }
+
+        out.println("queue_depth: " + ingestion.getQueueDepth());
+        out.println("queue_capacity: " + ingestion.getQueueCapacity());
+        out.println("accepted: " + ingestion.getAcceptedCount());
+        out.println("rejected: " + ingestion.getRejectedCount());
+        out.println("rows_flushed: " + ingestion.getFlushedRowCount());
+        out.println("rows_failed: " + ingestion.getFailedRowCount());
+        out.println("flushes: " + ingestion.getFlushCount());
+        out.println("flush_avg_ms: " + String.format("%.3f", ingestion.getAverageFlushMillis()));
+        out.println("flush_max_ms: " + String.format("%.3f", ingestion.getMaxFlushMillis()));
+    }
+}
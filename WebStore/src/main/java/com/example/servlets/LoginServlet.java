@@ -2,6 +2,7 @@ package com.example.servlets;
 
 import com.example.model.User;
 import com.example.model.UserDAO;
+import com.example.session.SessionPrincipal;
 import java.io.IOException;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -23,7 +24,10 @@ public class LoginServlet extends HttpServlet {
 
         if (user != null && user.getPassword().equals(password)) { // In a real app, verify hashed password
             HttpSession session = request.getSession();
-            session.setAttribute("user", user);
+            // a new id on login, so one planted in the browser beforehand isn't logged in too
+            request.changeSessionId();
+            // only who is logged in; the rest of the row stays in the database
+            session.setAttribute("user", new SessionPrincipal(user.getId(), user.getUsername()));
             response.sendRedirect("dashboard.jsp");
         } else {
             response.sendRedirect("login.jsp?error=1");
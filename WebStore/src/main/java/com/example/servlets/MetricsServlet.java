@@ -0,0 +1,133 @@
+package com.example.servlets;
+
+import com.example.http.CompressionStats;
+import com.example.http.ConditionalGet;
+import com.example.http.DeflaterPool;
+import com.example.metrics.HttpMetrics;
+import com.example.metrics.RouteMetrics;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.Locale;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * The per-route request metrics collected by MetricsFilter, and the
+ * CompressionFilter and ConditionalGetFilter counters when they are running,
+ * in the Prometheus text exposition format.
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        HttpMetrics metrics = (HttpMetrics) getServletContext().getAttribute("httpMetrics");
+        response.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        PrintWriter out = response.getWriter();
+        if (metrics == null) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            out.println("# MetricsFilter is not running.");
+            return;
+        }
+        Collection<RouteMetrics> routes = metrics.getRoutes().values();
+
+        header(out, "webstore_http_requests_total", "counter", "Requests handled, by route.");
+        for (RouteMetrics route : routes) {
+            out.println("webstore_http_requests_total{route=\"" + escape(route.getRoute()) + "\"} " + route.getRequestCount());
+        }
+
+        header(out, "webstore_http_responses_total", "counter", "Responses by route and status class.");
+        for (RouteMetrics route : routes) {
+            for (int statusClass = 1; statusClass <= 5; statusClass++) {
+                long count = route.getStatusClassCount(statusClass);
+                if (count > 0) {
+                    out.println("webstore_http_responses_total{route=\"" + escape(route.getRoute())
+                            + "\",status=\"" + statusClass + "xx\"} " + count);
+                }
+            }
+        }
+
+        header(out, "webstore_http_request_errors_total", "counter", "Requests that threw or ended with a 5xx status.");
+        for (RouteMetrics route : routes) {
+            out.println("webstore_http_request_errors_total{route=\"" + escape(route.getRoute()) + "\"} " + route.getErrorCount());
+        }
+
+        header(out, "webstore_http_requests_in_flight", "gauge", "Requests being handled right now.");
+        for (RouteMetrics route : routes) {
+            out.println("webstore_http_requests_in_flight{route=\"" + escape(route.getRoute()) + "\"} " + route.getInFlight());
+        }
+
+        header(out, "webstore_http_request_duration_seconds", "summary",
+                "Request latency; quantiles cover the last " + metrics.getWindowMillis() / 1000 + " s, sum and count all time.");
+        for (RouteMetrics route : routes) {
+            String label = "route=\"" + escape(route.getRoute()) + "\"";
+            double[] values = route.getQuantileSeconds(QUANTILES);
+            for (int i = 0; i < QUANTILES.length; i++) {
+                out.println("webstore_http_request_duration_seconds{" + label + ",quantile=\"" + QUANTILES[i] + "\"} "
+                        + format(values[i]));
+            }
+            out.println("webstore_http_request_duration_seconds_sum{" + label + "} " + format(route.getTotalSeconds()));
+            out.println("webstore_http_request_duration_seconds_count{" + label + "} " + route.getRequestCount());
+        }
+
+        CompressionStats compression = (CompressionStats) getServletContext().getAttribute("compression");
+        if (compression != null) {
+            writeCompression(out, compression);
+        }
+        ConditionalGet conditionalGet = (ConditionalGet) getServletContext().getAttribute("conditionalGet");
+        if (conditionalGet != null) {
+            writeConditionalGet(out, conditionalGet);
+        }
+    }
+
+    private static void writeConditionalGet(PrintWriter out, ConditionalGet conditionalGet) {
+        header(out, "webstore_etag_responses_total", "counter", "GET responses by where their ETag came from.");
+        out.println("webstore_etag_responses_total{source=\"version\"} " + conditionalGet.getVersionedCount());
+        out.println("webstore_etag_responses_total{source=\"hash\"} " + conditionalGet.getHashedCount());
+        out.println("webstore_etag_responses_total{source=\"none\"} " + conditionalGet.getUnhashedCount());
+        header(out, "webstore_etag_not_modified_total", "counter", "304 Not Modified responses sent.");
+        out.println("webstore_etag_not_modified_total " + conditionalGet.getNotModifiedCount());
+    }
+
+    private static void writeCompression(PrintWriter out, CompressionStats stats) {
+        header(out, "webstore_compression_responses_total", "counter", "Responses by what CompressionFilter did with them.");
+        out.println("webstore_compression_responses_total{outcome=\"compressed\"} " + stats.getCompressedCount());
+        out.println("webstore_compression_responses_total{outcome=\"too_small\"} " + stats.getTooSmallCount());
+        out.println("webstore_compression_responses_total{outcome=\"skipped\"} " + stats.getSkippedCount());
+        out.println("webstore_compression_responses_total{outcome=\"not_accepted\"} " + stats.getNotAcceptedCount());
+
+        header(out, "webstore_compression_bytes_in_total", "counter", "Body bytes written by servlets into compressed responses.");
+        out.println("webstore_compression_bytes_in_total " + stats.getBytesIn());
+        header(out, "webstore_compression_bytes_out_total", "counter", "Bytes those responses took on the wire.");
+        out.println("webstore_compression_bytes_out_total " + stats.getBytesOut());
+
+        DeflaterPool pool = stats.getDeflaterPool();
+        header(out, "webstore_compression_deflaters_total", "counter", "Deflater borrows, by whether the pool had one idle.");
+        out.println("webstore_compression_deflaters_total{source=\"created\"} " + pool.getCreatedCount());
+        out.println("webstore_compression_deflaters_total{source=\"reused\"} " + pool.getReusedCount());
+        header(out, "webstore_compression_deflaters_idle", "gauge", "Deflaters waiting in the pool.");
+        out.println("webstore_compression_deflaters_idle " + pool.getIdleCount());
+    }
+
+    private static void header(PrintWriter out, String name, String type, String help) {
+        out.println("# HELP " + name + " " + help);
+        out.println("# TYPE " + name + " " + type);
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN"; // no requests in the window
+        }
+        return String.format(Locale.ROOT, "%.6f", value);
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.servlets;
+
+import com.example.db.ConnectionPool;
+import com.example.db.StatementCache;
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+@WebServlet("/pool-stats")
+public class PoolStatsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        ConnectionPool pool = (ConnectionPool) getServletContext().getAttribute("connectionPool");
+        response.setContentType("text/plain;charset=UTF-8");
+        PrintWriter out = response.getWriter();
+        if (pool == null) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            out.println("Connection pool is not running.");
+            return;
+        }
+
+        out.println("active: " + pool.getActiveCount());
+        out.println("idle: " + pool.getIdleCount());
+        out.println("total: " + pool.getTotalCount());
+        out.println("max: " + pool.getConfig().getMaxSize());
+        out.println("waiting: " + pool.getWaitingCount());
+        out.println("borrows: " + pool.getBorrowCount());
+        out.println("borrow_timeouts: " + pool.getTimeoutCount());
+        out.println("borrow_avg_ms: " + String.format("%.3f", pool.getAverageBorrowMillis()));
+        out.println("borrow_max_ms: " + String.format("%.3f", pool.getMaxBorrowMillis()));
+        out.println("connections_created: " + pool.getCreatedCount());
+        out.println("connections_evicted: " + pool.getEvictedCount());
+
+        StatementCache.Stats statements = pool.getStatementCacheStats();
+        out.println("statement_cache_size: " + pool.getConfig().getStatementCacheSize());
+        out.println("statement_cache_hits: " + statements.getHitCount());
+        out.println("statement_cache_misses: " + statements.getMissCount());
+        out.println("statement_cache_evictions: " + statements.getEvictionCount());
+        out.println("statement_cache_hit_rate: " + String.format("%.3f", statements.getHitRate()));
+    }
+}
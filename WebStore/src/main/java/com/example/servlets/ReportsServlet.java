@@ -0,0 +1,418 @@
+package com.example.servlets;
+
+import com.example.background.JobScheduler;
+import com.example.background.ReportStore;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.UnavailableException;
+import javax.servlet.WriteListener;
+import javax.servlet.annotation.WebInitParam;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the {@link ReportStore} incrementally instead of as one full page.
+ *
+ * GET /reports returns a JSON page of reports, oldest first. With
+ * {@code since=N} it returns reports from sequence N on (use the "newer"
+ * cursor of the response to poll for the next delta); with {@code before=N},
+ * or no cursor at all, it returns the page just before N (use "older" to keep
+ * paging back). {@code limit} sets the page size.
+ *
+ * GET /reports/stream is a Server-Sent Events stream that pushes each report
+ * once, as it is generated. It resumes from the Last-Event-ID header or the
+ * {@code since} parameter, so a reconnecting client only gets what it missed.
+ * Streams are written without blocking: one pusher thread queues the events
+ * of each stream and writes them while the connection can take them, and the
+ * container's write callback sends the rest. A stream only has one batch of
+ * events queued at a time, so a slow client is sent less, not more. Every
+ * {@code heartbeatMillis} a comment line is queued, and a stream that hasn't
+ * been able to write anything for {@code writeTimeoutMillis} is dropped.
+ */
+@WebServlet(
+    urlPatterns = {"/reports", "/reports/stream"},
+    asyncSupported = true,
+    initParams = {
+        @WebInitParam(name = "pageSize", value = "50"),
+        @WebInitParam(name = "maxPageSize", value = "500"),
+        @WebInitParam(name = "maxStreams", value = "500"),
+        @WebInitParam(name = "heartbeatMillis", value = "15000"),
+        @WebInitParam(name = "writeTimeoutMillis", value = "30000")
+    }
+)
+public class ReportsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private transient ReportStore reports;
+    private transient ExecutorService pusher;
+    private transient Set<Stream> streams;
+    private transient Consumer<ReportStore.Report> onReport;
+    private transient JobScheduler.Job heartbeat;
+    private int pageSize;
+    private int maxPageSize;
+    private int maxStreams;
+    private long writeTimeoutMillis;
+
+    @Override
+    public void init() throws ServletException {
+        reports = (ReportStore) getServletContext().getAttribute("reports");
+        if (reports == null) {
+            throw new UnavailableException("No report store in the servlet context");
+        }
+        pageSize = intParam("pageSize", 50);
+        maxPageSize = intParam("maxPageSize", 500);
+        maxStreams = intParam("maxStreams", 500);
+        writeTimeoutMillis = intParam("writeTimeoutMillis", 30000);
+
+        streams = ConcurrentHashMap.newKeySet();
+        pusher = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "report-stream-pusher");
+            t.setDaemon(true);
+            return t;
+        });
+        onReport = report -> submit(this::pushAll);
+        reports.addListener(onReport);
+
+        JobScheduler scheduler = (JobScheduler) getServletContext().getAttribute("jobScheduler");
+        int heartbeatMillis = intParam("heartbeatMillis", 15000);
+        if (scheduler != null && heartbeatMillis > 0) {
+            heartbeat = scheduler.scheduleWithFixedDelay("report-stream-heartbeat",
+                    () -> submit(this::heartbeatAll), heartbeatMillis, heartbeatMillis, 0);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        reports.removeListener(onReport);
+        if (heartbeat != null) {
+            heartbeat.cancel();
+        }
+        pusher.shutdownNow();
+        for (Stream stream : streams) {
+            stream.close();
+        }
+    }
+
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        if ("/reports/stream".equals(request.getServletPath())) {
+            openStream(request, response);
+        } else {
+            page(request, response);
+        }
+    }
+
+    private void page(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Long since;
+        Long before;
+        int limit;
+        try {
+            since = longParam(request, "since");
+            before = longParam(request, "before");
+            Long requested = longParam(request, "limit");
+            limit = requested == null ? pageSize : (int) Math.max(1, Math.min(maxPageSize, requested));
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "since, before and limit must be numbers");
+            return;
+        }
+
+        long oldest = reports.getOldestSequence();
+        List<ReportStore.Report> page;
+        long newer;
+        if (since != null) {
+            page = reports.getSince(since, limit);
+            newer = page.isEmpty() ? Math.max(since, oldest) : page.get(page.size() - 1).getSequence() + 1;
+        } else {
+            long end = before != null ? before : reports.getNextSequence();
+            page = reports.getBefore(end, limit);
+            newer = page.isEmpty() ? Math.min(end, reports.getNextSequence()) : page.get(page.size() - 1).getSequence() + 1;
+        }
+        Long older = !page.isEmpty() && page.get(0).getSequence() > oldest ? page.get(0).getSequence() : null;
+
+        response.setContentType("application/json;charset=UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        PrintWriter out = response.getWriter();
+        out.print("{\"reports\":[");
+        for (int i = 0; i < page.size(); i++) {
+            if (i > 0) {
+                out.print(',');
+            }
+            out.print(toJson(page.get(i)));
+        }
+        out.print("],\"newer\":" + newer);
+        out.print(",\"older\":" + older);
+        out.print(",\"oldest\":" + oldest);
+        out.print("}");
+    }
+
+    private void openStream(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long cursor;
+        try {
+            String lastEventId = request.getHeader("Last-Event-ID");
+            Long since = longParam(request, "since");
+            cursor = lastEventId != null ? Long.parseLong(lastEventId.trim()) + 1
+                    : since != null ? since : reports.getNextSequence();
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "since and Last-Event-ID must be numbers");
+            return;
+        }
+        if (streams.size() >= maxStreams) {
+            response.setHeader("Retry-After", "30");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many report streams");
+            return;
+        }
+
+        response.setContentType("text/event-stream;charset=UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("X-Accel-Buffering", "no");
+
+        if (!request.isAsyncSupported()) {
+            // can't hold the connection open: send what is there and let EventSource reconnect
+            Stream once = new Stream(null, response.getOutputStream(), cursor);
+            once.send("retry: 10000\n\n");
+            once.catchUp();
+            return;
+        }
+
+        AsyncContext async = request.startAsync();
+        async.setTimeout(0); // held open until the client leaves; stalled streams are dropped by heartbeatAll
+        Stream stream = new Stream(async, response.getOutputStream(), cursor);
+        async.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                streams.remove(stream);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                stream.close();
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                stream.close();
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        stream.send("retry: 5000\n\n");
+        // the container's first onWritePossible sends the retry, then catches up
+        stream.listen();
+        streams.add(stream);
+    }
+
+    private void submit(Runnable task) {
+        try {
+            pusher.execute(task);
+        } catch (RejectedExecutionException e) {
+            // shutting down
+        }
+    }
+
+    // pusher thread only
+    private void pushAll() {
+        for (Stream stream : streams) {
+            catchUp(stream);
+        }
+    }
+
+    // pusher thread only
+    private void catchUp(Stream stream) {
+        try {
+            stream.catchUp();
+        } catch (IOException e) {
+            stream.close();
+        }
+    }
+
+    // pusher thread only
+    private void heartbeatAll() {
+        long now = System.currentTimeMillis();
+        for (Stream stream : streams) {
+            if (stream.isStalled(now - writeTimeoutMillis)) {
+                // the client stopped reading; nothing we write will reach it
+                stream.close();
+                continue;
+            }
+            try {
+                if (stream.isIdle()) {
+                    stream.send(": keep-alive\n\n");
+                }
+            } catch (IOException e) {
+                stream.close();
+            }
+        }
+    }
+
+    /**
+     * One client's event stream. Held streams are written in non-blocking
+     * mode: {@link #send} queues the bytes and writes what the connection
+     * takes now, and the container calls {@link #onWritePossible} when it
+     * can take the rest. The one-shot stream of a request that can't go
+     * async is written with ordinary blocking writes.
+     */
+    private final class Stream implements WriteListener {
+        private final AsyncContext async;
+        private final ServletOutputStream out;
+        private long cursor; // pusher thread only
+        // guarded by this
+        private final ArrayDeque<byte[]> queue = new ArrayDeque<>();
+        private boolean listening;
+        private boolean unflushed;
+        private long stalledSince; // since when the connection has taken nothing, 0 while it takes writes
+
+        Stream(AsyncContext async, ServletOutputStream out, long cursor) {
+            this.async = async;
+            this.out = out;
+            this.cursor = cursor;
+        }
+
+        /** Sends the reports the client hasn't seen yet, until the connection can't take more. */
+        void catchUp() throws IOException {
+            List<ReportStore.Report> batch;
+            while (isIdle() && !(batch = reports.getSince(cursor, maxPageSize)).isEmpty()) {
+                StringBuilder events = new StringBuilder();
+                for (ReportStore.Report report : batch) {
+                    events.append("id: ").append(report.getSequence()).append('\n')
+                          .append("event: report\n")
+                          .append("data: ").append(toJson(report)).append("\n\n");
+                }
+                send(events.toString());
+                cursor = batch.get(batch.size() - 1).getSequence() + 1;
+            }
+        }
+
+        void send(String text) throws IOException {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            if (async == null) {
+                out.write(bytes);
+                out.flush();
+                return;
+            }
+            synchronized (this) {
+                queue.add(bytes);
+                if (listening) {
+                    drain();
+                }
+            }
+        }
+
+        /** Switches the stream to non-blocking writes; the container then calls onWritePossible. */
+        synchronized void listen() {
+            out.setWriteListener(this);
+            listening = true;
+        }
+
+        /** Whether everything sent so far has gone out. */
+        synchronized boolean isIdle() {
+            return queue.isEmpty() && !unflushed;
+        }
+
+        /** Whether the connection has been full since before {@code millis}. */
+        synchronized boolean isStalled(long millis) {
+            return stalledSince != 0 && stalledSince < millis;
+        }
+
+        @Override
+        public void onWritePossible() throws IOException {
+            boolean idle;
+            synchronized (this) {
+                idle = drain();
+            }
+            if (idle) {
+                // the last batch is out; queue the next, if any came in meanwhile
+                submit(() -> ReportsServlet.this.catchUp(this));
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            close();
+        }
+
+        // Writes from the queue while the connection takes it; true once it is all out
+        private boolean drain() throws IOException {
+            while (out.isReady()) {
+                stalledSince = 0;
+                byte[] next = queue.poll();
+                if (next != null) {
+                    out.write(next);
+                    unflushed = true;
+                } else if (unflushed) {
+                    unflushed = false;
+                    out.flush();
+                } else {
+                    return true;
+                }
+            }
+            if (stalledSince == 0) {
+                stalledSince = System.currentTimeMillis();
+            }
+            return false;
+        }
+
+        void close() {
+            if (streams.remove(this) && async != null) {
+                try {
+                    async.complete();
+                } catch (IllegalStateException e) {
+                    // already completed by the container
+                }
+            }
+        }
+    }
+
+    private static String toJson(ReportStore.Report report) {
+        return "{\"sequence\":" + report.getSequence()
+                + ",\"createdAt\":" + report.getCreatedAtMillis()
+                + ",\"text\":" + jsonString(report.getText()) + "}";
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static Long longParam(HttpServletRequest request, String name) {
+        String value = request.getParameter(name);
+        return value == null || value.trim().isEmpty() ? null : Long.parseLong(value.trim());
+    }
+
+    private int intParam(String name, int defaultValue) {
+        String value = getInitParameter(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
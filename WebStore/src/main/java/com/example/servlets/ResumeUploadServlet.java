@@ -1,30 +1,44 @@
 package com.example.servlets;
 
+import com.example.background.ResumeIngestionService;
 import com.example.model.Resume;
 import com.example.model.ResumeDAO;
-import com.example.model.User;
+import com.example.model.ResumeParser;
+import com.example.session.SessionPrincipal;
 import java.io.IOException;
 import java.io.InputStream;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.MultipartConfig;
+import javax.servlet.annotation.WebInitParam;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import javax.servlet.http.Part;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
-@WebServlet("/upload-resume")
-@MultipartConfig
+@WebServlet(
+    urlPatterns = "/upload-resume",
+    initParams = {
+        // "stream" (StAX, constant memory) or "dom" (builds the whole document)
+        @WebInitParam(name = "parseMode", value = "stream")
+    }
+)
+@MultipartConfig(maxFileSize = ResumeUploadServlet.MAX_FILE_BYTES, maxRequestSize = ResumeUploadServlet.MAX_REQUEST_BYTES)
 public class ResumeUploadServlet extends HttpServlet {
     private static final long serialVersionUID = 1L;
 
+    static final long MAX_FILE_BYTES = 1024 * 1024;
+    static final long MAX_REQUEST_BYTES = MAX_FILE_BYTES + 64 * 1024; // room for the multipart envelope
+
+    private boolean streaming;
+
+    @Override
+    public void init() throws ServletException {
+        String mode = getInitParameter("parseMode");
+        streaming = mode == null || !"dom".equalsIgnoreCase(mode.trim());
+    }
+
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         HttpSession session = request.getSession(false);
         if (session == null || session.getAttribute("user") == null) {
@@ -32,34 +46,44 @@ public class ResumeUploadServlet extends HttpServlet {
             return;
         }
 
-        User user = (User) session.getAttribute("user");
-        Part filePart = request.getPart("resume");
-
-        try (InputStream fileContent = filePart.getInputStream()) {
-            DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-            Document doc = dBuilder.parse(fileContent);
-            doc.getDocumentElement().normalize();
+        // Reject from the declared length before the container reads (and spools) the body
+        if (request.getContentLengthLong() > MAX_REQUEST_BYTES) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                    "Resume uploads are limited to " + MAX_FILE_BYTES + " bytes");
+            return;
+        }
 
-            StringBuilder resumeText = new StringBuilder();
-            NodeList nList = doc.getElementsByTagName("resume");
+        SessionPrincipal user = (SessionPrincipal) session.getAttribute("user");
+        Part filePart;
+        try {
+            filePart = request.getPart("resume");
+        } catch (IllegalStateException e) {
+            // chunked upload that went past maxFileSize/maxRequestSize while being read
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                    "Resume uploads are limited to " + MAX_FILE_BYTES + " bytes");
+            return;
+        }
 
-            for (int temp = 0; temp < nList.getLength(); temp++) {
-                Node nNode = nList.item(temp);
-                if (nNode.getNodeType() == Node.ELEMENT_NODE) {
-                    Element eElement = (Element) nNode;
-                    resumeText.append("Name: ").append(eElement.getElementsByTagName("name").item(0).getTextContent()).append("\n");
-                    resumeText.append("Email: ".concat(eElement.getElementsByTagName("email").item(0).getTextContent())).append("\n");
-                    resumeText.append("Phone: ").append(eElement.getElementsByTagName("phone").item(0).getTextContent()).append("\n");
-                }
-            }
+        try (InputStream fileContent = filePart.getInputStream()) {
+            String resumeText = streaming
+                    ? ResumeParser.parseStreaming(fileContent)
+                    : ResumeParser.parseDom(fileContent);
 
             Resume resume = new Resume();
             resume.setUserId(user.getId());
-            resume.setResumeText(resumeText.toString());
+            resume.setResumeText(resumeText);
 
-            ResumeDAO resumeDAO = new ResumeDAO();
-            resumeDAO.saveResume(resume);
+            ResumeIngestionService ingestion =
+                    (ResumeIngestionService) getServletContext().getAttribute("resumeIngestion");
+            if (ingestion == null) {
+                // no background queue running; write it ourselves
+                new ResumeDAO().saveResume(resume);
+            } else if (!ingestion.offer(resume)) {
+                response.setHeader("Retry-After", "5");
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                        "Too many resumes waiting to be saved, please try again shortly");
+                return;
+            }
 
             response.sendRedirect("dashboard.jsp?upload=success");
 
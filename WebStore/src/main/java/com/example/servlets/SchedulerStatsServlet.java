@@ -0,0 +1,39 @@
+package com.example.servlets;
+
+import com.example.background.JobScheduler;
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+@WebServlet("/scheduler-stats")
+public class SchedulerStatsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        JobScheduler scheduler = (JobScheduler) getServletContext().getAttribute("jobScheduler");
+        response.setContentType("text/plain;charset=UTF-8");
+        PrintWriter out = response.getWriter();
+        if (scheduler == null) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            out.println("The job scheduler is not running.");
+            return;
+        }
+
+        for (JobScheduler.Job job : scheduler.getJobs()) {
+            String prefix = "job_" + job.getName().replace('-', '_') + "_";
+            out.println(prefix + "mode: " + (job.isFixedRate() ? "fixed-rate" : "fixed-delay"));
+            out.println(prefix + "period_ms: " + job.getPeriodMillis());
+            out.println(prefix + "running: " + job.isRunning());
+            out.println(prefix + "runs: " + job.getRunCount());
+            out.println(prefix + "failures: " + job.getFailureCount());
+            out.println(prefix + "missed: " + job.getMissedCount());
+            out.println(prefix + "last_ms: " + String.format("%.3f", job.getLastDurationMillis()));
+            out.println(prefix + "avg_ms: " + String.format("%.3f", job.getAverageDurationMillis()));
+            out.println(prefix + "max_ms: " + String.format("%.3f", job.getMaxDurationMillis()));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.servlets;
+
+import com.example.session.OffHeapSessionStore;
+import com.example.session.SessionManager;
+import com.example.session.SessionStore;
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+@WebServlet("/session-stats")
+public class SessionStatsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        SessionManager sessions = (SessionManager) getServletContext().getAttribute("sessionManager");
+        response.setContentType("text/plain;charset=UTF-8");
+        PrintWriter out = response.getWriter();
+        if (sessions == null) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            out.println("Sessions are kept by the container (session.store is \"container\").");
+            return;
+        }
+
+        SessionStore store = sessions.getStore();
+        out.println("store: " + store.getClass().getSimpleName());
+        out.println("sessions: " + store.size());
+        out.println("loads: " + sessions.getLoadCount());
+        out.println("load_misses: " + sessions.getMissCount());
+        out.println("expired_on_load: " + sessions.getExpiredCount());
+        out.println("created: " + sessions.getCreatedCount());
+        out.println("saves: " + sessions.getSaveCount());
+        out.println("save_avg_bytes: " + String.format("%.1f", sessions.getAverageSavedBytes()));
+        out.println("touches: " + sessions.getTouchCount());
+        out.println("unchanged: " + sessions.getUnchangedCount());
+        out.println("invalidated: " + sessions.getInvalidatedCount());
+        out.println("evicted: " + sessions.getEvictedCount());
+        out.println("failures: " + sessions.getFailureCount());
+        if (store instanceof OffHeapSessionStore) {
+            OffHeapSessionStore offHeap = (OffHeapSessionStore) store;
+            out.println("offheap_used_bytes: " + offHeap.getUsedBytes());
+            out.println("offheap_capacity_bytes: " + offHeap.getCapacityBytes());
+            out.println("offheap_compactions: " + offHeap.getCompactionCount());
+        }
+    }
+}
@@ -1,30 +1,155 @@
 package com.example.servlets;
 
-import com.example.model.Student; // Assuming a simple Student POJO
+import com.example.model.Student;
+import com.example.model.StudentDAO;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.PrintWriter;
+import java.sql.SQLException;
 import java.util.List;
 import javax.servlet.ServletException;
+import javax.servlet.annotation.WebInitParam;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-@WebServlet("/student-list")
+/**
+ * Lists the students a page at a time, in id order.
+ *
+ * {@code after=N} starts the page after student N (use the "next" cursor of
+ * the previous page; leave it out for the first page) and {@code limit}
+ * sets the page size. Every page costs the same, however far in it is.
+ *
+ * With {@code format=json}, or an Accept header asking for JSON, the page
+ * is written as JSON row by row as it is read from the database. Otherwise
+ * it is rendered by student-list.jsp.
+ */
+@WebServlet(
+    urlPatterns = "/student-list",
+    initParams = {
+        @WebInitParam(name = "pageSize", value = "50"),
+        @WebInitParam(name = "maxPageSize", value = "500")
+    }
+)
 public class StudentListServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private final StudentDAO studentDAO = new StudentDAO();
+    private int pageSize;
+    private int maxPageSize;
+
+    @Override
+    public void init() throws ServletException {
+        pageSize = intParam("pageSize", 50);
+        maxPageSize = intParam("maxPageSize", 500);
+    }
+
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
+        int after;
+        int limit;
+        try {
+            after = intParam(request, "after", 0);
+            limit = Math.max(1, Math.min(maxPageSize, intParam(request, "limit", pageSize)));
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "after and limit must be numbers");
+            return;
+        }
+
+        try {
+            if (wantsJson(request, response)) {
+                writeJson(response, after, limit);
+            } else {
+                // one row more than the page tells us whether there is a next one
+                List<Student> students = studentDAO.getPage(after, limit + 1);
+                Integer next = null;
+                if (students.size() > limit) {
+                    students = students.subList(0, limit);
+                    next = students.get(limit - 1).getId();
+                }
+                request.setAttribute("studentList", students);
+                request.setAttribute("next", next);
+                request.setAttribute("limit", limit);
+                request.getRequestDispatcher("student-list.jsp").forward(request, response);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Could not read the students");
+            }
+            // otherwise the client gets a truncated body, which won't parse
+        }
+    }
 
-        // 1. Get data from a DAO (or create a dummy list for demo)
-        List<Student> students = new ArrayList<>();
-        students.add(new Student(1, "Alice", "alice@example.com"));
-        students.add(new Student(2, "Bob", "bob@example.com"));
-        students.add(new Student(3, "Charlie", "charlie@example.com"));
+    private void writeJson(HttpServletResponse response, int after, int limit) throws SQLException, IOException {
+        response.setContentType("application/json;charset=UTF-8");
+        PrintWriter out = response.getWriter();
+        int[] written = {0};
+        int[] lastId = {after};
+        out.print("{\"students\":[");
+        int rows = studentDAO.forEachInPage(after, limit + 1, student -> {
+            if (written[0] == limit) {
+                return; // the extra row only says there is a next page
+            }
+            writeRow(out, student, written[0] > 0);
+            written[0]++;
+            lastId[0] = student.getId();
+        });
+        out.print("],\"next\":" + (rows > limit ? String.valueOf(lastId[0]) : "null") + "}");
+    }
 
-        // 2. Set the data as a request attribute
-        request.setAttribute("studentList", students);
+    private static void writeRow(PrintWriter out, Student student, boolean comma) {
+        if (comma) {
+            out.print(',');
+        }
+        out.print("{\"id\":" + student.getId()
+                + ",\"name\":" + jsonString(student.getName())
+                + ",\"email\":" + jsonString(student.getEmail()) + "}");
+    }
+
+    private static boolean wantsJson(HttpServletRequest request, HttpServletResponse response) {
+        String format = request.getParameter("format");
+        if (format != null) {
+            return "json".equalsIgnoreCase(format.trim());
+        }
+        // the same URL gives HTML or JSON, so caches must key on Accept too
+        response.addHeader("Vary", "Accept");
+        String accept = request.getHeader("Accept");
+        return accept != null && accept.contains("application/json") && !accept.contains("text/html");
+    }
+
+    private static String jsonString(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static int intParam(HttpServletRequest request, String name, int defaultValue) {
+        String value = request.getParameter(name);
+        return value == null || value.trim().isEmpty() ? defaultValue : Integer.parseInt(value.trim());
+    }
 
-        // 3. Forward to the JSP for presentation
-        request.getRequestDispatcher("student-list.jsp").forward(request, response);
+    private int intParam(String name, int defaultValue) {
+        String value = getInitParameter(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
     }
 }
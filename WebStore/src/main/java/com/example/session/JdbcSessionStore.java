@@ -0,0 +1,138 @@
+package com.example.session;
+
+import com.example.db.Database;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * {@link SessionStore} in the shared database, so every WebStore node sees
+ * the same sessions and the load balancer doesn't need sticky routing.
+ *
+ * Sessions live in the web_sessions table, which is created on first use.
+ * The expiry time is stored next to the attributes and indexed, so eviction
+ * is a ranged DELETE rather than a scan.
+ */
+public class JdbcSessionStore implements SessionStore {
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS web_sessions (" +
+            "id VARCHAR(64) PRIMARY KEY, " +
+            "created_at BIGINT NOT NULL, " +
+            "last_accessed BIGINT NOT NULL, " +
+            "max_inactive INT NOT NULL, " +
+            "expires_at BIGINT NOT NULL, " +
+            "attributes BLOB NOT NULL)";
+    private static final String CREATE_INDEX = "CREATE INDEX idx_web_sessions_expires_at ON web_sessions (expires_at)";
+
+    private static final String SELECT = "SELECT created_at, last_accessed, max_inactive, attributes FROM web_sessions WHERE id = ?";
+    private static final String UPSERT = "INSERT INTO web_sessions (id, created_at, last_accessed, max_inactive, expires_at, attributes) " +
+            "VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE last_accessed = VALUES(last_accessed), " +
+            "max_inactive = VALUES(max_inactive), expires_at = VALUES(expires_at), attributes = VALUES(attributes)";
+    private static final String TOUCH = "UPDATE web_sessions SET last_accessed = ?, " +
+            "expires_at = CASE WHEN max_inactive > 0 THEN ? + max_inactive * 1000 ELSE expires_at END WHERE id = ?";
+    private static final String DELETE = "DELETE FROM web_sessions WHERE id = ?";
+    private static final String EVICT = "DELETE FROM web_sessions WHERE expires_at < ? LIMIT ?";
+    private static final String COUNT = "SELECT COUNT(*) FROM web_sessions";
+
+    public JdbcSessionStore() throws IOException {
+        try (Connection conn = Database.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(CREATE_TABLE);
+            try {
+                stmt.executeUpdate(CREATE_INDEX);
+            } catch (SQLException e) {
+                // already there; MySQL has no CREATE INDEX IF NOT EXISTS
+            }
+        } catch (SQLException e) {
+            throw new IOException("Could not create the web_sessions table", e);
+        }
+    }
+
+    @Override
+    public SessionRecord load(String id) throws IOException {
+        try (Connection conn = Database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SELECT)) {
+            stmt.setString(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return new SessionRecord(id, rs.getLong(1), rs.getLong(2), rs.getInt(3), rs.getBytes(4));
+            }
+        } catch (SQLException e) {
+            throw new IOException("Could not load session", e);
+        }
+    }
+
+    @Override
+    public void save(SessionRecord session) throws IOException {
+        try (Connection conn = Database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(UPSERT)) {
+            stmt.setString(1, session.getId());
+            stmt.setLong(2, session.getCreatedMillis());
+            stmt.setLong(3, session.getLastAccessedMillis());
+            stmt.setInt(4, session.getMaxInactiveSeconds());
+            stmt.setLong(5, session.getExpiresAtMillis());
+            stmt.setBytes(6, session.getAttributes());
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new IOException("Could not save session", e);
+        }
+    }
+
+    @Override
+    public void touch(String id, long lastAccessedMillis) throws IOException {
+        try (Connection conn = Database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(TOUCH)) {
+            stmt.setLong(1, lastAccessedMillis);
+            stmt.setLong(2, lastAccessedMillis);
+            stmt.setString(3, id);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new IOException("Could not touch session", e);
+        }
+    }
+
+    @Override
+    public void delete(String id) throws IOException {
+        try (Connection conn = Database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(DELETE)) {
+            stmt.setString(1, id);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new IOException("Could not delete session", e);
+        }
+    }
+
+    @Override
+    public int evictExpired(long nowMillis, int batchSize) throws IOException {
+        try (Connection conn = Database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(EVICT)) {
+            stmt.setLong(1, nowMillis);
+            stmt.setInt(2, batchSize);
+            return stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new IOException("Could not evict expired sessions", e);
+        }
+    }
+
+    @Override
+    public int size() throws IOException {
+        try (Connection conn = Database.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(COUNT)) {
+            rs.next();
+            return rs.getInt(1);
+        } catch (SQLException e) {
+            throw new IOException("Could not count sessions", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        // connections belong to the shared pool
+    }
+}
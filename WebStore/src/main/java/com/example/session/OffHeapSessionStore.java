@@ -0,0 +1,277 @@
+package com.example.session;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Local {@link SessionStore} that keeps session bytes outside the Java heap:
+ * in a direct buffer, or in a memory-mapped file when one is given, in which
+ * case sessions also survive a restart of this node.
+ *
+ * Records are appended to the buffer; saving a session again appends a new
+ * copy and marks the old one dead. When the buffer is full the live records
+ * are slid down over the dead ones. Touching a session rewrites only its
+ * last-access time, in place. The heap holds just an index of id to offset
+ * and expiry time.
+ *
+ * Record layout: int state (0 = end of data, 1 = live, 2 = dead), int
+ * record length, long created, long last accessed, int max inactive
+ * seconds, short id length, id bytes, int attributes length, attribute bytes.
+ */
+public class OffHeapSessionStore implements SessionStore {
+
+    private static final int MAGIC = 0x57535331; // "WSS1"
+    private static final int HEADER_BYTES = 8;
+    private static final int END = 0;
+    private static final int LIVE = 1;
+    private static final int DEAD = 2;
+    private static final int FIXED_RECORD_BYTES = 4 + 4 + 8 + 8 + 4 + 2 + 4;
+    private static final int LAST_ACCESSED_OFFSET = 16;
+
+    private static final class Slot {
+        int offset;
+        long expiresAtMillis;
+
+        Slot(int offset, long expiresAtMillis) {
+            this.offset = offset;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final FileChannel channel; // null when not file backed
+
+    // all guarded by "this"
+    private final Map<String, Slot> index = new HashMap<>();
+    private int writePos;
+    private int deadBytes;
+    private long compactions;
+
+    /** A store of {@code capacityBytes} in direct memory. */
+    public OffHeapSessionStore(int capacityBytes) {
+        this.buffer = ByteBuffer.allocateDirect(capacityBytes);
+        this.channel = null;
+        format();
+    }
+
+    /** A store in {@code file}, mapped at {@code capacityBytes}; sessions already in the file are kept. */
+    public OffHeapSessionStore(Path file, int capacityBytes) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long mapped = Math.max(capacityBytes, channel.size());
+        if (mapped > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException(file + " is larger than a session store can map");
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, mapped);
+        if (buffer.capacity() >= HEADER_BYTES && buffer.getInt(0) == MAGIC) {
+            recover();
+        } else {
+            format();
+        }
+    }
+
+    private void format() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, 0);
+        writePos = HEADER_BYTES;
+        markEnd();
+    }
+
+    // rebuild the index from the records already in the file, keeping the last copy of each session
+    private void recover() {
+        int pos = HEADER_BYTES;
+        while (pos + FIXED_RECORD_BYTES <= buffer.capacity()) {
+            int state = buffer.getInt(pos);
+            int length = buffer.getInt(pos + 4);
+            if (state == END || length < FIXED_RECORD_BYTES || pos + length > buffer.capacity()) {
+                break;
+            }
+            if (state == LIVE) {
+                Slot older = index.put(readId(pos), new Slot(pos, SessionRecord.expiresAt(
+                        buffer.getLong(pos + LAST_ACCESSED_OFFSET), buffer.getInt(pos + 24))));
+                if (older != null) {
+                    // a crash in save() between publishing this copy and killing that one;
+                    // records are appended in save order, so the later one is the newer
+                    kill(older.offset);
+                }
+            } else {
+                deadBytes += length;
+            }
+            pos += length;
+        }
+        writePos = pos;
+        markEnd();
+    }
+
+    @Override
+    public synchronized SessionRecord load(String id) {
+        Slot slot = index.get(id);
+        if (slot == null) {
+            return null;
+        }
+        int pos = slot.offset;
+        long created = buffer.getLong(pos + 8);
+        long lastAccessed = buffer.getLong(pos + LAST_ACCESSED_OFFSET);
+        int maxInactive = buffer.getInt(pos + 24);
+        int dataPos = pos + 30 + buffer.getShort(pos + 28);
+        byte[] attributes = new byte[buffer.getInt(dataPos)];
+        ByteBuffer view = buffer.duplicate();
+        view.position(dataPos + 4);
+        view.get(attributes);
+        return new SessionRecord(id, created, lastAccessed, maxInactive, attributes);
+    }
+
+    @Override
+    public synchronized void save(SessionRecord session) throws IOException {
+        byte[] id = session.getId().getBytes(StandardCharsets.UTF_8);
+        int length = FIXED_RECORD_BYTES + id.length + session.getAttributes().length;
+        Slot old = index.get(session.getId());
+        if (writePos + length > buffer.capacity()) {
+            compact();
+            if (writePos + length > buffer.capacity()) {
+                throw new IOException("Session store is full (" + buffer.capacity() + " bytes, "
+                        + index.size() + " sessions); raise session.offheap.capacityBytes");
+            }
+            old = index.get(session.getId());
+        }
+
+        int pos = writePos;
+        ByteBuffer view = buffer.duplicate();
+        view.position(pos + 4);
+        view.putInt(length);
+        view.putLong(session.getCreatedMillis());
+        view.putLong(session.getLastAccessedMillis());
+        view.putInt(session.getMaxInactiveSeconds());
+        view.putShort((short) id.length);
+        view.put(id);
+        view.putInt(session.getAttributes().length);
+        view.put(session.getAttributes());
+        writePos = pos + length;
+        markEnd();
+        // publish the new copy before retiring the old one, so a crash in between keeps one of them
+        buffer.putInt(pos, LIVE);
+        if (old != null) {
+            kill(old.offset);
+        }
+        index.put(session.getId(), new Slot(pos, session.getExpiresAtMillis()));
+    }
+
+    @Override
+    public synchronized void touch(String id, long lastAccessedMillis) {
+        Slot slot = index.get(id);
+        if (slot != null) {
+            buffer.putLong(slot.offset + LAST_ACCESSED_OFFSET, lastAccessedMillis);
+            slot.expiresAtMillis = SessionRecord.expiresAt(lastAccessedMillis, buffer.getInt(slot.offset + 24));
+        }
+    }
+
+    @Override
+    public synchronized void delete(String id) {
+        Slot slot = index.remove(id);
+        if (slot != null) {
+            kill(slot.offset);
+        }
+    }
+
+    @Override
+    public synchronized int evictExpired(long nowMillis, int batchSize) {
+        int evicted = 0;
+        Iterator<Slot> slots = index.values().iterator();
+        while (evicted < batchSize && slots.hasNext()) {
+            Slot slot = slots.next();
+            if (slot.expiresAtMillis < nowMillis) {
+                slots.remove();
+                kill(slot.offset);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    @Override
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public int getCapacityBytes() {
+        return buffer.capacity();
+    }
+
+    /** Bytes taken by live sessions. */
+    public synchronized int getUsedBytes() {
+        return writePos - HEADER_BYTES - deadBytes;
+    }
+
+    public synchronized long getCompactionCount() {
+        return compactions;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            // the mapping itself goes away when the buffer is collected
+            ((MappedByteBuffer) buffer).force();
+            channel.close();
+        }
+        index.clear();
+    }
+
+    private void kill(int pos) {
+        buffer.putInt(pos, DEAD);
+        deadBytes += buffer.getInt(pos + 4);
+    }
+
+    private void markEnd() {
+        if (writePos + 4 <= buffer.capacity()) {
+            buffer.putInt(writePos, END);
+        }
+    }
+
+    private String readId(int pos) {
+        byte[] id = new byte[buffer.getShort(pos + 28)];
+        ByteBuffer view = buffer.duplicate();
+        view.position(pos + 30);
+        view.get(id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    // slide every live record down over the dead ones, in file order
+    private void compact() {
+        if (deadBytes == 0) {
+            return;
+        }
+        int from = HEADER_BYTES;
+        int to = HEADER_BYTES;
+        byte[] record = new byte[256];
+        while (from < writePos) {
+            int length = buffer.getInt(from + 4);
+            if (buffer.getInt(from) == LIVE) {
+                if (from != to) {
+                    if (record.length < length) {
+                        record = new byte[length];
+                    }
+                    ByteBuffer view = buffer.duplicate();
+                    view.position(from);
+                    view.get(record, 0, length);
+                    view.position(to);
+                    view.put(record, 0, length);
+                    index.get(readId(to)).offset = to;
+                }
+                to += length;
+            }
+            from += length;
+        }
+        writePos = to;
+        deadBytes = 0;
+        compactions++;
+        markEnd();
+    }
+}
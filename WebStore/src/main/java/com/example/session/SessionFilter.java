@@ -0,0 +1,274 @@
+package com.example.session;
+
+import com.example.background.JobScheduler;
+import java.io.IOException;
+import java.nio.file.Paths;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Replaces the container's HttpSession with one kept in a
+ * {@link SessionStore}, chosen by the session.store context parameter:
+ * "offheap" (this node only, outside the heap, optionally in a mapped file),
+ * "jdbc" (the shared database, for several nodes behind a plain
+ * round-robin balancer) or "container" (leave sessions to Tomcat).
+ *
+ * The session id travels in its own cookie (session.cookieName). A job on
+ * the shared JobScheduler deletes expired sessions in batches of
+ * session.evictionBatchSize every session.evictionIntervalMillis.
+ */
+public class SessionFilter implements Filter {
+
+    private SessionManager manager;
+    private String cookieName;
+    private JobScheduler.Job evictionJob;
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        ServletContext context = config.getServletContext();
+        String type = param(context, "session.store", "offheap");
+        SessionStore store;
+        try {
+            switch (type) {
+                case "container":
+                    return;
+                case "offheap": {
+                    int capacity = intParam(context, "session.offheap.capacityBytes", 64 * 1024 * 1024);
+                    String file = param(context, "session.offheap.file", "");
+                    store = file.isEmpty()
+                            ? new OffHeapSessionStore(capacity)
+                            : new OffHeapSessionStore(Paths.get(file), capacity);
+                    break;
+                }
+                case "jdbc":
+                    store = new JdbcSessionStore();
+                    break;
+                default:
+                    throw new ServletException("Unknown session.store \"" + type + "\"; use offheap, jdbc or container");
+            }
+        } catch (IOException e) {
+            throw new ServletException("Could not open the " + type + " session store", e);
+        }
+
+        manager = new SessionManager(store, context,
+                intParam(context, "session.maxInactiveSeconds", 1800),
+                intParam(context, "session.touchIntervalMillis", 60000));
+        cookieName = param(context, "session.cookieName", "WSSESSIONID");
+        context.setAttribute("sessionManager", manager);
+
+        // ReportSchedulerListener has already run; listeners start before filters
+        JobScheduler scheduler = (JobScheduler) context.getAttribute("jobScheduler");
+        if (scheduler != null) {
+            int batchSize = intParam(context, "session.evictionBatchSize", 500);
+            long interval = intParam(context, "session.evictionIntervalMillis", 60000);
+            evictionJob = scheduler.scheduleWithFixedDelay("session-eviction",
+                    () -> manager.evictExpired(batchSize), interval, interval, 0);
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (manager == null || !(request instanceof HttpServletRequest)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        SessionRequest sessionRequest = new SessionRequest((HttpServletRequest) request, (HttpServletResponse) response);
+        try {
+            chain.doFilter(sessionRequest, new SessionResponse((HttpServletResponse) response, sessionRequest));
+        } finally {
+            sessionRequest.commit();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (evictionJob != null) {
+            evictionJob.cancel();
+        }
+        if (manager != null) {
+            manager.getServletContext().removeAttribute("sessionManager");
+            manager.close();
+        }
+    }
+
+    /** Resolves the session from the cookie on first use and hands out the store-backed one. */
+    private final class SessionRequest extends HttpServletRequestWrapper {
+        private final HttpServletResponse response;
+        private final String requestedId;
+        private String cookieId; // the session id the client will send back
+        private boolean resolved;
+        private boolean committed;
+        private StoreSession session;
+
+        SessionRequest(HttpServletRequest request, HttpServletResponse response) {
+            super(request);
+            this.response = response;
+            String id = null;
+            Cookie[] cookies = request.getCookies();
+            if (cookies != null) {
+                for (Cookie cookie : cookies) {
+                    if (cookieName.equals(cookie.getName())) {
+                        id = cookie.getValue();
+                    }
+                }
+            }
+            this.requestedId = id;
+        }
+
+        @Override
+        public HttpSession getSession() {
+            return getSession(true);
+        }
+
+        @Override
+        public synchronized HttpSession getSession(boolean create) {
+            if (!resolved) {
+                resolved = true;
+                if (requestedId != null) {
+                    session = manager.find(requestedId);
+                    if (session != null) {
+                        cookieId = requestedId;
+                    }
+                }
+            }
+            if (session != null && session.isInvalid()) {
+                session = null;
+            }
+            if (session == null && create) {
+                // the cookie waits until the session is stored; see commit()
+                session = manager.create();
+            }
+            return session;
+        }
+
+        @Override
+        public String changeSessionId() {
+            StoreSession current = (StoreSession) getSession(false);
+            if (current == null) {
+                throw new IllegalStateException("There is no session to change the id of");
+            }
+            manager.changeId(current);
+            return current.getId();
+        }
+
+        @Override
+        public String getRequestedSessionId() {
+            return requestedId;
+        }
+
+        @Override
+        public boolean isRequestedSessionIdValid() {
+            HttpSession current = getSession(false);
+            return requestedId != null && current != null && requestedId.equals(current.getId());
+        }
+
+        @Override
+        public boolean isRequestedSessionIdFromCookie() {
+            return requestedId != null;
+        }
+
+        @Override
+        public boolean isRequestedSessionIdFromURL() {
+            return false;
+        }
+
+        @Override
+        @Deprecated
+        public boolean isRequestedSessionIdFromUrl() {
+            return false;
+        }
+
+        /**
+         * Writes the session back and, once it is in the store under an id
+         * the client doesn't have yet, sends that id in the cookie. A page
+         * that only asked for a session, as every JSP does, gets no cookie
+         * since an empty session is never stored. Nor does a new session
+         * whose response went out before it was stored: the client could
+         * never send its id back, so it isn't stored either.
+         */
+        synchronized void commit() {
+            // the end of the request has nothing to add to a commit made before a redirect
+            if (session == null || (committed && !session.isDirty())) {
+                return;
+            }
+            if (!session.getId().equals(cookieId) && response.isCommitted()) {
+                return;
+            }
+            manager.commit(session);
+            committed = true;
+            if (session.isStored() && !session.getId().equals(cookieId)) {
+                addCookie(session.getId());
+                cookieId = session.getId();
+            }
+        }
+
+        private void addCookie(String id) {
+            Cookie cookie = new Cookie(cookieName, id);
+            String path = getContextPath();
+            cookie.setPath(path.isEmpty() ? "/" : path);
+            cookie.setHttpOnly(true);
+            cookie.setSecure(isSecure());
+            response.addCookie(cookie);
+        }
+    }
+
+    /**
+     * Writes the session back before a redirect or error goes out, or the
+     * buffer is flushed, so its cookie goes out with the headers and the
+     * client's next request finds it.
+     */
+    private static final class SessionResponse extends HttpServletResponseWrapper {
+        private final SessionRequest request;
+
+        SessionResponse(HttpServletResponse response, SessionRequest request) {
+            super(response);
+            this.request = request;
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            request.commit();
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            request.commit();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            request.commit();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            request.commit();
+            super.flushBuffer();
+        }
+    }
+
+    private static String param(ServletContext context, String name, String defaultValue) {
+        String value = context.getInitParameter(name);
+        return value == null ? defaultValue : value.trim();
+    }
+
+    private static int intParam(ServletContext context, String name, int defaultValue) {
+        String value = context.getInitParameter(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.servlet.ServletContext;
+
+/**
+ * Loads, creates and writes back the {@link StoreSession}s for
+ * {@link SessionFilter}, and keeps the counters shown by /session-stats.
+ *
+ * A session is written in full only when it changed. Otherwise its
+ * last-access time is written at most once per {@code touchIntervalMillis},
+ * so a session can outlive its timeout by up to that much, but a page view
+ * that only reads the session usually costs no write at all.
+ */
+public class SessionManager {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SessionStore store;
+    private final ServletContext servletContext;
+    private final int defaultMaxInactiveSeconds;
+    private final long touchIntervalMillis;
+
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong saves = new AtomicLong();
+    private final AtomicLong savedBytes = new AtomicLong();
+    private final AtomicLong touches = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong invalidated = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public SessionManager(SessionStore store, ServletContext servletContext,
+                          int defaultMaxInactiveSeconds, long touchIntervalMillis) {
+        this.store = store;
+        this.servletContext = servletContext;
+        this.defaultMaxInactiveSeconds = defaultMaxInactiveSeconds;
+        this.touchIntervalMillis = touchIntervalMillis;
+    }
+
+    /** The stored session with this id, or null if there is none or it has expired. */
+    StoreSession find(String id) {
+        loads.incrementAndGet();
+        try {
+            SessionRecord record = store.load(id);
+            if (record == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            if (record.getExpiresAtMillis() < System.currentTimeMillis() - touchIntervalMillis) {
+                expired.incrementAndGet();
+                store.delete(id);
+                return null;
+            }
+            return new StoreSession(this, id, record.getCreatedMillis(), record.getLastAccessedMillis(),
+                    record.getMaxInactiveSeconds(), deserialize(record.getAttributes()), false);
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            // an unreadable session is treated as no session; the user logs in again
+            failures.incrementAndGet();
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    StoreSession create() {
+        created.incrementAndGet();
+        long now = System.currentTimeMillis();
+        return new StoreSession(this, newId(), now, now, defaultMaxInactiveSeconds,
+                Collections.<String, Object>emptyMap(), true);
+    }
+
+    /**
+     * Called at the end of the request (and before a redirect or error is
+     * sent): writes the session if it changed, or touches it if the stored
+     * access time is getting old. New sessions nobody put anything in are
+     * never stored, so SessionFilter never sends a cookie for them.
+     */
+    void commit(StoreSession session) {
+        // a session object belongs to one request, but the app may still touch it from other threads
+        synchronized (session) {
+            commitLocked(session);
+        }
+    }
+
+    private void commitLocked(StoreSession session) {
+        if (session.isInvalid()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            if (session.isDirty()) {
+                if (session.getAttributes().isEmpty() && session.storedLastAccessedMillis < 0) {
+                    session.clean();
+                    return;
+                }
+                byte[] attributes = serialize(session.getAttributes());
+                store.save(new SessionRecord(session.getId(), session.getCreatedMillis(), now,
+                        session.getMaxInactiveInterval(), attributes));
+                session.storedLastAccessedMillis = now;
+                session.clean();
+                saves.incrementAndGet();
+                savedBytes.addAndGet(attributes.length);
+            } else if (session.storedLastAccessedMillis >= 0
+                    && now - session.storedLastAccessedMillis >= touchIntervalMillis) {
+                store.touch(session.getId(), now);
+                session.storedLastAccessedMillis = now;
+                touches.incrementAndGet();
+            } else {
+                unchanged.incrementAndGet();
+            }
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            e.printStackTrace();
+        }
+    }
+
+    void changeId(StoreSession session) {
+        synchronized (session) {
+            String oldId = session.getId();
+            session.setId(newId());
+            if (session.storedLastAccessedMillis >= 0) {
+                delete(oldId);
+                session.storedLastAccessedMillis = -1;
+            }
+        }
+    }
+
+    void invalidate(StoreSession session) {
+        invalidated.incrementAndGet();
+        if (session.storedLastAccessedMillis >= 0) {
+            delete(session.getId());
+        }
+    }
+
+    private void delete(String id) {
+        try {
+            store.delete(id);
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            e.printStackTrace();
+        }
+    }
+
+    /** Deletes every expired session, {@code batchSize} at a time; returns how many went. */
+    public int evictExpired(int batchSize) {
+        long cutoff = System.currentTimeMillis() - touchIntervalMillis;
+        int total = 0;
+        try {
+            int batch;
+            do {
+                batch = store.evictExpired(cutoff, batchSize);
+                total += batch;
+            } while (batch == batchSize);
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            e.printStackTrace();
+        }
+        evicted.addAndGet(total);
+        return total;
+    }
+
+    public SessionStore getStore() {
+        return store;
+    }
+
+    ServletContext getServletContext() {
+        return servletContext;
+    }
+
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getExpiredCount() {
+        return expired.get();
+    }
+
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    public long getSaveCount() {
+        return saves.get();
+    }
+
+    public double getAverageSavedBytes() {
+        long n = saves.get();
+        return n == 0 ? 0.0 : (double) savedBytes.get() / n;
+    }
+
+    public long getTouchCount() {
+        return touches.get();
+    }
+
+    /** Requests whose session needed no write at all. */
+    public long getUnchangedCount() {
+        return unchanged.get();
+    }
+
+    public long getInvalidatedCount() {
+        return invalidated.get();
+    }
+
+    public long getEvictedCount() {
+        return evicted.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    public void close() {
+        try {
+            store.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String newId() {
+        byte[] bytes = new byte[16];
+        RANDOM.nextBytes(bytes);
+        char[] id = new char[32];
+        for (int i = 0; i < bytes.length; i++) {
+            id[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+            id[2 * i + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(id);
+    }
+
+    private static byte[] serialize(Map<String, Object> attributes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new HashMap<>(attributes));
+        }
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> deserialize(byte[] attributes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(attributes))) {
+            return (Map<String, Object>) in.readObject();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.session;
+
+import java.io.Serializable;
+
+/**
+ * Who is logged in, as kept under the "user" session attribute: just the
+ * user's id and username. The rest of the User row (password included)
+ * stays in the database and is looked up through UserDAO when a page needs
+ * it, so sessions stay small enough to write to a {@link SessionStore} on
+ * every change.
+ */
+public final class SessionPrincipal implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int id;
+    private final String username;
+
+    public SessionPrincipal(int id, String username) {
+        this.id = id;
+        this.username = username;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String toString() {
+        return username + " (" + id + ")";
+    }
+}
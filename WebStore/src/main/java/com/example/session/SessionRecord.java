@@ -0,0 +1,51 @@
+package com.example.session;
+
+/**
+ * One session as a {@link SessionStore} keeps it: the timestamps the
+ * container would track, plus the attributes serialized to bytes.
+ */
+public final class SessionRecord {
+
+    private final String id;
+    private final long createdMillis;
+    private final long lastAccessedMillis;
+    private final int maxInactiveSeconds;
+    private final byte[] attributes;
+
+    public SessionRecord(String id, long createdMillis, long lastAccessedMillis, int maxInactiveSeconds, byte[] attributes) {
+        this.id = id;
+        this.createdMillis = createdMillis;
+        this.lastAccessedMillis = lastAccessedMillis;
+        this.maxInactiveSeconds = maxInactiveSeconds;
+        this.attributes = attributes;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    public long getLastAccessedMillis() {
+        return lastAccessedMillis;
+    }
+
+    public int getMaxInactiveSeconds() {
+        return maxInactiveSeconds;
+    }
+
+    public byte[] getAttributes() {
+        return attributes;
+    }
+
+    /** When the session expires if nobody touches it again; Long.MAX_VALUE if it never does. */
+    public long getExpiresAtMillis() {
+        return expiresAt(lastAccessedMillis, maxInactiveSeconds);
+    }
+
+    static long expiresAt(long lastAccessedMillis, int maxInactiveSeconds) {
+        return maxInactiveSeconds <= 0 ? Long.MAX_VALUE : lastAccessedMillis + maxInactiveSeconds * 1000L;
+    }
+}
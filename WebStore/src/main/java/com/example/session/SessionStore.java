@@ -0,0 +1,38 @@
+package com.example.session;
+
+import java.io.IOException;
+
+/**
+ * Where {@link SessionFilter} keeps sessions between requests, in place of
+ * the container's in-memory session map. Implementations must be safe to
+ * call from many request threads at once.
+ *
+ * @see OffHeapSessionStore
+ * @see JdbcSessionStore
+ */
+public interface SessionStore extends AutoCloseable {
+
+    /** Returns the stored session, or null if there is none (expired ones may still be returned). */
+    SessionRecord load(String id) throws IOException;
+
+    /** Writes the whole session, replacing any stored copy. */
+    void save(SessionRecord session) throws IOException;
+
+    /** Records a new last-access time for a session whose attributes did not change. */
+    void touch(String id, long lastAccessedMillis) throws IOException;
+
+    void delete(String id) throws IOException;
+
+    /**
+     * Deletes up to {@code batchSize} sessions that expired before
+     * {@code nowMillis} and returns how many it deleted. Callers loop until
+     * a batch comes back short, so no single call holds a lock for long.
+     */
+    int evictExpired(long nowMillis, int batchSize) throws IOException;
+
+    /** Number of stored sessions, or -1 if the store can't tell cheaply. */
+    int size() throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
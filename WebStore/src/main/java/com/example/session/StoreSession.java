@@ -0,0 +1,203 @@
+package com.example.session;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpSession;
+
+/**
+ * The HttpSession that {@link SessionFilter} hands to servlets and JSPs.
+ * It lives for one request: it is rebuilt from its {@link SessionRecord} when
+ * the request starts and written back when it ends, but only if an attribute
+ * was set to a different value or removed (or the timeout changed) in between.
+ *
+ * Changes made inside an attribute value are not seen; call setAttribute
+ * again with the same object after changing one. Attribute values must be Serializable.
+ * HttpSessionListener and binding listeners are not notified.
+ */
+@SuppressWarnings("deprecation")
+class StoreSession implements HttpSession {
+
+    private final SessionManager manager;
+    private String id;
+    private final long createdMillis;
+    private final long lastAccessedMillis; // of the previous request
+    long storedLastAccessedMillis; // what the store has, -1 if not stored yet; guarded by the manager
+    private final boolean isNew;
+    private final Map<String, Object> attributes;
+    private volatile int maxInactiveSeconds;
+    private volatile boolean dirty;
+    private volatile boolean invalid;
+
+    StoreSession(SessionManager manager, String id, long createdMillis, long lastAccessedMillis,
+                 int maxInactiveSeconds, Map<String, Object> attributes, boolean isNew) {
+        this.manager = manager;
+        this.id = id;
+        this.createdMillis = createdMillis;
+        this.lastAccessedMillis = lastAccessedMillis;
+        this.storedLastAccessedMillis = isNew ? -1 : lastAccessedMillis;
+        this.maxInactiveSeconds = maxInactiveSeconds;
+        this.attributes = new ConcurrentHashMap<>(attributes);
+        this.isNew = isNew;
+    }
+
+    @Override
+    public long getCreationTime() {
+        checkValid();
+        return createdMillis;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    void setId(String id) {
+        this.id = id;
+        dirty = true;
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+        checkValid();
+        return lastAccessedMillis;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return manager.getServletContext();
+    }
+
+    @Override
+    public void setMaxInactiveInterval(int interval) {
+        if (interval != maxInactiveSeconds) {
+            maxInactiveSeconds = interval;
+            dirty = true;
+        }
+    }
+
+    @Override
+    public int getMaxInactiveInterval() {
+        return maxInactiveSeconds;
+    }
+
+    @Override
+    public javax.servlet.http.HttpSessionContext getSessionContext() {
+        return null;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        checkValid();
+        return attributes.get(name);
+    }
+
+    @Override
+    public Object getValue(String name) {
+        return getAttribute(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        checkValid();
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    public String[] getValueNames() {
+        checkValid();
+        return attributes.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        checkValid();
+        if (value == null) {
+            removeAttribute(name);
+            return;
+        }
+        if (!(value instanceof Serializable)) {
+            throw new IllegalArgumentException("Session attribute " + name + " is a "
+                    + value.getClass().getName() + ", which is not Serializable");
+        }
+        Object old = attributes.put(name, value);
+        // re-setting an equal value is no change, unless it is the same mutable object put back after a change
+        if (!value.equals(old) || old == value && !isImmutable(value)) {
+            dirty = true;
+        }
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value instanceof String || value instanceof Boolean || value instanceof Character
+                || value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte || value instanceof Double || value instanceof Float
+                || value instanceof BigInteger || value instanceof BigDecimal || value instanceof Enum;
+    }
+
+    @Override
+    public void putValue(String name, Object value) {
+        setAttribute(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        checkValid();
+        if (attributes.remove(name) != null) {
+            dirty = true;
+        }
+    }
+
+    @Override
+    public void removeValue(String name) {
+        removeAttribute(name);
+    }
+
+    @Override
+    public void invalidate() {
+        checkValid();
+        invalid = true;
+        manager.invalidate(this);
+    }
+
+    @Override
+    public boolean isNew() {
+        checkValid();
+        return isNew;
+    }
+
+    long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    void clean() {
+        dirty = false;
+    }
+
+    /** Whether the store has this session under its current id. */
+    boolean isStored() {
+        return storedLastAccessedMillis >= 0;
+    }
+
+    boolean isInvalid() {
+        return invalid;
+    }
+
+    private void checkValid() {
+        if (invalid) {
+            throw new IllegalStateException("Session " + id + " has been invalidated");
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.socket;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The optional binary framing for the echo protocol. Every message, in
+ * either direction, is
+ *
+ * <pre>
+ *   int length      bytes that follow this field (4 + payload length)
+ *   int requestId   chosen by the client, copied into the reply
+ *   byte[] payload
+ * </pre>
+ *
+ * all big-endian. Because replies carry the request id, a client can have
+ * many requests in flight on one connection and match replies as they come.
+ */
+final class BinaryProtocol {
+
+    static final byte[] ECHO_PREFIX = "Server echoes: ".getBytes(StandardCharsets.UTF_8);
+    static final int MAX_PAYLOAD_BYTES = 64 * 1024;
+
+    private BinaryProtocol() {}
+
+    /** A decoded frame. */
+    static final class Frame {
+        final int requestId;
+        final byte[] payload;
+
+        Frame(int requestId, byte[] payload) {
+            this.requestId = requestId;
+            this.payload = payload;
+        }
+    }
+
+    static void writeFrame(DataOutputStream out, int requestId, byte[] prefix, byte[] payload) throws IOException {
+        out.writeInt(4 + prefix.length + payload.length);
+        out.writeInt(requestId);
+        out.write(prefix);
+        out.write(payload);
+    }
+
+    /** Returns the next frame, or null at a clean end of stream. */
+    static Frame readFrame(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        checkLength(length);
+        int requestId = in.readInt();
+        byte[] payload = new byte[length - 4];
+        in.readFully(payload);
+        return new Frame(requestId, payload);
+    }
+
+    static void checkLength(int length) throws IOException {
+        if (length < 4 || length - 4 > MAX_PAYLOAD_BYTES + ECHO_PREFIX.length) {
+            throw new IOException("bad frame length " + length);
+        }
+    }
+}
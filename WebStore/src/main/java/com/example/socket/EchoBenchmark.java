@@ -0,0 +1,155 @@
+package com.example.socket;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load generator comparing the thread-per-client {@link SimpleServer} with
+ * {@link NioEchoServer}. For each mode it starts the server in this JVM,
+ * opens the requested number of connections and keeps them open, then
+ * runs echo round trips over all of them from a few client threads.
+ *
+ * Usage: EchoBenchmark [connections] [messagesPerConnection] [clientThreads]
+ */
+public class EchoBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int messages = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int clientThreads = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        System.out.println("connections=" + connections + " messages/connection=" + messages
+                + " clientThreads=" + clientThreads);
+        System.out.printf("%-8s %8s %10s %12s %14s %12s%n",
+                "mode", "held", "threads+", "heap+ (MB)", "echoes/sec", "elapsed (ms)");
+        run("threads", connections, messages, clientThreads);
+        run("nio", connections, messages, clientThreads);
+    }
+
+    private static void run(String mode, int connections, int messages, int clientThreads) throws Exception {
+        System.gc();
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        long heapBefore = usedHeap();
+
+        Closeable server;
+        int port;
+        if (mode.equals("nio")) {
+            NioEchoServer nio = new NioEchoServer(0, connections, 0, false, false);
+            port = nio.getPort();
+            server = nio;
+        } else {
+            SimpleServer threaded = new SimpleServer(0, connections, 0, false, false);
+            port = threaded.getPort();
+            server = threaded;
+        }
+        Thread serverThread = new Thread((Runnable) server, "echo-server-" + mode);
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        List<Client> clients = new ArrayList<>(connections);
+        try {
+            int held = 0;
+            for (int i = 0; i < connections; i++) {
+                try {
+                    Client client = new Client(port);
+                    clients.add(client);
+                    if (client.echo("hello " + i)) {
+                        held++;
+                    }
+                } catch (IOException e) {
+                    break;
+                }
+            }
+
+            System.gc();
+            int threadsAdded = ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore;
+            double heapAdded = (usedHeap() - heapBefore) / (1024.0 * 1024.0);
+
+            ExecutorService pool = Executors.newFixedThreadPool(clientThreads);
+            List<Future<Long>> results = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < clientThreads; t++) {
+                final int offset = t;
+                results.add(pool.submit(() -> {
+                    long ok = 0;
+                    for (int m = 0; m < messages; m++) {
+                        for (int c = offset; c < clients.size(); c += clientThreads) {
+                            if (clients.get(c).echo("message " + m)) {
+                                ok++;
+                            }
+                        }
+                    }
+                    return ok;
+                }));
+            }
+            long echoes = 0;
+            for (Future<Long> f : results) {
+                echoes += f.get();
+            }
+            long elapsedNanos = System.nanoTime() - start;
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+
+            System.out.printf("%-8s %8d %10d %12.1f %14.0f %12d%n",
+                    mode, held, threadsAdded, heapAdded,
+                    echoes / (elapsedNanos / 1e9), TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        } finally {
+            for (Client client : clients) {
+                client.close();
+            }
+            server.close();
+            serverThread.join(5000);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static final class Client implements Closeable {
+        private final Socket socket;
+        private final OutputStream out;
+        private final BufferedReader in;
+
+        Client(int port) throws IOException {
+            socket = new Socket("localhost", port);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(5000);
+            out = socket.getOutputStream();
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        boolean echo(String message) {
+            try {
+                out.write((message + "\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                String reply = in.readLine();
+                return reply != null && reply.endsWith(message);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+}
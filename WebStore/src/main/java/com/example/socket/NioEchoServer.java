@@ -0,0 +1,301 @@
+package com.example.socket;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * The line-echo server from {@link SimpleServer}, run on a single thread with
+ * a Selector instead of one thread per client. An idle connection costs a
+ * couple of small buffers rather than a thread stack.
+ *
+ * With {@code binary} set it speaks the length-prefixed framing from
+ * {@link BinaryProtocol} instead of lines. Either way every request already
+ * in the read buffer is answered into one output buffer, so pipelined
+ * requests go back in as few writes as possible.
+ *
+ * When {@code maxConnections} clients are connected the server stops
+ * accepting (new clients wait in the listen backlog) until one leaves.
+ * Connections that send nothing for {@code idleTimeoutMillis} are closed.
+ */
+public class NioEchoServer implements Runnable, Closeable {
+
+    private static final byte[] PREFIX = "Server echoes: ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final SelectionKey acceptKey;
+    private final int maxConnections;
+    private final long idleTimeoutMillis;
+    private final boolean binary;
+    private final boolean verbose;
+    private volatile boolean running = true;
+    private volatile int connections; // only written by the selector thread
+
+    public NioEchoServer(int port, int maxConnections, long idleTimeoutMillis, boolean binary, boolean verbose) throws IOException {
+        this.maxConnections = maxConnections;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.binary = binary;
+        this.verbose = verbose;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        serverChannel.configureBlocking(false);
+        this.acceptKey = serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public void run() {
+        long sweepInterval = Math.max(100, Math.min(1000, idleTimeoutMillis / 4));
+        long lastSweep = System.currentTimeMillis();
+        try {
+            while (running) {
+                selector.select(sweepInterval);
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            if (key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(key);
+                            }
+                        }
+                    } catch (IOException e) {
+                        if (verbose) {
+                            System.out.println("Exception in connection: " + e.getMessage());
+                        }
+                        closeConnection(key);
+                    }
+                }
+
+                long now = System.currentTimeMillis();
+                if (idleTimeoutMillis > 0 && now - lastSweep >= sweepInterval) {
+                    closeIdle(now);
+                    lastSweep = now;
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                e.printStackTrace();
+            }
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void accept() throws IOException {
+        while (connections < maxConnections) {
+            SocketChannel channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.register(selector, SelectionKey.OP_READ, new Connection());
+            connections++;
+            if (verbose) {
+                System.out.println("Client connected: " + channel.socket().getInetAddress().getHostAddress());
+            }
+        }
+        // at the cap: leave the rest in the backlog until someone disconnects
+        acceptKey.interestOps(0);
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection conn = (Connection) key.attachment();
+
+        int n = channel.read(conn.in);
+        if (n == -1) {
+            closeConnection(key);
+            return;
+        }
+        conn.lastActive = System.currentTimeMillis();
+
+        ByteBuffer in = conn.in;
+        int consumed = binary ? answerFrames(conn, in) : answerLines(conn, in);
+        int needed = binary ? frameBytesNeeded(in, consumed) : 0;
+        in.flip();
+        in.position(consumed);
+        in.compact();
+
+        if (!in.hasRemaining() || in.capacity() < needed) {
+            if (in.capacity() >= MAX_LINE_BYTES && !binary) {
+                throw new IOException("line longer than " + MAX_LINE_BYTES + " bytes");
+            }
+            conn.in = grow(in, Math.max(in.capacity() * 2, needed));
+        }
+
+        write(key);
+    }
+
+    // Answers every complete line in the buffer; returns how many bytes were used up
+    private int answerLines(Connection conn, ByteBuffer in) {
+        int lineStart = 0;
+        for (int i = 0; i < in.position(); i++) {
+            if (in.get(i) == '\n') {
+                int lineEnd = i > lineStart && in.get(i - 1) == '\r' ? i - 1 : i;
+                echo(conn, in, lineStart, lineEnd);
+                lineStart = i + 1;
+            }
+        }
+        return lineStart;
+    }
+
+    // Answers every complete frame in the buffer; returns how many bytes were used up
+    private int answerFrames(Connection conn, ByteBuffer in) throws IOException {
+        int start = 0;
+        while (in.position() - start >= 4) {
+            int length = in.getInt(start);
+            BinaryProtocol.checkLength(length);
+            if (in.position() - start < 4 + length) {
+                break;
+            }
+            int requestId = in.getInt(start + 4);
+            int payloadStart = start + 8;
+            int payloadLength = length - 4;
+
+            conn.ensureOutCapacity(8 + PREFIX.length + payloadLength);
+            conn.out.putInt(4 + PREFIX.length + payloadLength);
+            conn.out.putInt(requestId);
+            conn.out.put(PREFIX);
+            for (int i = payloadStart; i < payloadStart + payloadLength; i++) {
+                conn.out.put(in.get(i));
+            }
+            start += 4 + length;
+        }
+        return start;
+    }
+
+    // Size the read buffer must have to hold the frame that starts at {@code start}
+    private static int frameBytesNeeded(ByteBuffer in, int start) {
+        return in.position() - start >= 4 ? 4 + in.getInt(start) : 0;
+    }
+
+    private void echo(Connection conn, ByteBuffer in, int start, int end) {
+        int length = end - start;
+        conn.ensureOutCapacity(PREFIX.length + length + NEWLINE.length);
+        conn.out.put(PREFIX);
+        for (int i = start; i < end; i++) {
+            conn.out.put(in.get(i));
+        }
+        conn.out.put(NEWLINE);
+        if (verbose) {
+            byte[] line = new byte[length];
+            for (int i = 0; i < length; i++) {
+                line[i] = in.get(start + i);
+            }
+            System.out.println("Received from client: " + new String(line, StandardCharsets.UTF_8));
+        }
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection conn = (Connection) key.attachment();
+        ByteBuffer out = conn.out;
+        if (out.position() == 0) {
+            return;
+        }
+        out.flip();
+        ((SocketChannel) key.channel()).write(out);
+        out.compact();
+
+        // a slow reader: stop reading from it until it has taken what we owe it
+        key.interestOps(out.position() > 0 ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    private void closeIdle(long now) {
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof Connection && now - ((Connection) attachment).lastActive > idleTimeoutMillis) {
+                if (verbose) {
+                    System.out.println("Closing idle client");
+                }
+                closeConnection(key);
+            }
+        }
+    }
+
+    private void closeConnection(SelectionKey key) {
+        if (!key.isValid()) {
+            return; // already closed earlier in this pass
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+        if (key.attachment() instanceof Connection) {
+            connections--;
+            if (running && acceptKey.isValid()) {
+                acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+            }
+        }
+    }
+
+    private void shutdown() {
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+    }
+
+    public int getConnectionCount() {
+        return connections;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        ByteBuffer bigger = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+
+    private static final class Connection {
+        ByteBuffer in = ByteBuffer.allocate(1024);
+        ByteBuffer out = ByteBuffer.allocate(1024);
+        long lastActive = System.currentTimeMillis();
+
+        void ensureOutCapacity(int extra) {
+            if (out.remaining() < extra) {
+                out = grow(out, Math.max(out.capacity() * 2, out.position() + extra));
+            }
+        }
+    }
+}
@@ -1,17 +1,56 @@
 package com.example.socket;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.Socket;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Talks to {@link SimpleServer}. With no options it sends one line and
+ * prints the reply.
+ *
+ * With --binary it uses the framed protocol and pipelines: up to
+ * --pipeline=N requests are in flight at once, requests are written into a
+ * buffer that is only flushed when the window is full or the run is done,
+ * and replies are read on a second thread. At the end it prints
+ * messages/sec and latency percentiles.
+ *
+ * Usage: SimpleClient [host] [port] [--binary] [--messages=M] [--pipeline=N] [--size=BYTES]
+ */
 public class SimpleClient {
     public static void main(String[] args) {
         String hostname = "localhost";
         int port = 6666;
+        boolean binary = false;
+        int messages = 100000;
+        int pipeline = 128;
+        int size = 32;
+
+        int positional = 0;
+        for (String arg : args) {
+            if (arg.equals("--binary")) binary = true;
+            else if (arg.startsWith("--messages=")) messages = Integer.parseInt(arg.substring(11));
+            else if (arg.startsWith("--pipeline=")) pipeline = Integer.parseInt(arg.substring(11));
+            else if (arg.startsWith("--size=")) size = Integer.parseInt(arg.substring(7));
+            else if (positional++ == 0) hostname = arg;
+            else port = Integer.parseInt(arg);
+        }
 
         try (Socket socket = new Socket(hostname, port)) {
+            if (binary) {
+                runPipelined(socket, messages, pipeline, size);
+                return;
+            }
 
             //WHAT DATA WE ARE SENDING TO THE SERVER
             PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
@@ -31,6 +70,70 @@ public class SimpleClient {
         } catch (IOException e) {
             System.err.println("Client Error: " + e.getMessage());
             e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
+
+    private static void runPipelined(Socket socket, int messages, int pipeline, int size)
+            throws IOException, InterruptedException {
+        socket.setTcpNoDelay(true);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+
+        byte[] payload = new byte[size];
+        Arrays.fill(payload, (byte) 'x');
+        byte[] noPrefix = new byte[0];
+        AtomicLongArray sentAt = new AtomicLongArray(messages); // written by this thread, read by the reader
+        long[] latencies = new long[messages];
+        Semaphore window = new Semaphore(pipeline);
+        AtomicReference<IOException> readError = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            try {
+                for (int i = 0; i < messages; i++) {
+                    BinaryProtocol.Frame reply = BinaryProtocol.readFrame(in);
+                    if (reply == null) {
+                        throw new IOException("server closed the connection after " + i + " replies");
+                    }
+                    latencies[i] = System.nanoTime() - sentAt.get(reply.requestId);
+                    window.release();
+                }
+            } catch (IOException e) {
+                readError.set(e);
+                window.release(messages); // unblock the writer
+            }
+        }, "pipelined-reader");
+
+        long start = System.nanoTime();
+        reader.start();
+        for (int id = 0; id < messages && readError.get() == null; id++) {
+            if (!window.tryAcquire()) {
+                // window full: push out what we have, then wait for replies
+                out.flush();
+                window.acquire();
+            }
+            sentAt.set(id, System.nanoTime());
+            BinaryProtocol.writeFrame(out, id, noPrefix, payload);
+        }
+        out.flush();
+        reader.join();
+        long elapsedNanos = System.nanoTime() - start;
+
+        if (readError.get() != null) {
+            throw readError.get();
+        }
+
+        Arrays.sort(latencies);
+        System.out.printf("messages: %d, pipeline: %d, payload: %d bytes%n", messages, pipeline, size);
+        System.out.printf("throughput: %.0f messages/sec%n", messages / (elapsedNanos / 1e9));
+        System.out.printf("latency p50: %.1f us, p90: %.1f us, p99: %.1f us, p99.9: %.1f us, max: %.1f us%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+                percentile(latencies, 0.999), latencies[latencies.length - 1] / 1000.0);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1000.0;
+    }
 }
@@ -1,52 +1,166 @@
 package com.example.socket;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.io.IOException;
+import java.util.concurrent.Semaphore;
 
-public class SimpleServer {
-    public static void main(String[] args) {
-        try (ServerSocket serverSocket = new ServerSocket(6666)) {
-            System.out.println("Server is listening on port 6666...");
+/**
+ * Echo server. By default every client gets its own thread; pass --nio to
+ * run {@link NioEchoServer} instead. Clients send newline-terminated text
+ * unless --binary is given, in which case both sides use the framing in
+ * {@link BinaryProtocol}.
+ *
+ * Usage: SimpleServer [port] [--nio] [--binary] [--max-connections=N] [--idle-timeout=MILLIS] [--quiet]
+ */
+public class SimpleServer implements Runnable, Closeable {
 
-            while (true) {
-                new ClientHandler(serverSocket.accept()).start();
-            }
+    private final ServerSocket serverSocket;
+    private final Semaphore connectionSlots;
+    private final int idleTimeoutMillis;
+    private final boolean binary;
+    private final boolean verbose;
+    private volatile boolean running = true;
+
+    public SimpleServer(int port, int maxConnections, int idleTimeoutMillis, boolean binary, boolean verbose) throws IOException {
+        this.serverSocket = new ServerSocket(port, 1024);
+        this.connectionSlots = new Semaphore(maxConnections);
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.binary = binary;
+        this.verbose = verbose;
+    }
+
+    public static void main(String[] args) {
+        int port = 6666;
+        boolean nio = false;
+        boolean binary = false;
+        int maxConnections = 10000;
+        int idleTimeoutMillis = 0;
+        boolean verbose = true;
+        for (String arg : args) {
+            if (arg.equals("--nio")) nio = true;
+            else if (arg.equals("--binary")) binary = true;
+            else if (arg.equals("--quiet")) verbose = false;
+            else if (arg.startsWith("--max-connections=")) maxConnections = Integer.parseInt(arg.substring(18));
+            else if (arg.startsWith("--idle-timeout=")) idleTimeoutMillis = Integer.parseInt(arg.substring(15));
+            else port = Integer.parseInt(arg);
+        }
 
+        try (Closeable server = nio
+                ? new NioEchoServer(port, maxConnections, idleTimeoutMillis, binary, verbose)
+                : new SimpleServer(port, maxConnections, idleTimeoutMillis, binary, verbose)) {
+            System.out.println("Server is listening on port " + port
+                    + (nio ? " (nio)" : "") + (binary ? " (binary)" : "") + "...");
+            ((Runnable) server).run();
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    private static class ClientHandler extends Thread {
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                // wait for a free slot before accepting, so extra clients queue in the backlog
+                connectionSlots.acquire();
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (IOException e) {
+                    connectionSlots.release();
+                    throw e;
+                }
+                new ClientHandler(socket).start();
+            }
+        } catch (IOException e) {
+            if (running) {
+                e.printStackTrace();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+    }
+
+    private class ClientHandler extends Thread {
         private Socket clientSocket;
 
         public ClientHandler(Socket socket) {
             this.clientSocket = socket;
+            setDaemon(true);
         }
 
         public void run() {
             try {
-                System.out.println("Client connected: " + clientSocket.getInetAddress().getHostAddress());
+                if (verbose) {
+                    System.out.println("Client connected: " + clientSocket.getInetAddress().getHostAddress());
+                }
+                clientSocket.setSoTimeout(idleTimeoutMillis);
+                if (binary) {
+                    echoFrames();
+                    return;
+                }
 
                 PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true);
                 BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
 
                 String inputLine;
                 while ((inputLine = in.readLine()) != null) {
-                    System.out.println("Received from client: " + inputLine);
+                    if (verbose) {
+                        System.out.println("Received from client: " + inputLine);
+                    }
                     out.println("Server echoes: " + inputLine);
                 }
 
                 in.close();
                 out.close();
-                clientSocket.close();
+            } catch (SocketTimeoutException e) {
+                if (verbose) {
+                    System.out.println("Closing idle client");
+                }
             } catch (IOException e) {
                 System.out.println("Exception in ClientHandler: " + e.getMessage());
+            } finally {
+                try {
+                    clientSocket.close();
+                } catch (IOException e) {
+                    // closing anyway
+                }
+                connectionSlots.release();
+            }
+        }
+
+        private void echoFrames() throws IOException {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(clientSocket.getInputStream(), 8192));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(clientSocket.getOutputStream(), 8192));
+
+            BinaryProtocol.Frame frame;
+            while ((frame = BinaryProtocol.readFrame(in)) != null) {
+                BinaryProtocol.writeFrame(out, frame.requestId, BinaryProtocol.ECHO_PREFIX, frame.payload);
+                // more requests already buffered: answer them too before paying for a flush
+                if (in.available() == 0) {
+                    out.flush();
+                }
             }
+            out.flush();
         }
     }
 }
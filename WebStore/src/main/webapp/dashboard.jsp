@@ -1,10 +1,15 @@
 <%@ page contentType="text/html;charset=UTF-8" language="java" %>
 <%@ page import="com.example.model.User" %>
-<% User user = (User) session.getAttribute("user");
+<%@ page import="com.example.model.UserDAO" %>
+<%@ page import="com.example.session.SessionPrincipal" %>
+<% SessionPrincipal principal = (SessionPrincipal) session.getAttribute("user");
+   User user = principal == null ? null : new UserDAO().getUserByUsername(principal.getUsername());
    if (user == null) {
        response.sendRedirect("login.jsp");
        return;
-   } %>
+   }
+   // the session only has the id and username; name and email come from the (cached) users row
+   pageContext.setAttribute("user", user); %>
 <html>
 <head>
     <title>Dashboard</title>
@@ -1,9 +1,17 @@
 <%@ page contentType="text/html;charset=UTF-8" language="java" %>
 <%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
+<%@ page import="com.example.background.ReportStore" %>
+<%@ page import="com.example.http.ConditionalGet" %>
+<% // the page only changes when a report is added, so a poller that has the latest one gets a 304
+   ConditionalGet conditionalGet = (ConditionalGet) application.getAttribute("conditionalGet");
+   ReportStore store = (ReportStore) application.getAttribute("reports");
+   if (conditionalGet != null && store != null
+           && conditionalGet.isNotModified(request, response, "reports-" + store.getNextSequence(), true)) {
+       return;
+   } %>
 <html>
 <head>
     <title>Periodic Reports</title>
-    <meta http-equiv="refresh" content="10">
     <style>
         body {
             font-family: sans-serif;
@@ -26,10 +34,29 @@
 </head>
 <body>
     <h1>Periodic Reports</h1>
-    <ul>
-        <c:forEach var="report" items="${applicationScope.reports}">
+    <c:set var="since" value="0"/>
+    <ul id="reports">
+        <c:forEach var="report" items="${applicationScope.reports.recent}">
             <li><c:out value="${report}"/></li>
+            <c:set var="since" value="${report.sequence + 1}"/>
         </c:forEach>
     </ul>
+    <script>
+        // new reports are pushed by /reports/stream; only what we haven't rendered is sent
+        (function () {
+            var list = document.getElementById('reports');
+            var maxItems = ${applicationScope.reports.capacity};
+            var source = new EventSource('${pageContext.request.contextPath}/reports/stream?since=${since}');
+            source.addEventListener('report', function (event) {
+                var report = JSON.parse(event.data);
+                var item = document.createElement('li');
+                item.textContent = report.text;
+                list.appendChild(item);
+                while (list.children.length > maxItems) {
+                    list.removeChild(list.firstElementChild);
+                }
+            });
+        })();
+    </script>
 </body>
 </html>
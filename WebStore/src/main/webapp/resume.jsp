@@ -1,6 +1,6 @@
 <%@ page contentType="text/html;charset=UTF-8" language="java" %>
-<%@ page import="com.example.model.User" %>
-<% User user = (User) session.getAttribute("user");
+<%@ page import="com.example.session.SessionPrincipal" %>
+<% SessionPrincipal user = (SessionPrincipal) session.getAttribute("user");
    if (user == null) {
        response.sendRedirect("login.jsp");
        return;
@@ -38,5 +38,12 @@
     <c:if test="${empty studentList}">
         <p style="text-align: center;">No students found.</p>
     </c:if>
+
+    <%-- One page at a time; "next" is the id of the last student shown, or absent on the last page --%>
+    <c:if test="${not empty next}">
+        <p style="text-align: center;">
+            <a href="<c:url value="/student-list"><c:param name="after" value="${next}"/><c:param name="limit" value="${limit}"/></c:url>">Next page</a>
+        </p>
+    </c:if>
 </body>
 </html>
\ No newline at end of file
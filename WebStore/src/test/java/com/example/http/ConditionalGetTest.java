@@ -0,0 +1,63 @@
+package com.example.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class ConditionalGetTest {
+
+    @Test
+    public void matchesAnyTagInTheList() {
+        assertEquals("\"abc\"", ConditionalGet.match("\"abc\"", "\"abc\""));
+        assertEquals("\"abc\"", ConditionalGet.match("\"x\", \"abc\"", "\"abc\""));
+        assertEquals("\"abc\"", ConditionalGet.match("\"x\",\t\"abc\" ,\"y\"", "\"abc\""));
+        assertNull(ConditionalGet.match("\"x\", \"y\"", "\"abc\""));
+        assertNull(ConditionalGet.match(null, "\"abc\""));
+        assertNull(ConditionalGet.match("", "\"abc\""));
+    }
+
+    @Test
+    public void comparesWeakly() {
+        assertEquals("W/\"abc\"", ConditionalGet.match("W/\"abc\"", "\"abc\""));
+        assertEquals("\"abc\"", ConditionalGet.match("\"abc\"", "W/\"abc\""));
+        assertEquals("W/\"abc\"", ConditionalGet.match("W/\"abc\"", "W/\"abc\""));
+    }
+
+    @Test
+    public void starMatchesAnything() {
+        assertEquals("*", ConditionalGet.match("*", "\"abc\""));
+    }
+
+    @Test
+    public void compressedVariantsMatchTheirIdentityTag() {
+        assertEquals("\"abc-gzip\"", ConditionalGet.match("\"abc-gzip\"", "\"abc\""));
+        assertEquals("\"abc-deflate\"", ConditionalGet.match("\"x\", \"abc-deflate\"", "\"abc\""));
+        assertNull(ConditionalGet.match("\"abc-br\"", "\"abc\""));
+        assertNull(ConditionalGet.match("\"ab-gzip\"", "\"abc\""));
+    }
+
+    @Test
+    public void malformedHeadersMatchNothing() {
+        assertNull(ConditionalGet.match("abc", "\"abc\""));
+        assertNull(ConditionalGet.match("\"abc", "\"abc\""));
+        assertNull(ConditionalGet.match("W/abc", "\"abc\""));
+    }
+
+    @Test
+    public void onlyStrongTagsGetAnEncodingSuffix() {
+        assertEquals("\"abc-gzip\"", ConditionalGet.forEncoding("\"abc\"", "gzip"));
+        assertEquals("\"abc-deflate\"", ConditionalGet.forEncoding("\"abc\"", "deflate"));
+        assertEquals("W/\"abc\"", ConditionalGet.forEncoding("W/\"abc\"", "gzip"));
+        assertEquals("abc", ConditionalGet.forEncoding("abc", "gzip"));
+    }
+
+    @Test
+    public void encodedTagRoundTripsThroughMatch() {
+        String etag = "\"0123456789abcdef\"";
+        for (String encoding : new String[] {"gzip", "deflate"}) {
+            String encoded = ConditionalGet.forEncoding(etag, encoding);
+            assertEquals(encoded, ConditionalGet.match(encoded, etag));
+        }
+    }
+}
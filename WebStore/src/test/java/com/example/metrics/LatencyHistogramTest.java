@@ -0,0 +1,58 @@
+package com.example.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void everyBucketHoldsUpToItsUpperBound() {
+        long lower = 0;
+        for (int b = 0; b < LatencyHistogram.BUCKETS - 1; b++) {
+            long upper = LatencyHistogram.upperBoundMicros(b);
+            assertTrue("bucket " + b + " is empty", upper >= lower);
+            assertEquals(b, LatencyHistogram.bucket(lower));
+            assertEquals(b, LatencyHistogram.bucket(upper));
+            assertEquals(b + 1, LatencyHistogram.bucket(upper + 1));
+            lower = upper + 1;
+        }
+    }
+
+    @Test
+    public void valuesBelowSixteenAreExact() {
+        for (int micros = 0; micros < 16; micros++) {
+            assertEquals(micros, LatencyHistogram.bucket(micros));
+            assertEquals(micros, LatencyHistogram.upperBoundMicros(micros));
+        }
+    }
+
+    @Test
+    public void upperBoundIsWithinASixteenthOfTheValue() {
+        for (long micros = 16; micros < 1L << 40; micros = micros * 3 / 2 + 7) {
+            long upper = LatencyHistogram.upperBoundMicros(LatencyHistogram.bucket(micros));
+            assertTrue(micros + " reported as " + upper, upper >= micros && upper - micros <= micros / 16);
+        }
+    }
+
+    @Test
+    public void outOfRangeValuesLandInTheEndBuckets() {
+        assertEquals(0, LatencyHistogram.bucket(-5));
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void quantileIsTheUpperBoundOfItsBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1_000_000L); // i ms
+        }
+        long[] totals = new long[LatencyHistogram.BUCKETS];
+        histogram.addTo(totals);
+
+        double p50 = LatencyHistogram.quantileSeconds(totals, 0.5);
+        assertTrue("p50 was " + p50, p50 >= 0.050 && p50 <= 0.050 * 17 / 16);
+        assertTrue(Double.isNaN(LatencyHistogram.quantileSeconds(new long[LatencyHistogram.BUCKETS], 0.5)));
+    }
+}
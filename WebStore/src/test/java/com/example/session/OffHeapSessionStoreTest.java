@@ -0,0 +1,116 @@
+package com.example.session;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OffHeapSessionStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void savesDeletesCompactsAndReopensTheFile() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("sessions.bin");
+        // room for about a dozen of these records, so saving them all twice has to compact
+        OffHeapSessionStore store = new OffHeapSessionStore(file, 1024);
+        for (int i = 0; i < 10; i++) {
+            store.save(record("s" + i, 1000 + i, attributes(i, 1)));
+        }
+        for (int i = 0; i < 10; i++) {
+            store.save(record("s" + i, 2000 + i, attributes(i, 2)));
+        }
+        store.delete("s3");
+        store.touch("s4", 5000);
+
+        assertTrue("saving every session again should have compacted", store.getCompactionCount() > 0);
+        assertEquals(9, store.size());
+        assertNull(store.load("s3"));
+        assertEquals(2005, store.load("s5").getLastAccessedMillis());
+        assertArrayEquals(attributes(5, 2), store.load("s5").getAttributes());
+        int used = store.getUsedBytes();
+        store.close();
+
+        OffHeapSessionStore reopened = new OffHeapSessionStore(file, 1024);
+        try {
+            assertEquals(9, reopened.size());
+            assertEquals(used, reopened.getUsedBytes());
+            assertNull(reopened.load("s3"));
+            for (int i = 0; i < 10; i++) {
+                if (i == 3) {
+                    continue;
+                }
+                SessionRecord loaded = reopened.load("s" + i);
+                assertEquals("s" + i, loaded.getId());
+                assertEquals(100 + i, loaded.getCreatedMillis());
+                assertEquals(i == 4 ? 5000 : 2000 + i, loaded.getLastAccessedMillis());
+                assertEquals(1800, loaded.getMaxInactiveSeconds());
+                assertArrayEquals(attributes(i, 2), loaded.getAttributes());
+            }
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void recoveryKeepsOnlyTheNewestOfTwoLiveCopies() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("sessions.bin");
+        OffHeapSessionStore store = new OffHeapSessionStore(file, 4096);
+        store.save(record("s1", 1000, attributes(1, 1)));
+        store.save(record("s1", 2000, attributes(1, 2)));
+        store.close();
+        // as if the node died in save() after publishing the new copy but before killing the old one
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, 1), 8);
+        }
+
+        OffHeapSessionStore recovered = new OffHeapSessionStore(file, 4096);
+        assertEquals(1, recovered.size());
+        assertEquals(2000, recovered.load("s1").getLastAccessedMillis());
+        assertArrayEquals(attributes(1, 2), recovered.load("s1").getAttributes());
+        recovered.delete("s1");
+        recovered.close();
+
+        OffHeapSessionStore reopened = new OffHeapSessionStore(file, 4096);
+        try {
+            assertNull("the stale copy came back", reopened.load("s1"));
+            assertEquals(0, reopened.getUsedBytes());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void evictsOnlyExpiredSessions() throws Exception {
+        OffHeapSessionStore store = new OffHeapSessionStore(4096);
+        store.save(new SessionRecord("old", 0, 1000, 1, new byte[0]));
+        store.save(new SessionRecord("new", 0, 1000, 3600, new byte[0]));
+
+        assertEquals(1, store.evictExpired(10_000, 10));
+        assertNull(store.load("old"));
+        assertEquals(1000, store.load("new").getLastAccessedMillis());
+        store.close();
+    }
+
+    private static SessionRecord record(String id, long lastAccessedMillis, byte[] attributes) {
+        int n = Integer.parseInt(id.substring(1));
+        return new SessionRecord(id, 100 + n, lastAccessedMillis, 1800, attributes);
+    }
+
+    private static byte[] attributes(int session, int version) {
+        byte[] bytes = new byte[40];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (session * 31 + version * 7 + i);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.session;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SessionManagerTest {
+
+    private OffHeapSessionStore store;
+    private SessionManager manager;
+
+    @Before
+    public void createManager() throws Exception {
+        store = new OffHeapSessionStore(64 * 1024);
+        manager = new SessionManager(store, null, 1800, 60_000);
+    }
+
+    @After
+    public void closeManager() {
+        manager.close();
+    }
+
+    @Test
+    public void settingAnEqualValueAgainDoesNotSave() {
+        StoreSession session = manager.create();
+        session.setAttribute("userRole", "Administrator");
+        manager.commit(session);
+        assertEquals(1, manager.getSaveCount());
+
+        StoreSession loaded = manager.find(session.getId());
+        loaded.setAttribute("userRole", new String("Administrator"));
+        loaded.setAttribute("userRole", "Administrator");
+        manager.commit(loaded);
+        assertEquals(1, manager.getSaveCount());
+        assertEquals(1, manager.getUnchangedCount());
+
+        loaded.setAttribute("userRole", "Guest");
+        manager.commit(loaded);
+        assertEquals(2, manager.getSaveCount());
+    }
+
+    @Test
+    public void settingAChangedMutableValueAgainSaves() {
+        StoreSession session = manager.create();
+        ArrayList<String> cart = new ArrayList<>();
+        session.setAttribute("cart", cart);
+        manager.commit(session);
+
+        StoreSession loaded = manager.find(session.getId());
+        @SuppressWarnings("unchecked")
+        ArrayList<String> loadedCart = (ArrayList<String>) loaded.getAttribute("cart");
+        loadedCart.add("book");
+        loaded.setAttribute("cart", loadedCart);
+        manager.commit(loaded);
+        assertEquals(2, manager.getSaveCount());
+        assertEquals(1, ((ArrayList<?>) manager.find(session.getId()).getAttribute("cart")).size());
+    }
+}
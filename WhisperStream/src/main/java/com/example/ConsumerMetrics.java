@@ -0,0 +1,118 @@
+package com.example;
+
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for message consumption: how many messages came in, how long they
+ * waited on the queue (receive time minus JMSTimestamp), how long handling
+ * took, and how many failed or were redeliveries.
+ */
+public class ConsumerMetrics {
+
+    private static final ConsumerMetrics SHARED = new ConsumerMetrics();
+
+    /** The instance MyMDB reports to. */
+    public static ConsumerMetrics getShared() {
+        return SHARED;
+    }
+
+    private final long startedAtNanos = System.nanoTime();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong redelivered = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong processingNanos = new AtomicLong();
+    private final AtomicLong maxBatchNanos = new AtomicLong();
+    private final AtomicLong lagMillis = new AtomicLong();
+    private final AtomicLong lagSamples = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    public void recordReceived(Message message) {
+        received.incrementAndGet();
+        try {
+            if (message.getJMSRedelivered()) {
+                redelivered.incrementAndGet();
+            }
+            long sentAt = message.getJMSTimestamp();
+            if (sentAt > 0) {
+                long lag = Math.max(0, System.currentTimeMillis() - sentAt);
+                lagMillis.addAndGet(lag);
+                lagSamples.incrementAndGet();
+                updateMax(maxLagMillis, lag);
+            }
+        } catch (JMSException e) {
+            // header not available; count the message without a lag sample
+        }
+    }
+
+    public void recordProcessed(int messages, long nanos) {
+        processed.addAndGet(messages);
+        batches.incrementAndGet();
+        processingNanos.addAndGet(nanos);
+        updateMax(maxBatchNanos, nanos);
+    }
+
+    public void recordFailed(int messages) {
+        failed.addAndGet(messages);
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry until we win or someone recorded a larger value
+        }
+    }
+
+    public long getReceivedCount() {
+        return received.get();
+    }
+
+    public long getRedeliveredCount() {
+        return redelivered.get();
+    }
+
+    public long getProcessedCount() {
+        return processed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public double getAverageBatchSize() {
+        long count = batches.get();
+        return count == 0 ? 0.0 : (double) processed.get() / count;
+    }
+
+    /** Handling time per message, averaged over successful batches. */
+    public double getAverageProcessingMillis() {
+        long count = processed.get();
+        return count == 0 ? 0.0 : processingNanos.get() / (count * 1_000_000.0);
+    }
+
+    public double getMaxBatchMillis() {
+        return maxBatchNanos.get() / 1_000_000.0;
+    }
+
+    public double getAverageLagMillis() {
+        long count = lagSamples.get();
+        return count == 0 ? 0.0 : (double) lagMillis.get() / count;
+    }
+
+    public long getMaxLagMillis() {
+        return maxLagMillis.get();
+    }
+
+    /** Messages handled per second since startup. */
+    public double getThroughput() {
+        double seconds = (System.nanoTime() - startedAtNanos) / 1e9;
+        return seconds <= 0 ? 0.0 : processed.get() / seconds;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example;
+
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.Destination;
+import jakarta.jms.JMSConsumer;
+import jakarta.jms.JMSContext;
+import jakarta.jms.JMSException;
+import jakarta.jms.JMSRuntimeException;
+import jakarta.jms.Message;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+
+/**
+ * Pulls messages off a queue with {@code concurrency} worker threads, each
+ * with its own CLIENT_ACKNOWLEDGE context, and hands them to a
+ * {@link MessageHandler} in micro-batches.
+ *
+ * A worker collects up to {@code batchSize} messages, waiting at most
+ * {@code batchWaitMillis} after the first one for the batch to fill. Only
+ * when the handler returns is the batch acknowledged; if it throws, the
+ * session is recovered and the whole batch comes back as redeliveries.
+ *
+ * This is for standalone clients only. Its workers are plain threads, and
+ * inside a Jakarta EE server CLIENT_ACKNOWLEDGE, recover() and acknowledge()
+ * are not honoured on contexts used outside a managed component, so
+ * {@link #start} refuses to run there; in the server, MyMDB consumes the queue.
+ */
+public class ConsumerPipeline implements AutoCloseable {
+
+    private static final long POLL_MILLIS = 500;
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+    private final ConnectionFactory connectionFactory;
+    private final Destination queue;
+    private final MessageHandler handler;
+    private final int concurrency;
+    private final int batchSize;
+    private final long batchWaitMillis;
+    private final ConsumerMetrics metrics;
+    private final ExecutorService workers;
+    private volatile boolean running;
+
+    public ConsumerPipeline(ConnectionFactory connectionFactory, Destination queue, MessageHandler handler,
+            int concurrency, int batchSize, long batchWaitMillis, ConsumerMetrics metrics) {
+        this.connectionFactory = connectionFactory;
+        this.queue = queue;
+        this.handler = handler;
+        this.concurrency = concurrency;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchWaitMillis = batchWaitMillis;
+        this.metrics = metrics;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread t = new Thread(r, "jms-consumer-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        if (insideContainer()) {
+            throw new IllegalStateException("ConsumerPipeline is for standalone clients; use a message-driven bean in the server");
+        }
+        running = true;
+        for (int i = 0; i < concurrency; i++) {
+            workers.execute(this::work);
+        }
+    }
+
+    private void work() {
+        while (running) {
+            try (JMSContext context = connectionFactory.createContext(JMSContext.CLIENT_ACKNOWLEDGE);
+                 JMSConsumer consumer = context.createConsumer(queue)) {
+                while (running) {
+                    List<Message> batch = nextBatch(consumer);
+                    if (!batch.isEmpty()) {
+                        process(context, batch);
+                    }
+                }
+            } catch (JMSRuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                System.err.println("Consumer lost its connection, reconnecting: " + e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MILLIS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private List<Message> nextBatch(JMSConsumer consumer) {
+        List<Message> batch = new ArrayList<>(batchSize);
+        Message first = consumer.receive(POLL_MILLIS);
+        if (first == null) {
+            return batch;
+        }
+        metrics.recordReceived(first);
+        batch.add(first);
+
+        long deadline = System.currentTimeMillis() + batchWaitMillis;
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.currentTimeMillis();
+            Message next = remaining > 0 ? consumer.receive(remaining) : consumer.receiveNoWait();
+            if (next == null) {
+                break;
+            }
+            metrics.recordReceived(next);
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void process(JMSContext context, List<Message> batch) {
+        long start = System.nanoTime();
+        try {
+            handler.handle(batch);
+        } catch (Exception e) {
+            metrics.recordFailed(batch.size());
+            System.err.println("Error processing batch of " + batch.size() + ": " + e.getMessage());
+            context.recover();
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        try {
+            // acknowledges everything this session has received so far, i.e. the whole batch
+            batch.get(batch.size() - 1).acknowledge();
+        } catch (JMSException e) {
+            throw new JMSRuntimeException("Acknowledge failed: " + e.getMessage());
+        }
+        metrics.recordProcessed(batch.size(), nanos);
+    }
+
+    // every Jakarta EE server binds a default managed executor; a plain JVM has no such name
+    private static boolean insideContainer() {
+        try {
+            new InitialContext().lookup("java:comp/DefaultManagedExecutorService");
+            return true;
+        } catch (NamingException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** Stops the workers; a batch in progress is finished and acknowledged first. */
+    public void close(long timeoutMillis) {
+        running = false;
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        close(POLL_MILLIS * 4);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+@WebServlet("/consumer-stats")
+public class ConsumerStatsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        ConsumerMetrics metrics = ConsumerMetrics.getShared();
+        resp.setContentType("text/plain;charset=UTF-8");
+        PrintWriter out = resp.getWriter();
+        out.println("received: " + metrics.getReceivedCount());
+        out.println("redelivered: " + metrics.getRedeliveredCount());
+        out.println("processed: " + metrics.getProcessedCount());
+        out.println("failed: " + metrics.getFailedCount());
+        out.println("batches: " + metrics.getBatchCount());
+        out.println("batch_avg_size: " + String.format("%.1f", metrics.getAverageBatchSize()));
+        out.println("processing_avg_ms: " + String.format("%.3f", metrics.getAverageProcessingMillis()));
+        out.println("batch_max_ms: " + String.format("%.3f", metrics.getMaxBatchMillis()));
+        out.println("lag_avg_ms: " + String.format("%.1f", metrics.getAverageLagMillis()));
+        out.println("lag_max_ms: " + metrics.getMaxLagMillis());
+        out.println("throughput_per_sec: " + String.format("%.1f", metrics.getThroughput()));
+    }
+}
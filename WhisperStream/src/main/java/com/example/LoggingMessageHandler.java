@@ -0,0 +1,26 @@
+package com.example;
+
+import jakarta.jms.Message;
+import jakarta.jms.TextMessage;
+import java.util.List;
+
+/** Prints each message to stdout; what MyMDB always did. */
+public class LoggingMessageHandler implements MessageHandler {
+
+    private final String prefix;
+
+    public LoggingMessageHandler(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public void handle(List<Message> batch) throws Exception {
+        for (Message message : batch) {
+            if (message instanceof TextMessage) {
+                System.out.println(prefix + ((TextMessage) message).getText());
+            } else {
+                System.out.println(prefix + "(non-text message)");
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example;
+
+import jakarta.jms.Message;
+import java.util.List;
+
+/**
+ * Does the actual work for consumed messages. Messages arrive in the order
+ * they were received; a batch may hold a single message. Throwing from
+ * {@code handle} leaves the whole batch unacknowledged so it is redelivered.
+ */
+public interface MessageHandler {
+
+    void handle(List<Message> batch) throws Exception;
+}
@@ -1,19 +1,44 @@
 package com.example;
 
 import jakarta.annotation.Resource;
-import jakarta.jms.Connection;
+import jakarta.jms.CompletionListener;
 import jakarta.jms.ConnectionFactory;
-import jakarta.jms.JMSContext;
-import jakarta.jms.JMSProducer;
+import jakarta.jms.Message;
 import jakarta.jms.Queue;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebInitParam;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
-@WebServlet("/sendMessage")
+/**
+ * GET /sendMessage?message=... sends one message; POST /sendBatch sends every
+ * non-empty line of the request body, in chunks of {@code chunkSize}
+ * (overridable per request with ?chunkSize=N). Add async=true to either to
+ * queue the sends and get 202 back straight away.
+ *
+ * All sends go through one {@link ProducerPool}, so contexts and producers are
+ * reused across requests. The pool is not transacted: there is no JTA
+ * transaction around these sends, so each message is final once sent, and a
+ * batch that fails part way reports how many went out before it stopped.
+ */
+@WebServlet(
+    urlPatterns = {"/sendMessage", "/sendBatch"},
+    initParams = {
+        @WebInitParam(name = "poolSize", value = "4"),
+        @WebInitParam(name = "borrowTimeoutMillis", value = "5000"),
+        @WebInitParam(name = "asyncThreads", value = "2"),
+        @WebInitParam(name = "asyncQueueCapacity", value = "10000"),
+        @WebInitParam(name = "chunkSize", value = "100"),
+        @WebInitParam(name = "maxBatchMessages", value = "10000")
+    }
+)
 public class MessageProducerServlet extends HttpServlet {
 
     @Resource(lookup = "jms/MyConnectionFactory")
@@ -22,19 +47,142 @@ public class MessageProducerServlet extends HttpServlet {
     @Resource(lookup = "jms/MyQueue")
     private Queue queue;
 
+    private ProducerPool pool;
+    private int chunkSize;
+    private int maxBatchMessages;
+
+    private final CompletionListener logFailures = new CompletionListener() {
+        @Override
+        public void onCompletion(Message message) {
+        }
+
+        @Override
+        public void onException(Message message, Exception exception) {
+            System.err.println("Async send failed: " + exception.getMessage());
+        }
+    };
+
+    @Override
+    public void init() throws ServletException {
+        pool = new ProducerPool(connectionFactory,
+                intParam("poolSize", 4),
+                false, // SESSION_TRANSACTED means nothing to the container's contexts
+                intParam("borrowTimeoutMillis", 5000),
+                intParam("asyncThreads", 2),
+                intParam("asyncQueueCapacity", 10000));
+        chunkSize = intParam("chunkSize", 100);
+        maxBatchMessages = intParam("maxBatchMessages", 10000);
+        getServletContext().setAttribute("producerPool", pool);
+    }
+
+    @Override
+    public void destroy() {
+        getServletContext().removeAttribute("producerPool");
+        pool.close();
+    }
+
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (!"/sendMessage".equals(req.getServletPath())) {
+            resp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED, "POST the messages, one per line");
+            return;
+        }
         String messageText = req.getParameter("message");
         if (messageText == null) {
             messageText = "Hello, from WhisperStream!";
         }
 
-        try (JMSContext context = connectionFactory.createContext()) {
-            JMSProducer producer = context.createProducer();
-            producer.send(queue, messageText);
+        if (Boolean.parseBoolean(req.getParameter("async"))) {
+            try {
+                pool.sendAsync(queue, messageText, logFailures);
+            } catch (RejectedExecutionException e) {
+                busy(resp);
+                return;
+            }
+            resp.setStatus(HttpServletResponse.SC_ACCEPTED);
+            resp.getWriter().write("Message queued: " + messageText);
+            return;
+        }
+
+        try {
+            pool.send(queue, messageText);
             resp.getWriter().write("Message sent: " + messageText);
         } catch (Exception e) {
             throw new ServletException(e);
         }
     }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (!"/sendBatch".equals(req.getServletPath())) {
+            doGet(req, resp);
+            return;
+        }
+
+        List<String> messages = new ArrayList<>();
+        BufferedReader reader = req.getReader();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.isEmpty()) {
+                if (messages.size() == maxBatchMessages) {
+                    resp.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                            "At most " + maxBatchMessages + " messages per batch");
+                    return;
+                }
+                messages.add(line);
+            }
+        }
+        resp.setContentType("text/plain;charset=UTF-8");
+
+        if (Boolean.parseBoolean(req.getParameter("async"))) {
+            int queued = 0;
+            try {
+                for (String text : messages) {
+                    pool.sendAsync(queue, text, logFailures);
+                    queued++;
+                }
+            } catch (RejectedExecutionException e) {
+                resp.setHeader("Retry-After", "1");
+                resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                resp.getWriter().write("Messages queued: " + queued + " of " + messages.size() + " (send queue full)");
+                return;
+            }
+            resp.setStatus(HttpServletResponse.SC_ACCEPTED);
+            resp.getWriter().write("Messages queued: " + queued);
+            return;
+        }
+
+        int chunk = chunkSize;
+        String requested = req.getParameter("chunkSize");
+        if (requested != null) {
+            try {
+                chunk = Integer.parseInt(requested.trim());
+            } catch (NumberFormatException e) {
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "chunkSize must be a number");
+                return;
+            }
+        }
+
+        long start = System.nanoTime();
+        ProducerPool.BatchResult result = pool.sendBatch(queue, messages, chunk);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        if (result.getError() != null) {
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.getWriter().write("Messages sent: " + result.getSent() + " of " + messages.size()
+                    + " in " + result.getChunks() + " chunks before failing: " + result.getError().getMessage());
+            return;
+        }
+        resp.getWriter().write("Messages sent: " + result.getSent() + " in " + result.getChunks()
+                + " chunks (" + elapsedMillis + " ms)");
+    }
+
+    private void busy(HttpServletResponse resp) throws IOException {
+        resp.setHeader("Retry-After", "1");
+        resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Send queue is full");
+    }
+
+    private int intParam(String name, int defaultValue) {
+        String value = getInitParameter(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
 }
@@ -1,31 +1,57 @@
 package com.example;
 
+import jakarta.annotation.Resource;
 import jakarta.ejb.ActivationConfigProperty;
 import jakarta.ejb.MessageDriven;
-import jakarta.jms.JMSException;
+import jakarta.ejb.MessageDrivenContext;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
 import jakarta.jms.Message;
 import jakarta.jms.MessageListener;
-import jakarta.jms.TextMessage;
+import java.util.Collections;
 
+/**
+ * Container-driven consumer for jms/MyQueue. The container delivers one
+ * message per call, on up to endpointPoolMaxSize instances at once; each goes
+ * through the same {@link MessageHandler} and {@link ConsumerMetrics} as the
+ * pull-based {@link ConsumerPipeline}.
+ *
+ * There is no micro-batching here: the container acknowledges each message
+ * when its onMessage transaction commits, so a batch can't be held open
+ * across calls. Batching with acknowledgement deferred to the end of the
+ * batch is ConsumerPipeline's, and that runs only outside the server.
+ *
+ * A message the handler fails on rolls the transaction back, so the broker
+ * redelivers it rather than acknowledging it; its redelivery limit and dead
+ * message queue decide what happens to one that keeps failing.
+ */
 @MessageDriven(
     activationConfig = {
         @ActivationConfigProperty(propertyName = "destinationLookup", propertyValue = "jms/MyQueue"),
-        @ActivationConfigProperty(propertyName = "destinationType", propertyValue = "jakarta.jms.Queue")
+        @ActivationConfigProperty(propertyName = "destinationType", propertyValue = "jakarta.jms.Queue"),
+        @ActivationConfigProperty(propertyName = "endpointPoolMaxSize", propertyValue = "10")
     }
 )
+@TransactionAttribute(TransactionAttributeType.REQUIRED)
 public class MyMDB implements MessageListener {
 
+    private final MessageHandler handler = new LoggingMessageHandler("MDB Received Message: ");
+
+    @Resource
+    private MessageDrivenContext context;
+
     @Override
     public void onMessage(Message message) {
+        ConsumerMetrics metrics = ConsumerMetrics.getShared();
+        metrics.recordReceived(message);
+        long start = System.nanoTime();
         try {
-            if (message instanceof TextMessage) {
-                TextMessage textMessage = (TextMessage) message;
-                System.out.println("MDB Received Message: " + textMessage.getText());
-            } else {
-                System.out.println("MDB Received non-text message.");
-            }
-        } catch (JMSException e) {
-            System.err.println("Error processing message: " + e.getMessage());
+            handler.handle(Collections.singletonList(message));
+            metrics.recordProcessed(1, System.nanoTime() - start);
+        } catch (Exception e) {
+            metrics.recordFailed(1);
+            System.err.println("Error processing message, rolling back for redelivery: " + e.getMessage());
+            context.setRollbackOnly();
         }
     }
 }
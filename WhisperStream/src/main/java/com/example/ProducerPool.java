@@ -0,0 +1,349 @@
+package com.example;
+
+import jakarta.jms.CompletionListener;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.Destination;
+import jakarta.jms.JMSContext;
+import jakarta.jms.JMSProducer;
+import jakarta.jms.JMSRuntimeException;
+import jakarta.jms.TextMessage;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a few long-lived JMSContexts (each with its own JMSProducer, since a
+ * context may only be used by one thread at a time) and lends them out per
+ * send, instead of opening a context for every message.
+ *
+ * A batch is sent in chunks of {@code chunkSize} messages, one borrowed
+ * context per chunk. With {@code transacted} set the contexts are
+ * SESSION_TRANSACTED, with one commit per chunk, and a chunk that fails is
+ * rolled back as a whole. That only works for a standalone client (like the
+ * tests and benchmarks): in a Jakarta EE container the session mode is ignored
+ * or rejected outside a JTA transaction, and a pooled context can't join one,
+ * so code running in the server must pass false and gets AUTO_ACKNOWLEDGE
+ * sends, each one final as soon as it returns.
+ *
+ * Async sends run on a small executor and report back through a
+ * {@link CompletionListener}. JMSProducer.setAsync is not allowed inside a
+ * Jakarta EE web container, so the send itself is still synchronous, just not
+ * on the caller's thread.
+ */
+public class ProducerPool implements AutoCloseable {
+
+    /** Outcome of {@link #sendBatch}: messages sent for good, chunks completed, and the failure that stopped it, if any. */
+    public static final class BatchResult {
+        private final int sent;
+        private final int chunks;
+        private final RuntimeException error;
+
+        BatchResult(int sent, int chunks, RuntimeException error) {
+            this.sent = sent;
+            this.chunks = chunks;
+            this.error = error;
+        }
+
+        public int getSent() {
+            return sent;
+        }
+
+        public int getChunks() {
+            return chunks;
+        }
+
+        public RuntimeException getError() {
+            return error;
+        }
+
+        void throwIfFailed() {
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    private static final class Lease {
+        final JMSContext context;
+        final JMSProducer producer;
+
+        Lease(JMSContext context) {
+            this.context = context;
+            this.producer = context.createProducer();
+        }
+    }
+
+    private final ConnectionFactory connectionFactory;
+    private final boolean transacted;
+    private final long borrowTimeoutMillis;
+    private final LinkedBlockingDeque<Lease> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final ThreadPoolExecutor asyncExecutor;
+    private volatile boolean closed;
+
+    private final long startedAtNanos = System.nanoTime();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong rollbacks = new AtomicLong();
+    private final AtomicLong contextsCreated = new AtomicLong();
+    private final AtomicLong asyncRejected = new AtomicLong();
+    private final AtomicLong sends = new AtomicLong();
+    private final AtomicLong sendNanos = new AtomicLong();
+    private final AtomicLong maxSendNanos = new AtomicLong();
+
+    public ProducerPool(ConnectionFactory connectionFactory, int size, boolean transacted, long borrowTimeoutMillis,
+            int asyncThreads, int asyncQueueCapacity) {
+        this.connectionFactory = connectionFactory;
+        this.transacted = transacted;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.permits = new Semaphore(size, true);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.asyncExecutor = new ThreadPoolExecutor(asyncThreads, asyncThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(asyncQueueCapacity), r -> {
+                    Thread t = new Thread(r, "jms-async-send-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /** Sends one message and, on a transacted pool, commits it. */
+    public void send(Destination destination, String text) {
+        sendBatch(destination, List.of(text), 1).throwIfFailed();
+    }
+
+    /**
+     * Sends the messages in order, committing every {@code chunkSize} on a
+     * transacted pool. Stops at the first send that fails. On a transacted
+     * pool its chunk is rolled back and everything before it stays committed;
+     * otherwise every message before it has been sent.
+     */
+    public BatchResult sendBatch(Destination destination, List<String> messages, int chunkSize) {
+        int chunk = Math.max(1, chunkSize);
+        int committed = 0;
+        int chunks = 0;
+        while (committed < messages.size()) {
+            List<String> part = messages.subList(committed, Math.min(messages.size(), committed + chunk));
+            Lease lease;
+            try {
+                lease = borrow();
+            } catch (RuntimeException e) {
+                failed.addAndGet(messages.size() - committed);
+                return new BatchResult(committed, chunks, e);
+            }
+            boolean broken = false;
+            int partSent = 0;
+            try {
+                for (String text : part) {
+                    long start = System.nanoTime();
+                    lease.producer.send(destination, text);
+                    recordSend(System.nanoTime() - start);
+                    partSent++;
+                }
+                if (transacted) {
+                    lease.context.commit();
+                    commits.incrementAndGet();
+                }
+                sent.addAndGet(part.size());
+                committed += part.size();
+                chunks++;
+            } catch (RuntimeException e) {
+                broken = true;
+                if (transacted) {
+                    rollback(lease);
+                } else {
+                    // nothing to roll back: those went out as they were sent
+                    sent.addAndGet(partSent);
+                    committed += partSent;
+                }
+                failed.addAndGet(messages.size() - committed);
+                return new BatchResult(committed, chunks, e);
+            } finally {
+                release(lease, broken);
+            }
+        }
+        return new BatchResult(committed, chunks, null);
+    }
+
+    /**
+     * Queues a send and returns at once. The listener gets the sent message on
+     * success, or the message (null if it was never created) and the error.
+     * Throws RejectedExecutionException when the async queue is full.
+     */
+    public void sendAsync(Destination destination, String text, CompletionListener listener) {
+        try {
+            asyncExecutor.execute(() -> {
+                TextMessage message = null;
+                RuntimeException error = null;
+                Lease lease = null;
+                try {
+                    lease = borrow();
+                    message = lease.context.createTextMessage(text);
+                    long start = System.nanoTime();
+                    lease.producer.send(destination, message);
+                    recordSend(System.nanoTime() - start);
+                    if (transacted) {
+                        lease.context.commit();
+                        commits.incrementAndGet();
+                    }
+                    sent.incrementAndGet();
+                } catch (RuntimeException e) {
+                    error = e;
+                    failed.incrementAndGet();
+                    if (lease != null) {
+                        rollback(lease);
+                    }
+                } finally {
+                    if (lease != null) {
+                        release(lease, error != null);
+                    }
+                }
+                // the producer is back in the pool before the listener runs
+                if (error == null) {
+                    listener.onCompletion(message);
+                } else {
+                    listener.onException(message, error);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            asyncRejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    private Lease borrow() {
+        if (closed) {
+            throw new IllegalStateException("Producer pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new JMSRuntimeException("Timed out after " + borrowTimeoutMillis + " ms waiting for a JMS producer");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JMSRuntimeException("Interrupted while waiting for a JMS producer");
+        }
+        Lease lease = idle.pollFirst();
+        if (lease != null) {
+            return lease;
+        }
+        try {
+            lease = new Lease(connectionFactory.createContext(
+                    transacted ? JMSContext.SESSION_TRANSACTED : JMSContext.AUTO_ACKNOWLEDGE));
+            contextsCreated.incrementAndGet();
+            return lease;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // A context that failed is closed rather than reused; the next borrow opens a fresh one
+    private void release(Lease lease, boolean broken) {
+        if (broken || closed) {
+            closeQuietly(lease);
+        } else {
+            idle.offerFirst(lease);
+        }
+        permits.release();
+    }
+
+    private void rollback(Lease lease) {
+        if (!transacted) {
+            return;
+        }
+        try {
+            lease.context.rollback();
+            rollbacks.incrementAndGet();
+        } catch (JMSRuntimeException e) {
+            // the context is discarded anyway
+        }
+    }
+
+    private void recordSend(long nanos) {
+        sends.incrementAndGet();
+        sendNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxSendNanos.get()) && !maxSendNanos.compareAndSet(max, nanos)) {
+            // retry until we win or someone recorded a slower send
+        }
+    }
+
+    private static void closeQuietly(Lease lease) {
+        try {
+            lease.context.close();
+        } catch (RuntimeException e) {
+            // closing anyway
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        asyncExecutor.shutdown();
+        try {
+            asyncExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Lease lease;
+        while ((lease = idle.pollFirst()) != null) {
+            closeQuietly(lease);
+        }
+    }
+
+    // ---- metrics ----
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getCommitCount() {
+        return commits.get();
+    }
+
+    public long getRollbackCount() {
+        return rollbacks.get();
+    }
+
+    public long getContextsCreated() {
+        return contextsCreated.get();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getAsyncQueueDepth() {
+        return asyncExecutor.getQueue().size();
+    }
+
+    public long getAsyncRejectedCount() {
+        return asyncRejected.get();
+    }
+
+    public double getAverageSendMillis() {
+        long count = sends.get();
+        return count == 0 ? 0.0 : sendNanos.get() / (count * 1_000_000.0);
+    }
+
+    public double getMaxSendMillis() {
+        return maxSendNanos.get() / 1_000_000.0;
+    }
+
+    /** Messages sent per second since the pool was created. */
+    public double getThroughput() {
+        double seconds = (System.nanoTime() - startedAtNanos) / 1e9;
+        return seconds <= 0 ? 0.0 : sent.get() / seconds;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+@WebServlet("/producer-stats")
+public class ProducerStatsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        ProducerPool pool = (ProducerPool) getServletContext().getAttribute("producerPool");
+        resp.setContentType("text/plain;charset=UTF-8");
+        PrintWriter out = resp.getWriter();
+        if (pool == null) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            out.println("The producer pool has not started yet.");
+            return;
+        }
+
+        out.println("sent: " + pool.getSentCount());
+        out.println("failed: " + pool.getFailedCount());
+        out.println("commits: " + pool.getCommitCount());
+        out.println("rollbacks: " + pool.getRollbackCount());
+        out.println("contexts_created: " + pool.getContextsCreated());
+        out.println("contexts_idle: " + pool.getIdleCount());
+        out.println("async_queue_depth: " + pool.getAsyncQueueDepth());
+        out.println("async_rejected: " + pool.getAsyncRejectedCount());
+        out.println("send_avg_ms: " + String.format("%.3f", pool.getAverageSendMillis()));
+        out.println("send_max_ms: " + String.format("%.3f", pool.getMaxSendMillis()));
+        out.println("throughput_per_sec: " + String.format("%.1f", pool.getThroughput()));
+    }
+}
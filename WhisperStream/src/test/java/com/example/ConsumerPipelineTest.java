@@ -0,0 +1,106 @@
+package com.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import jakarta.jms.Message;
+import jakarta.jms.Queue;
+import jakarta.jms.TextMessage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+public class ConsumerPipelineTest {
+
+    private final InMemoryJms jms = new InMemoryJms();
+    private final Queue queue = jms.queue("orders");
+
+    @Test
+    public void handlesEveryMessageOnceInBatches() throws Exception {
+        send(200);
+        List<String> seen = Collections.synchronizedList(new ArrayList<>());
+        ConsumerMetrics metrics = new ConsumerMetrics();
+
+        ConsumerPipeline pipeline = new ConsumerPipeline(jms.connectionFactory(), queue,
+                batch -> seen.addAll(texts(batch)), 4, 20, 50, metrics);
+        pipeline.start();
+        awaitProcessed(metrics, 200);
+        pipeline.close(5000);
+
+        assertEquals(200, seen.size());
+        assertEquals(200, distinct(seen));
+        assertEquals(0, jms.depth("orders"));
+        assertTrue("messages should be grouped", metrics.getAverageBatchSize() > 1);
+        assertEquals(0, metrics.getFailedCount());
+    }
+
+    @Test
+    public void failedBatchIsRedeliveredAndNotLost() throws Exception {
+        send(30);
+        Set<String> handled = ConcurrentHashMap.newKeySet();
+        AtomicBoolean failOnce = new AtomicBoolean(true);
+        ConsumerMetrics metrics = new ConsumerMetrics();
+
+        ConsumerPipeline pipeline = new ConsumerPipeline(jms.connectionFactory(), queue, batch -> {
+            if (failOnce.getAndSet(false)) {
+                throw new IllegalStateException("downstream unavailable");
+            }
+            handled.addAll(texts(batch));
+        }, 1, 10, 50, metrics);
+        pipeline.start();
+        awaitProcessed(metrics, 30);
+        pipeline.close(5000);
+
+        assertEquals(30, handled.size());
+        assertTrue(metrics.getFailedCount() > 0);
+        assertEquals(metrics.getFailedCount(), metrics.getRedeliveredCount());
+        assertEquals(0, jms.depth("orders"));
+    }
+
+    @Test
+    public void lagIsMeasuredFromTheSendTimestamp() throws Exception {
+        jms.enqueue("orders", "old", System.currentTimeMillis() - 2000);
+        ConsumerMetrics metrics = new ConsumerMetrics();
+
+        ConsumerPipeline pipeline = new ConsumerPipeline(jms.connectionFactory(), queue, batch -> { }, 1, 1, 0, metrics);
+        pipeline.start();
+        awaitProcessed(metrics, 1);
+        pipeline.close(5000);
+
+        assertTrue(metrics.getMaxLagMillis() >= 2000);
+    }
+
+    private void send(int count) {
+        ProducerPool producers = new ProducerPool(jms.connectionFactory(), 2, true, 1000, 1, 10);
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add("message-" + i);
+        }
+        assertEquals(count, producers.sendBatch(queue, messages, 50).getSent());
+        producers.close();
+    }
+
+    private static List<String> texts(List<Message> batch) throws Exception {
+        List<String> texts = new ArrayList<>();
+        for (Message message : batch) {
+            texts.add(((TextMessage) message).getText());
+        }
+        return texts;
+    }
+
+    private static int distinct(List<String> values) {
+        return (int) values.stream().distinct().count();
+    }
+
+    private static void awaitProcessed(ConsumerMetrics metrics, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (metrics.getProcessedCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, metrics.getProcessedCount());
+    }
+}
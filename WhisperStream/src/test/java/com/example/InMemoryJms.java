@@ -0,0 +1,256 @@
+package com.example;
+
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.Destination;
+import jakarta.jms.JMSContext;
+import jakarta.jms.JMSRuntimeException;
+import jakarta.jms.Queue;
+import jakarta.jms.TextMessage;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Just enough of a JMS provider, held in memory, to run ProducerPool and
+ * ConsumerPipeline without GlassFish. Supports queues, text messages,
+ * AUTO_ACKNOWLEDGE, CLIENT_ACKNOWLEDGE (acknowledge / recover) and
+ * SESSION_TRANSACTED (commit / rollback); unacknowledged messages go back
+ * to the head of their queue, marked redelivered, on recover or close.
+ * Anything else throws UnsupportedOperationException.
+ */
+public class InMemoryJms {
+
+    private static final class Stored {
+        final String text;
+        final long timestamp;
+        boolean redelivered;
+
+        Stored(String text, long timestamp) {
+            this.text = text;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private final Map<String, LinkedBlockingDeque<Stored>> queues = new ConcurrentHashMap<>();
+
+    public Queue queue(String name) {
+        return proxy(Queue.class, (p, method, args) -> {
+            switch (method.getName()) {
+                case "getQueueName":
+                case "toString":
+                    return name;
+                default:
+                    return objectMethod(p, method.getName(), args);
+            }
+        });
+    }
+
+    public ConnectionFactory connectionFactory() {
+        return proxy(ConnectionFactory.class, (p, method, args) -> {
+            if (method.getName().equals("createContext")) {
+                int mode = args != null && args.length == 1 ? (Integer) args[0] : JMSContext.AUTO_ACKNOWLEDGE;
+                return new Session(mode).context;
+            }
+            return objectMethod(p, method.getName(), args);
+        });
+    }
+
+    /** Messages waiting in the queue, not counting ones delivered but unacknowledged. */
+    public int depth(String name) {
+        return queue(name, false).size();
+    }
+
+    /** Puts a message straight on a queue with the given timestamp, as if sent earlier. */
+    public void enqueue(String name, String text, long timestamp) {
+        queue(name, true).addLast(new Stored(text, timestamp));
+    }
+
+    private LinkedBlockingDeque<Stored> queue(String name, boolean create) {
+        return create ? queues.computeIfAbsent(name, n -> new LinkedBlockingDeque<>())
+                : queues.getOrDefault(name, new LinkedBlockingDeque<>());
+    }
+
+    private static String nameOf(Destination destination) {
+        return destination.toString();
+    }
+
+    private final class Session {
+        final int mode;
+        final JMSContext context;
+        final Deque<Object[]> unacked = new ArrayDeque<>(); // {queue name, Stored}
+        final List<Object[]> pendingSends = new ArrayList<>();
+        volatile boolean closed;
+
+        Session(int mode) {
+            this.mode = mode;
+            this.context = proxy(JMSContext.class, (p, method, args) -> {
+                checkOpen(method.getName());
+                switch (method.getName()) {
+                    case "createProducer":
+                        return producer();
+                    case "createConsumer":
+                        return consumer(nameOf((Destination) args[0]));
+                    case "createTextMessage":
+                        return message(args == null ? null : (String) args[0], System.currentTimeMillis(), false);
+                    case "getSessionMode":
+                        return mode;
+                    case "commit":
+                        commit();
+                        return null;
+                    case "rollback":
+                        synchronized (this) {
+                            pendingSends.clear();
+                        }
+                        redeliver();
+                        return null;
+                    case "acknowledge":
+                        synchronized (this) {
+                            unacked.clear();
+                        }
+                        return null;
+                    case "recover":
+                        redeliver();
+                        return null;
+                    case "close":
+                        redeliver();
+                        closed = true;
+                        return null;
+                    default:
+                        return objectMethod(p, method.getName(), args);
+                }
+            });
+        }
+
+        private void checkOpen(String method) {
+            if (closed && !method.equals("close")) {
+                throw new JMSRuntimeException("Context is closed");
+            }
+        }
+
+        private Object producer() {
+            return proxy(jakarta.jms.JMSProducer.class, (p, method, args) -> {
+                if (method.getName().equals("send")) {
+                    Object body = args[1];
+                    String text = body instanceof TextMessage ? ((TextMessage) body).getText() : (String) body;
+                    Object[] send = {nameOf((Destination) args[0]), new Stored(text, System.currentTimeMillis())};
+                    if (mode == JMSContext.SESSION_TRANSACTED) {
+                        synchronized (this) {
+                            pendingSends.add(send);
+                        }
+                    } else {
+                        deliver(send);
+                    }
+                    return p;
+                }
+                return objectMethod(p, method.getName(), args);
+            });
+        }
+
+        private Object consumer(String queueName) {
+            LinkedBlockingDeque<Stored> queue = queue(queueName, true);
+            return proxy(jakarta.jms.JMSConsumer.class, (p, method, args) -> {
+                switch (method.getName()) {
+                    case "receive":
+                        long timeout = args == null ? 0 : (Long) args[0];
+                        return received(queueName, timeout == 0 ? queue.takeFirst()
+                                : queue.pollFirst(timeout, TimeUnit.MILLISECONDS));
+                    case "receiveNoWait":
+                        return received(queueName, queue.pollFirst());
+                    case "close":
+                        return null;
+                    default:
+                        return objectMethod(p, method.getName(), args);
+                }
+            });
+        }
+
+        private TextMessage received(String queueName, Stored stored) {
+            if (stored == null) {
+                return null;
+            }
+            if (mode != JMSContext.AUTO_ACKNOWLEDGE && mode != JMSContext.DUPS_OK_ACKNOWLEDGE) {
+                synchronized (this) {
+                    unacked.addLast(new Object[] {queueName, stored});
+                }
+            }
+            return message(stored.text, stored.timestamp, stored.redelivered);
+        }
+
+        private TextMessage message(String text, long timestamp, boolean redelivered) {
+            return proxy(TextMessage.class, (p, method, args) -> {
+                switch (method.getName()) {
+                    case "getText":
+                        return text;
+                    case "getJMSTimestamp":
+                        return timestamp;
+                    case "getJMSRedelivered":
+                        return redelivered;
+                    case "acknowledge":
+                        synchronized (this) {
+                            unacked.clear();
+                        }
+                        return null;
+                    default:
+                        return objectMethod(p, method.getName(), args);
+                }
+            });
+        }
+
+        private void commit() {
+            List<Object[]> sends;
+            synchronized (this) {
+                sends = new ArrayList<>(pendingSends);
+                pendingSends.clear();
+                unacked.clear();
+            }
+            for (Object[] send : sends) {
+                deliver(send);
+            }
+        }
+
+        private void deliver(Object[] send) {
+            queue((String) send[0], true).addLast((Stored) send[1]);
+        }
+
+        // puts unacknowledged messages back at the head of their queues, in their original order
+        private void redeliver() {
+            List<Object[]> back;
+            synchronized (this) {
+                back = new ArrayList<>(unacked);
+                unacked.clear();
+            }
+            for (Iterator<Object[]> it = new ArrayDeque<>(back).descendingIterator(); it.hasNext(); ) {
+                Object[] entry = it.next();
+                Stored stored = (Stored) entry[1];
+                stored.redelivered = true;
+                queue((String) entry[0], true).addFirst(stored);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(InMemoryJms.class.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+
+    private static Object objectMethod(Object proxy, String name, Object[] args) {
+        switch (name) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return proxy.getClass().getInterfaces()[0].getSimpleName();
+            default:
+                throw new UnsupportedOperationException(name + " is not supported by InMemoryJms");
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.bench;
+
+import com.example.BulkLoader;
+import com.example.DB1;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DB1.insertInBatch(Connection, String, String[]) against an in-memory H2
+ * database in MySQL mode, so the number is the parameter binding and batch
+ * path rather than network time. bulkLoader loads the same rows, already
+ * typed, through BulkLoader with multi-row statements.
+ *
+ * insertInBatch prints a line per row; System.out is pointed at a null
+ * stream while measuring so the console doesn't dominate the result.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchInsertBenchmark {
+
+    private static final String INSERT = "INSERT INTO people (id, name, age) VALUES (?, ?, ?)";
+
+    @Param({"10", "1000"})
+    int rows;
+
+    Connection connection;
+    String[] values;
+    List<Object[]> typedRows;
+    PrintStream originalOut;
+    DB1 db = new DB1();
+
+    @Setup
+    public void setUp() throws Exception {
+        connection = DriverManager.getConnection("jdbc:h2:mem:bench;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS people (id INT, name VARCHAR(100), age INT)");
+        }
+        values = new String[rows * 3];
+        for (int i = 0; i < rows; i++) {
+            values[i * 3] = Integer.toString(i);
+            values[i * 3 + 1] = "person-" + i;
+            values[i * 3 + 2] = Integer.toString(20 + i % 50);
+        }
+        typedRows = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            typedRows.add(new Object[] {i, "person-" + i, 20 + i % 50});
+        }
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @Setup(Level.Iteration)
+    public void emptyTable() throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("TRUNCATE TABLE people");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        System.setOut(originalOut);
+        connection.close();
+    }
+
+    @Benchmark
+    public void insertInBatch() throws Exception {
+        db.insertInBatch(connection, INSERT, values);
+    }
+
+    @Benchmark
+    public BulkLoader.Result bulkLoader() throws Exception {
+        BulkLoader loader = new BulkLoader(connection, "people", new String[] {"id", "name", "age"});
+        loader.setRowsPerStatement(0);
+        return loader.load(typedRows);
+    }
+}
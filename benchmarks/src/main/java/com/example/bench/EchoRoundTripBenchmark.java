@@ -0,0 +1,102 @@
+package com.example.bench;
+
+import com.example.socket.NioEchoServer;
+import com.example.socket.SimpleServer;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One line out and its echo back over loopback, against the thread-per-client
+ * SimpleServer and the selector-based NioEchoServer. Each benchmark thread
+ * has its own connection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class EchoRoundTripBenchmark {
+
+    private static final byte[] LINE = "hello from the benchmark\n".getBytes(StandardCharsets.UTF_8);
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        @Param({"threads", "nio"})
+        String mode;
+
+        Closeable server;
+        int port;
+
+        @Setup
+        public void start() throws Exception {
+            if (mode.equals("nio")) {
+                NioEchoServer nio = new NioEchoServer(0, 1000, 0, false, false);
+                port = nio.getPort();
+                server = nio;
+                startDaemon(nio);
+            } else {
+                SimpleServer threads = new SimpleServer(0, 1000, 0, false, false);
+                port = threads.getPort();
+                server = threads;
+                startDaemon(threads);
+            }
+        }
+
+        @TearDown
+        public void stop() throws Exception {
+            server.close();
+        }
+
+        private static void startDaemon(Runnable server) {
+            Thread t = new Thread(server, "echo-server");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        Socket socket;
+        OutputStream out;
+        BufferedReader in;
+
+        @Setup
+        public void connect(Server server) throws Exception {
+            socket = new Socket("localhost", server.port);
+            socket.setTcpNoDelay(true);
+            out = socket.getOutputStream();
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        @TearDown
+        public void disconnect() throws Exception {
+            socket.close();
+        }
+    }
+
+    @Benchmark
+    public String roundTrip(Client client) throws Exception {
+        client.out.write(LINE);
+        client.out.flush();
+        return client.in.readLine();
+    }
+}
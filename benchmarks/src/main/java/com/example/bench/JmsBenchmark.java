@@ -0,0 +1,111 @@
+package com.example.bench;
+
+import com.example.InMemoryJms;
+import com.example.ProducerPool;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSConsumer;
+import jakarta.jms.JMSContext;
+import jakarta.jms.Message;
+import jakarta.jms.Queue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sending and consuming through InMemoryJms, the in-memory broker the
+ * WhisperStream tests use. It has no network or disk, so the results show
+ * what the client-side pattern costs: a context per message (what
+ * MessageProducerServlet used to do) against ProducerPool, one commit per
+ * message against one per chunk, and per-message against batched acks.
+ * Scores are per message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JmsBenchmark {
+
+    private static final int BATCH = 100;
+
+    InMemoryJms broker;
+    ConnectionFactory connectionFactory;
+    Queue queue;
+    ProducerPool pool;
+    JMSContext consumerContext;
+    JMSConsumer consumer;
+    List<String> messages;
+
+    @Setup
+    public void setUp() {
+        broker = new InMemoryJms();
+        connectionFactory = broker.connectionFactory();
+        queue = broker.queue("bench");
+        pool = new ProducerPool(connectionFactory, 2, true, 1000, 1, 10);
+        consumerContext = connectionFactory.createContext(JMSContext.CLIENT_ACKNOWLEDGE);
+        consumer = consumerContext.createConsumer(queue);
+        messages = new ArrayList<>();
+        for (int i = 0; i < BATCH; i++) {
+            messages.add("message-" + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        consumerContext.close();
+        pool.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void contextPerMessage() throws Exception {
+        for (String text : messages) {
+            try (JMSContext context = connectionFactory.createContext()) {
+                context.createProducer().send(queue, text);
+            }
+        }
+        drain(1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void pooledSendEach() throws Exception {
+        for (String text : messages) {
+            pool.send(queue, text);
+        }
+        drain(1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void pooledBatchAndBatchedAck() throws Exception {
+        pool.sendBatch(queue, messages, BATCH);
+        drain(BATCH);
+    }
+
+    // receives the messages just sent, acknowledging every {@code ackEvery}
+    private void drain(int ackEvery) throws Exception {
+        for (int i = 1; i <= BATCH; i++) {
+            Message message = consumer.receiveNoWait();
+            if (message == null) {
+                throw new IllegalStateException("expected " + BATCH + " messages, got " + (i - 1));
+            }
+            if (i % ackEvery == 0) {
+                message.acknowledge();
+            }
+        }
+    }
+}
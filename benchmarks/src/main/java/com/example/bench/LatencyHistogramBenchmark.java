@@ -0,0 +1,45 @@
+package com.example.bench;
+
+import com.example.metrics.LatencyHistogram;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What MetricsFilter adds to each request for its latency histogram: one
+ * record() of a 0-100 ms latency, from one thread and from 16 threads
+ * hitting the same route. Scores are nanoseconds per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LatencyHistogramBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Route {
+        final LatencyHistogram histogram = new LatencyHistogram();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void recordOneThread(Route route) {
+        route.histogram.record(ThreadLocalRandom.current().nextLong(100_000_000L));
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void recordSixteenThreads(Route route) {
+        route.histogram.record(ThreadLocalRandom.current().nextLong(100_000_000L));
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.bench;
+
+import com.example.model.ResumeParser;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Resume upload parsing, as ResumeUploadServlet does it: StAX against the original DOM walk. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResumeParsingBenchmark {
+
+    @Param({"1", "100", "5000"})
+    int resumes;
+
+    byte[] document;
+
+    @Setup
+    public void buildDocument() {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<resumes>\n");
+        for (int i = 0; i < resumes; i++) {
+            xml.append("  <resume>\n")
+               .append("    <name>Candidate ").append(i).append("</name>\n")
+               .append("    <email>candidate").append(i).append("@example.com</email>\n")
+               .append("    <phone>555-").append(String.format("%04d", i % 10000)).append("</phone>\n")
+               .append("    <summary>Ten years of experience with Java, SQL and distributed systems.</summary>\n")
+               .append("  </resume>\n");
+        }
+        document = xml.append("</resumes>\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String streaming() throws Exception {
+        return ResumeParser.parseStreaming(new ByteArrayInputStream(document));
+    }
+
+    @Benchmark
+    public String dom() throws Exception {
+        return ResumeParser.parseDom(new ByteArrayInputStream(document));
+    }
+}
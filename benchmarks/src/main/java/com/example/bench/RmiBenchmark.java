@@ -0,0 +1,102 @@
+package com.example.bench;
+
+import com.example.CoalescingHello;
+import com.example.Hello;
+import com.example.HelloImpl;
+import java.rmi.server.RemoteObject;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hello.sayHello(name) over loopback RMI from 16 threads: one remote call
+ * per request through the plain stub, against CoalescingHello batching
+ * concurrent requests into sayHelloAll, with and without its result cache.
+ * The cached run cycles through 100 names, the others never repeat one.
+ * Scores are calls per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class RmiBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Service {
+        HelloImpl impl;
+        Hello stub;
+        CoalescingHello batched;
+        CoalescingHello cached;
+
+        @Setup
+        public void start() throws Exception {
+            impl = new HelloImpl();
+            // calls through the stub go over a loopback socket even in the same JVM
+            stub = (Hello) RemoteObject.toStub(impl);
+            batched = new CoalescingHello(stub, 256, 0, 0);
+            cached = new CoalescingHello(stub, 256, 0, 30000);
+        }
+
+        @TearDown
+        public void stop() throws Exception {
+            for (CoalescingHello wrapper : new CoalescingHello[] {batched, cached}) {
+                if (wrapper.getCallCount() > 0) {
+                    System.out.println(System.lineSeparator() + wrapper);
+                }
+            }
+            batched.close();
+            cached.close();
+            UnicastRemoteObject.unexportObject(impl, true);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Caller {
+        private static int nextId;
+        String prefix;
+        long n;
+
+        @Setup
+        public void setUp() {
+            synchronized (Caller.class) {
+                prefix = "caller" + nextId++ + "-";
+            }
+        }
+
+        String uniqueName() {
+            return prefix + n++;
+        }
+
+        String repeatingName() {
+            return "name" + (n++ % 100);
+        }
+    }
+
+    @Benchmark
+    public String callPerRequest(Service service, Caller caller) throws Exception {
+        return service.stub.sayHello(caller.uniqueName());
+    }
+
+    @Benchmark
+    public String coalesced(Service service, Caller caller) throws Exception {
+        return service.batched.sayHello(caller.uniqueName());
+    }
+
+    @Benchmark
+    public String coalescedAndCached(Service service, Caller caller) throws Exception {
+        return service.cached.sayHello(caller.repeatingName());
+    }
+}
@@ -0,0 +1,200 @@
+package com.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+
+/**
+ * Loads typed rows into one table in chunks, each chunk in its own
+ * transaction, so a load of millions of rows neither builds one giant batch
+ * in memory nor pays a commit per row.
+ *
+ * Rows are Object arrays in column order and are bound by their Java type
+ * (see {@link DB1#bind}); nothing is parsed or guessed from strings.
+ *
+ * By default every row is one INSERT added to a JDBC batch. On MySQL, open
+ * the connection with rewriteBatchedStatements=true and Connector/J sends
+ * the batch as multi-row INSERTs. For drivers without that, set
+ * rowsPerStatement above 1 to have the loader write the multi-row INSERTs
+ * itself; 0 picks as many rows as fit under MySQL's 65535 placeholder limit
+ * (at most 1000). Either way rows are inserted in the order given.
+ *
+ * If a chunk fails it is rolled back and the load stops; earlier chunks
+ * stay committed, and the exception message says how many rows that was.
+ */
+public class BulkLoader {
+
+    private static final int MAX_PLACEHOLDERS = 65535;
+
+    /** What a finished load did. */
+    public static final class Result {
+        private final long rows;
+        private final long chunks;
+        private final long elapsedMillis;
+
+        Result(long rows, long chunks, long elapsedMillis) {
+            this.rows = rows;
+            this.chunks = chunks;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getChunks() {
+            return chunks;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedMillis == 0 ? rows * 1000.0 : rows * 1000.0 / elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d rows in %d chunks, %d ms (%.0f rows/sec)",
+                    rows, chunks, elapsedMillis, getRowsPerSecond());
+        }
+    }
+
+    private final Connection conn;
+    private final String table;
+    private final String[] columns;
+    private int chunkSize = 5000;
+    private int rowsPerStatement = 1;
+    private long reportEveryRows;
+
+    public BulkLoader(Connection conn, String table, String[] columns) {
+        this.conn = conn;
+        this.table = table;
+        this.columns = columns.clone();
+    }
+
+    /** Rows per transaction. */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /** Rows per INSERT statement; 1 leaves multi-row rewriting to the driver, 0 sizes it automatically. */
+    public void setRowsPerStatement(int rowsPerStatement) {
+        this.rowsPerStatement = Math.max(0, rowsPerStatement);
+    }
+
+    /** Print a progress line with rows/sec every this many rows; 0 to stay quiet. */
+    public void setReportEveryRows(long reportEveryRows) {
+        this.reportEveryRows = reportEveryRows;
+    }
+
+    public Result load(Iterable<Object[]> rows) throws SQLException {
+        return load(rows.iterator());
+    }
+
+    public Result load(Iterator<Object[]> rows) throws SQLException {
+        int perStatement = rowsPerStatement == 0
+                ? Math.max(1, Math.min(1000, MAX_PLACEHOLDERS / columns.length))
+                : rowsPerStatement;
+        long start = System.currentTimeMillis();
+        long loaded = 0;
+        long chunks = 0;
+        long nextReport = reportEveryRows;
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+
+        Object[][] buffer = new Object[perStatement][];
+        try (PreparedStatement single = conn.prepareStatement(insertSql(1));
+             PreparedStatement multi = perStatement > 1 ? conn.prepareStatement(insertSql(perStatement)) : null) {
+            while (rows.hasNext()) {
+                int inChunk = 0;
+                try {
+                    while (inChunk < chunkSize && rows.hasNext()) {
+                        int buffered = 0;
+                        while (buffered < perStatement && inChunk + buffered < chunkSize && rows.hasNext()) {
+                            buffer[buffered++] = checkWidth(rows.next());
+                        }
+                        if (buffered == perStatement && multi != null) {
+                            bindRows(multi, buffer, buffered);
+                            multi.addBatch();
+                        } else {
+                            for (int i = 0; i < buffered; i++) {
+                                bindRows(single, buffer, i, 1);
+                                single.addBatch();
+                            }
+                        }
+                        inChunk += buffered;
+                    }
+                    // rows short of a full multi-row statement only ever end a chunk, so running the
+                    // multi-row batch first keeps the input order
+                    if (multi != null) {
+                        multi.executeBatch();
+                    }
+                    single.executeBatch();
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    SQLException failure = new SQLException("Bulk load into " + table + " failed after " + loaded
+                            + " committed rows: " + e.getMessage(), e);
+                    try {
+                        conn.rollback();
+                    } catch (SQLException rollbackFailure) {
+                        // a broken connection fails this too; the reason the chunk failed matters more
+                        failure.addSuppressed(rollbackFailure);
+                    }
+                    throw failure;
+                }
+                loaded += inChunk;
+                chunks++;
+                if (reportEveryRows > 0 && loaded >= nextReport) {
+                    long elapsed = Math.max(1, System.currentTimeMillis() - start);
+                    System.out.printf("Loaded %d rows into %s (%.0f rows/sec)%n", loaded, table, loaded * 1000.0 / elapsed);
+                    nextReport = loaded + reportEveryRows;
+                }
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return new Result(loaded, chunks, System.currentTimeMillis() - start);
+    }
+
+    private Object[] checkWidth(Object[] row) {
+        if (row.length != columns.length) {
+            throw new IllegalArgumentException("Row has " + row.length + " values, " + table
+                    + " load expects " + columns.length);
+        }
+        return row;
+    }
+
+    private void bindRows(PreparedStatement stmt, Object[][] rows, int count) throws SQLException {
+        bindRows(stmt, rows, 0, count);
+    }
+
+    private void bindRows(PreparedStatement stmt, Object[][] rows, int from, int count) throws SQLException {
+        int index = 1;
+        for (int r = from; r < from + count; r++) {
+            for (Object value : rows[r]) {
+                DB1.bind(stmt, index++, value);
+            }
+        }
+    }
+
+    private String insertSql(int rowCount) {
+        StringBuilder tuple = new StringBuilder("(");
+        for (int i = 0; i < columns.length; i++) {
+            tuple.append(i == 0 ? "?" : ", ?");
+        }
+        tuple.append(')');
+
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (")
+                .append(String.join(", ", columns)).append(") VALUES ");
+        for (int r = 0; r < rowCount; r++) {
+            if (r > 0) {
+                sql.append(", ");
+            }
+            sql.append(tuple);
+        }
+        return sql.toString();
+    }
+}
@@ -14,9 +14,25 @@ public class Client {
             Hello stub = (Hello) registry.lookup("Hello");
             String response = stub.sayHello();
             System.out.println("response: " + response);
+
+            // the same service through the batching, caching wrapper
+            try (CoalescingHello hello = wrap(stub)) {
+                System.out.println("response: " + hello.sayHello("RMI"));
+                System.out.println("response: " + hello.sayHello("RMI")); // from the cache
+                System.out.println(hello);
+            }
         } catch (Exception e) {
             System.err.println("Client exception: " + e.toString());
             e.printStackTrace();
         }
     }
+
+    /**
+     * Wraps a Hello stub for use from many threads: concurrent calls go out
+     * together in sayHelloAll batches of up to 256, and answers are reused
+     * for 30 seconds.
+     */
+    public static CoalescingHello wrap(Hello stub) {
+        return new CoalescingHello(stub, 256, 0, 30000);
+    }
 }
@@ -0,0 +1,289 @@
+package com.example;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side wrapper around a {@link Hello} stub that cuts down remote
+ * round trips, for callers on many threads.
+ *
+ * Calls are queued and a single sender thread ships whatever has queued up
+ * as one {@link Hello#sayHelloAll} call, so while one round trip is in
+ * flight the next batch collects behind it. {@code maxWaitMicros} above 0
+ * makes the sender hold a batch open a little longer to fill it.
+ *
+ * Concurrent calls with the same name share one request, and answers are
+ * kept for {@code ttlMillis} (0 for no caching) since sayHello has no side
+ * effects. A failed batch fails every call in it with the RemoteException,
+ * and a reply with fewer answers than names fails the calls left over.
+ */
+public class CoalescingHello implements Hello, AutoCloseable {
+
+    private static final Object NO_NAME = new Object(); // map key for sayHello(); no name equals it
+    private static final int MAX_CACHE_ENTRIES = 10000;
+
+    private static final class Call {
+        final String name;
+        final Object key;
+        final CompletableFuture<String> reply = new CompletableFuture<>();
+
+        Call(String name) {
+            this.name = name;
+            this.key = keyOf(name);
+        }
+    }
+
+    private static final class Cached {
+        final String reply;
+        final long expiresAt;
+
+        Cached(String reply, long expiresAt) {
+            this.reply = reply;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Hello stub;
+    private final int maxBatch;
+    private final long maxWaitNanos;
+    private final long ttlMillis;
+    private final BlockingQueue<Call> queue = new LinkedBlockingQueue<>();
+    private final Map<Object, Call> inFlight = new ConcurrentHashMap<>();
+    private final Map<Object, Cached> cache = new ConcurrentHashMap<>();
+    private final Thread sender;
+    private volatile boolean closed;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong remoteCalls = new AtomicLong();
+    private final AtomicLong remoteRequests = new AtomicLong();
+
+    public CoalescingHello(Hello stub, int maxBatch, long maxWaitMicros, long ttlMillis) {
+        this.stub = stub;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+        this.ttlMillis = ttlMillis;
+        this.sender = new Thread(this::sendLoop, "hello-batch-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @Override
+    public String sayHello() throws RemoteException {
+        return call(null);
+    }
+
+    @Override
+    public String sayHello(String name) throws RemoteException {
+        return call(name);
+    }
+
+    /** Already a batch, so it goes straight through; the answers still fill the cache. */
+    @Override
+    public String[] sayHelloAll(String[] names) throws RemoteException {
+        calls.addAndGet(names.length);
+        remoteCalls.incrementAndGet();
+        remoteRequests.addAndGet(names.length);
+        String[] replies = stub.sayHelloAll(names);
+        if (replies == null || replies.length < names.length) {
+            throw new RemoteException("sayHelloAll answered " + (replies == null ? 0 : replies.length)
+                    + " of " + names.length + " names");
+        }
+        for (int i = 0; i < names.length; i++) {
+            remember(keyOf(names[i]), replies[i]);
+        }
+        return replies;
+    }
+
+    private String call(String name) throws RemoteException {
+        Object key = keyOf(name);
+        calls.incrementAndGet();
+        if (ttlMillis > 0) {
+            Cached cached = cache.get(key);
+            if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+                cacheHits.incrementAndGet();
+                return cached.reply;
+            }
+        }
+        if (closed) {
+            throw new RemoteException("CoalescingHello is closed");
+        }
+
+        Call mine = new Call(name);
+        Call call = inFlight.putIfAbsent(key, mine);
+        if (call == null) {
+            call = mine;
+            queue.add(call);
+            if (closed) {
+                // lost a race with close(); don't leave the call waiting for a sender that is gone
+                failQueued(new RemoteException("CoalescingHello is closed"));
+            }
+        } else {
+            coalesced.incrementAndGet();
+        }
+        try {
+            return call.reply.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted waiting for a batched call", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RemoteException ? (RemoteException) cause
+                    : new RemoteException("Batched call failed", cause);
+        }
+    }
+
+    private void sendLoop() {
+        List<Call> batch = new ArrayList<>(maxBatch);
+        while (!closed) {
+            try {
+                Call first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - batch.size());
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatch && maxWaitNanos > 0) {
+                    long remaining = deadline - System.nanoTime();
+                    Call next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatch - batch.size());
+                }
+                send(batch);
+            } catch (InterruptedException e) {
+                // the calls drained so far are no longer queued, so failQueued won't reach them
+                fail(batch, new RemoteException("CoalescingHello is closed"));
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        failQueued(new RemoteException("CoalescingHello is closed"));
+    }
+
+    private void send(List<Call> batch) {
+        String[] names = new String[batch.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = batch.get(i).name;
+        }
+        remoteCalls.incrementAndGet();
+        remoteRequests.addAndGet(names.length);
+        String[] replies;
+        try {
+            replies = stub.sayHelloAll(names);
+        } catch (RemoteException | RuntimeException e) {
+            fail(batch, e);
+            return;
+        }
+        int answered = replies == null ? 0 : Math.min(replies.length, batch.size());
+        for (int i = 0; i < answered; i++) {
+            Call call = batch.get(i);
+            // cache before leaving inFlight, so a caller arriving now finds one or the other
+            remember(call.key, replies[i]);
+            inFlight.remove(call.key, call);
+            call.reply.complete(replies[i]);
+        }
+        if (answered < batch.size()) {
+            fail(batch.subList(answered, batch.size()), new RemoteException(
+                    "sayHelloAll answered " + answered + " of " + batch.size() + " names"));
+        }
+    }
+
+    private void fail(List<Call> batch, Exception e) {
+        for (Call call : batch) {
+            inFlight.remove(call.key, call);
+            call.reply.completeExceptionally(e);
+        }
+    }
+
+    private static Object keyOf(String name) {
+        return name == null ? NO_NAME : name;
+    }
+
+    private void remember(Object key, String reply) {
+        if (ttlMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (cache.size() >= MAX_CACHE_ENTRIES) {
+            for (Iterator<Cached> it = cache.values().iterator(); it.hasNext(); ) {
+                if (it.next().expiresAt <= now) {
+                    it.remove();
+                }
+            }
+            if (cache.size() >= MAX_CACHE_ENTRIES) {
+                cache.clear();
+            }
+        }
+        cache.put(key, new Cached(reply, now + ttlMillis));
+    }
+
+    private void failQueued(RemoteException e) {
+        Call call;
+        while ((call = queue.poll()) != null) {
+            inFlight.remove(call.key, call);
+            call.reply.completeExceptionally(e);
+        }
+    }
+
+    public void invalidate() {
+        cache.clear();
+    }
+
+    /** Stops the sender; calls still queued fail with a RemoteException. */
+    @Override
+    public void close() {
+        closed = true;
+        sender.interrupt();
+        try {
+            sender.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failQueued(new RemoteException("CoalescingHello is closed"));
+    }
+
+    // ---- metrics ----
+
+    public long getCallCount() {
+        return calls.get();
+    }
+
+    public long getCacheHitCount() {
+        return cacheHits.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getRemoteCallCount() {
+        return remoteCalls.get();
+    }
+
+    public double getAverageBatchSize() {
+        long batches = remoteCalls.get();
+        return batches == 0 ? 0.0 : (double) remoteRequests.get() / batches;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("calls=%d cacheHits=%d coalesced=%d remoteCalls=%d avgBatch=%.1f",
+                getCallCount(), getCacheHitCount(), getCoalescedCount(), getRemoteCallCount(), getAverageBatchSize());
+    }
+}
@@ -1,11 +1,30 @@
 package com.example;
 
+import com.example.db.StatementCache;
 import java.sql.*;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 public class DB1 {
 
+    // Prepared statements per connection, see prepare()
+    private final Map<Connection, StatementCache> statementCaches = new IdentityHashMap<>();
+    private final StatementCache.Stats statementStats = new StatementCache.Stats();
+    private int statementCacheSize = 32;
+
     Connection createConnection(String dbname){
+        return createConnection(dbname, false);
+    }
+
+    /**
+     * With {@code rewriteBatches} set, Connector/J turns a batch of single-row
+     * INSERTs into multi-row INSERTs (rewriteBatchedStatements=true), which is
+     * what makes {@link BulkLoader} fast on MySQL.
+     */
+    Connection createConnection(String dbname, boolean rewriteBatches){
         String url  = "jdbc:mysql://localhost:3306/" + dbname;
+        if (rewriteBatches) url += "?rewriteBatchedStatements=true";
         String username = "root";
         String password = "";
 
@@ -29,78 +48,133 @@ public class DB1 {
         return conn;
     }
 
-    public void retrieveColumnValues(int num, Connection conn, String query, String[] placeholder, String[] columns) throws SQLException {
-        
-        if (num == 0){
-            Statement stmt = conn.createStatement();
-            ResultSet rst = null;
+    /**
+     * Fetch size that makes MySQL Connector/J stream the result one row at a
+     * time instead of reading it all into memory first. Other drivers (or
+     * MySQL with useCursorFetch=true) take an ordinary positive fetch size.
+     */
+    public static final int STREAM_FETCH_SIZE = Integer.MIN_VALUE;
+
+    /**
+     * Prepares {@code sql} on {@code conn}, reusing the statement from an
+     * earlier call with the same SQL on the same connection when there is
+     * one (see {@link StatementCache}). Close it as usual; that returns it
+     * to the cache.
+     */
+    public PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        StatementCache cache;
+        synchronized (statementCaches) {
+            cache = statementCaches.get(conn);
+            if (cache == null) {
+                // forget connections that have been closed since
+                for (Iterator<Map.Entry<Connection, StatementCache>> it = statementCaches.entrySet().iterator(); it.hasNext(); ) {
+                    Map.Entry<Connection, StatementCache> entry = it.next();
+                    if (entry.getKey().isClosed()) {
+                        entry.getValue().close();
+                        it.remove();
+                    }
+                }
+                cache = new StatementCache(conn, statementCacheSize, statementStats);
+                statementCaches.put(conn, cache);
+            }
+        }
+        return cache.prepare(sql);
+    }
 
-        try {
-            rst = stmt.executeQuery(query);
+    /** Statements kept per connection; 0 prepares afresh every time. Applies to connections seen after the call. */
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
 
-            while (rst.next()) {
-                for (String column : columns) {
-                    String value = rst.getString(column);
-                    System.out.println(column + ": " + value);
-                }
-                System.out.println("-----------"); // Optional: separator between rows
-            }      
+    public StatementCache.Stats getStatementCacheStats() {
+        return statementStats;
+    }
 
-        } catch (SQLException e) {
-            e.printStackTrace();
-        } finally {
-            try {
-                if (rst != null) rst.close();
-                if (stmt != null) stmt.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
+    /** Closes the statements cached for {@code conn}; call before closing a connection DB1 has used. */
+    public void closeStatements(Connection conn) {
+        StatementCache cache;
+        synchronized (statementCaches) {
+            cache = statementCaches.remove(conn);
+        }
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    /**
+     * Runs the query and hands each row to the visitor as it is read, so a
+     * large table is processed in constant memory. The cursor is forward-only
+     * and read-only, and {@code fetchSize} (0 for the driver default) says how
+     * many rows the driver pulls per round trip.
+     *
+     * {@code columns} picks the columns the visitor reads, in the order it
+     * addresses them; null means every column of the result. Parameters are
+     * bound by type, in order, for each ? in the query. Returns the number of
+     * rows visited.
+     */
+    public long streamRows(Connection conn, String query, Object[] params, String[] columns,
+                           int fetchSize, RowVisitor visitor) throws SQLException {
+        // prepareStatement(sql) is forward-only and read-only by default
+        try (PreparedStatement stmt = prepare(conn, query)) {
+            stmt.setFetchDirection(ResultSet.FETCH_FORWARD);
+            if (fetchSize != 0) {
+                stmt.setFetchSize(fetchSize);
+            }
+            if (params != null) {
+                for (int i = 0; i < params.length; i++) {
+                    bind(stmt, i + 1, params[i]);
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                Row row = new Row(rs, columns);
+                while (row.next()) {
+                    visitor.visit(row);
+                }
+                return row.getRowNumber();
             }
+        }
     }
+
+    static void bind(PreparedStatement stmt, int index, Object value) throws SQLException {
+        if (value == null) {
+            stmt.setNull(index, Types.NULL);
+        } else if (value instanceof Integer) {
+            stmt.setInt(index, (Integer) value);
+        } else if (value instanceof Long) {
+            stmt.setLong(index, (Long) value);
+        } else if (value instanceof String) {
+            stmt.setString(index, (String) value);
+        } else {
+            stmt.setObject(index, value);
         }
-        
-        else if ( num == 1) {
-            // use PreparedStatement
-            PreparedStatement stmt = conn.prepareStatement(query);
-            ResultSet rs = null;
+    }
 
+    public void retrieveColumnValues(int num, Connection conn, String query, String[] placeholder, String[] columns) throws SQLException {
+        if (num == 0) {
             try {
-                if (query.contains("?")) {
-                    //our query is set for the prepared statement
-                    int index = 0;
-
-                    for(String ph : placeholder){
-                        //increment the index
-                        index++;
-                        
-                        //check if a placeholder is an integer ans set it as Int
-                        if(ph.matches("\\d+")) stmt.setInt(index, Integer.parseInt(ph));
-                        else stmt.setString(index, ph);
-                        
+                streamRows(conn, query, null, columns, 0, row -> {
+                    for (int i = 0; i < row.getColumnCount(); i++) {
+                        System.out.println(row.getColumnName(i) + ": " + row.getString(i));
                     }
-
-                    rs = stmt.executeQuery();
-
-                    while(rs.next()){
-                        String value = null;
-                        for(String c: columns ){
-                            value = rs.getString(c);
-                            System.out.println(c + " : " + value);
-                        }
-                        System.out.println("---------------");
-                    }
-                    
-                }
-            } finally {
-                try {
-                    if (rs != null) rs.close();
-                    if (stmt != null) stmt.close();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-}
-            
+                    System.out.println("-----------"); // Optional: separator between rows
+                });
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        } else if (num == 1 && query.contains("?")) {
+            retrieveColumnValues(conn, query, toParams(placeholder), columns);
         }
-}
+    }
+
+    /** Prints the columns of every row, binding {@code params} by their Java type. */
+    public void retrieveColumnValues(Connection conn, String query, Object[] params, String[] columns) throws SQLException {
+        streamRows(conn, query, params, columns, 0, row -> {
+            for (int i = 0; i < row.getColumnCount(); i++) {
+                System.out.println(row.getColumnName(i) + " : " + row.getString(i));
+            }
+            System.out.println("---------------");
+        });
+    }
 
 public void retrieveColumnValues(Connection conn, String query, String column) {
     retrieveColumnValues(conn, query, new String[]{column});
@@ -172,45 +246,65 @@ public void insertToATable(Statement statement, String query){
     }
 
     public void insertInBatch(Connection conn, String query, String[] values) throws SQLException{
-        if (query.contains("?")){
-            PreparedStatement pstmt = conn.prepareStatement(query);
-
-            // Count the number of ? placeholders
-            int questionMarkCount = query.length() - query.replace("?", "").length();
-            
-            // Validate that we have the right number of values
-            if (values.length % questionMarkCount != 0) {
-                throw new SQLException("Number of values doesn't match placeholders");
-            }
-            
-            // Calculate how many rows we're inserting
-            int rowCount = values.length / questionMarkCount;
-            
-            // Set parameters for each row
-            int valueIndex = 0;
-            for (int row = 0; row < rowCount; row++) {
-                for (int param = 1; param <= questionMarkCount; param++) {
-                    String value = values[valueIndex++];
-                    // Check if value is numeric
-                    if (value.matches("\\d+")) {
-                        pstmt.setInt(param, Integer.parseInt(value));
-                    } else {
-                        pstmt.setString(param, value);
-                    }
-                }
-                pstmt.addBatch();
+        insertInBatch(conn, query, toParams(values));
+    }
+
+    /**
+     * Adds one batch entry per group of values, as many values per group as
+     * the query has placeholders, binding each by its Java type.
+     */
+    public void insertInBatch(Connection conn, String query, Object[] values) throws SQLException{
+        int questionMarkCount = 0;
+        for (int i = 0; i < query.length(); i++) {
+            if (query.charAt(i) == '?') questionMarkCount++;
+        }
+        if (questionMarkCount == 0) return;
+
+        // Validate that we have the right number of values
+        if (values.length % questionMarkCount != 0) {
+            throw new SQLException("Number of values doesn't match placeholders");
+        }
+
+        try (PreparedStatement pstmt = prepare(conn, query)) {
+            for (int i = 0; i < values.length; i++) {
+                int param = i % questionMarkCount + 1;
+                bind(pstmt, param, values[i]);
+                if (param == questionMarkCount) pstmt.addBatch();
             }
-            
-            // Execute the batch
+
             int[] results = pstmt.executeBatch();
-            
-            // Print results
-            for (int result : results) {
-                System.out.println("Rows affected: " + result);
-            }
-            
-            pstmt.close();
+            System.out.println("Rows inserted: " + results.length);
+        }
+    }
+
+    /**
+     * Loads typed rows (one Object[] per row, in column order) in chunks of
+     * {@code chunkSize}, each committed in its own transaction. See
+     * {@link BulkLoader} for multi-row statements and progress output.
+     */
+    public BulkLoader.Result bulkInsert(Connection conn, String table, String[] columns,
+                                       Iterable<Object[]> rows, int chunkSize) throws SQLException {
+        BulkLoader loader = new BulkLoader(conn, table, columns);
+        loader.setChunkSize(chunkSize);
+        return loader.load(rows);
+    }
+
+    // The string APIs' rule: values that are all digits are bound as INT, the rest as strings
+    private static Object[] toParams(String[] values) {
+        Object[] params = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            params[i] = isDigits(values[i]) ? (Object) Integer.valueOf(values[i]) : values[i];
+        }
+        return params;
+    }
+
+    private static boolean isDigits(String value) {
+        if (value.isEmpty() || value.length() > 9) return false; // longer may not fit in an int
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') return false;
         }
+        return true;
     }
 
 }
\ No newline at end of file
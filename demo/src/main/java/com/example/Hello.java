@@ -6,4 +6,10 @@ import java.rmi.RemoteException;
 //1. create a remote interface
 public interface Hello extends Remote {
     String sayHello() throws RemoteException;
+
+    // a null name gets the same answer as sayHello()
+    String sayHello(String name) throws RemoteException;
+
+    // many requests in one round trip; answers come back in the same order as the names
+    String[] sayHelloAll(String[] names) throws RemoteException;
 }
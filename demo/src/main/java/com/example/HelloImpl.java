@@ -13,4 +13,16 @@ public class HelloImpl extends UnicastRemoteObject implements Hello {
     public String sayHello() throws RemoteException {
         return "Hello, world!";
     }
+
+    public String sayHello(String name) throws RemoteException {
+        return name == null ? sayHello() : "Hello, " + name + "!";
+    }
+
+    public String[] sayHelloAll(String[] names) throws RemoteException {
+        String[] replies = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            replies[i] = sayHello(names[i]);
+        }
+        return replies;
+    }
 }
@@ -0,0 +1,120 @@
+package com.example;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The current row of a streamed query. Columns are addressed by their
+ * position in the column list given to {@link DB1#streamRows} (0-based);
+ * the matching ResultSet indexes are looked up once, before the first row,
+ * rather than by name on every cell.
+ *
+ * The typed getters read numbers straight from the driver. Like the
+ * ResultSet getters they return 0 for SQL NULL; check {@link #wasNull()}.
+ */
+public final class Row {
+
+    private final ResultSet rs;
+    private final String[] names;
+    private final int[] indexes;
+    private final Map<String, Integer> positions = new HashMap<>();
+    private long rowNumber;
+
+    Row(ResultSet rs, String[] columns) throws SQLException {
+        this.rs = rs;
+        if (columns == null) {
+            ResultSetMetaData meta = rs.getMetaData();
+            names = new String[meta.getColumnCount()];
+            indexes = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = meta.getColumnLabel(i + 1);
+                indexes[i] = i + 1;
+            }
+        } else {
+            names = columns.clone();
+            indexes = new int[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                indexes[i] = rs.findColumn(columns[i]);
+            }
+        }
+        for (int i = 0; i < names.length; i++) {
+            positions.put(names[i].toLowerCase(), i);
+        }
+    }
+
+    boolean next() throws SQLException {
+        if (rs.next()) {
+            rowNumber++;
+            return true;
+        }
+        return false;
+    }
+
+    /** Position of a column by name, for resolving once outside the row loop. */
+    public int position(String column) {
+        Integer position = positions.get(column.toLowerCase());
+        if (position == null) {
+            throw new IllegalArgumentException("No column " + column + " in this result");
+        }
+        return position;
+    }
+
+    public int getColumnCount() {
+        return names.length;
+    }
+
+    public String getColumnName(int column) {
+        return names[column];
+    }
+
+    /** 1 for the first row. */
+    public long getRowNumber() {
+        return rowNumber;
+    }
+
+    public String getString(int column) throws SQLException {
+        return rs.getString(indexes[column]);
+    }
+
+    public int getInt(int column) throws SQLException {
+        return rs.getInt(indexes[column]);
+    }
+
+    public long getLong(int column) throws SQLException {
+        return rs.getLong(indexes[column]);
+    }
+
+    public double getDouble(int column) throws SQLException {
+        return rs.getDouble(indexes[column]);
+    }
+
+    public BigDecimal getBigDecimal(int column) throws SQLException {
+        return rs.getBigDecimal(indexes[column]);
+    }
+
+    public boolean getBoolean(int column) throws SQLException {
+        return rs.getBoolean(indexes[column]);
+    }
+
+    public Timestamp getTimestamp(int column) throws SQLException {
+        return rs.getTimestamp(indexes[column]);
+    }
+
+    public byte[] getBytes(int column) throws SQLException {
+        return rs.getBytes(indexes[column]);
+    }
+
+    public Object getObject(int column) throws SQLException {
+        return rs.getObject(indexes[column]);
+    }
+
+    /** Whether the last value read was SQL NULL. */
+    public boolean wasNull() throws SQLException {
+        return rs.wasNull();
+    }
+}
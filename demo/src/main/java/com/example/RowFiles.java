@@ -0,0 +1,413 @@
+package com.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The two gzip-compressed file formats {@link TableTransfer} moves rows in.
+ *
+ * csv: a header line of column names, then one line per row. Values with a
+ * comma, quote or line break are quoted, quotes doubled; SQL NULL is \N.
+ * It has no way to write bytes, so binary columns need the binary format.
+ *
+ * binary: "DB1R", then per row a 1 byte followed by each value as a type
+ * tag and its bytes (int, long, double, UTF-8 string with int length, ...),
+ * and a 0 byte at the end. Numbers are written as numbers, so nothing is
+ * formatted or parsed on the way through.
+ *
+ * Values are read back as the Java types {@link DB1#bind} expects, using the
+ * java.sql.Types recorded for each column at export time.
+ */
+final class RowFiles {
+
+    private static final byte[] MAGIC = {'D', 'B', '1', 'R'};
+    private static final String NULL = "\\N";
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_INT = 1;
+    private static final byte TAG_LONG = 2;
+    private static final byte TAG_DOUBLE = 3;
+    private static final byte TAG_STRING = 4;
+    private static final byte TAG_DECIMAL = 5;
+    private static final byte TAG_TIMESTAMP = 6;
+    private static final byte TAG_BYTES = 7;
+
+    private RowFiles() {}
+
+    interface Writer extends Closeable {
+        void write(Row row) throws IOException, SQLException;
+    }
+
+    interface Reader extends Closeable {
+        /** The next row, or null at the end of the file. */
+        Object[] read() throws IOException;
+    }
+
+    static Writer writer(String format, Path file, String[] columns, int[] types) throws IOException {
+        return "binary".equals(format) ? new BinaryWriter(file, types) : new CsvWriter(file, columns, types);
+    }
+
+    static Reader reader(String format, Path file, int[] types) throws IOException {
+        return "binary".equals(format) ? new BinaryReader(file, types) : new CsvReader(file, types);
+    }
+
+    static String extension(String format) {
+        return "binary".equals(format) ? ".bin.gz" : ".csv.gz";
+    }
+
+    // ---- csv ----
+
+    private static final class CsvWriter implements Writer {
+        private final BufferedWriter out;
+        private final int[] types;
+
+        CsvWriter(Path file, String[] columns, int[] types) throws IOException {
+            this.out = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(file), 64 * 1024), StandardCharsets.UTF_8));
+            this.types = types;
+            out.write(String.join(",", columns));
+            out.newLine();
+        }
+
+        @Override
+        public void write(Row row) throws IOException, SQLException {
+            for (int i = 0; i < types.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                String value = row.getString(i);
+                if (value == null) {
+                    out.write(NULL);
+                } else if (needsQuotes(value)) {
+                    out.write('"');
+                    out.write(value.replace("\"", "\"\""));
+                    out.write('"');
+                } else {
+                    out.write(value);
+                }
+            }
+            out.newLine();
+        }
+
+        private static boolean needsQuotes(String value) {
+            if (value.equals(NULL)) {
+                return true;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static final class CsvReader implements Reader {
+        private final BufferedReader in;
+        private final int[] types;
+
+        CsvReader(Path file, int[] types) throws IOException {
+            this.in = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(file), 64 * 1024), StandardCharsets.UTF_8));
+            this.types = types;
+            in.readLine(); // header
+        }
+
+        // Reads a character at a time rather than by line, so a CR or CRLF inside a quoted value comes back as it was
+        @Override
+        public Object[] read() throws IOException {
+            int c = in.read();
+            if (c < 0) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>(types.length);
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean wasQuoted = false;
+            for (; ; c = in.read()) {
+                if (c < 0) {
+                    if (quoted) {
+                        throw new EOFException("Unterminated quoted value");
+                    }
+                    break;
+                }
+                if (quoted) {
+                    if (c != '"') {
+                        field.append((char) c);
+                    } else if (nextIs('"')) {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                    wasQuoted = true;
+                } else if (c == ',') {
+                    fields.add(wasQuoted || !field.toString().equals(NULL) ? field.toString() : null);
+                    field.setLength(0);
+                    wasQuoted = false;
+                } else if (c == '\n') {
+                    break;
+                } else if (c == '\r') {
+                    nextIs('\n');
+                    break;
+                } else {
+                    field.append((char) c);
+                }
+            }
+            fields.add(wasQuoted || !field.toString().equals(NULL) ? field.toString() : null);
+
+            if (fields.size() != types.length) {
+                throw new IOException("Expected " + types.length + " values, found " + fields.size());
+            }
+            Object[] row = new Object[types.length];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = convert(fields.get(i), types[i]);
+            }
+            return row;
+        }
+
+        // Consumes the next character if it is the one given
+        private boolean nextIs(char expected) throws IOException {
+            in.mark(1);
+            if (in.read() == expected) {
+                return true;
+            }
+            in.reset();
+            return false;
+        }
+
+        private static Object convert(String value, int type) {
+            if (value == null) {
+                return null;
+            }
+            switch (type) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                    return Integer.valueOf(value);
+                case Types.BIGINT:
+                    return Long.valueOf(value);
+                case Types.REAL:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    return Double.valueOf(value);
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                    return new BigDecimal(value);
+                default:
+                    return value;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // ---- binary ----
+
+    private static final class BinaryWriter implements Writer {
+        private final DataOutputStream out;
+        private final int[] types;
+
+        BinaryWriter(Path file, int[] types) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(file), 64 * 1024), 64 * 1024));
+            this.types = types;
+            out.write(MAGIC);
+        }
+
+        @Override
+        public void write(Row row) throws IOException, SQLException {
+            out.writeByte(1);
+            for (int i = 0; i < types.length; i++) {
+                switch (types[i]) {
+                    case Types.TINYINT:
+                    case Types.SMALLINT:
+                    case Types.INTEGER: {
+                        int v = row.getInt(i);
+                        if (row.wasNull()) {
+                            out.writeByte(TAG_NULL);
+                        } else {
+                            out.writeByte(TAG_INT);
+                            out.writeInt(v);
+                        }
+                        break;
+                    }
+                    case Types.BIGINT: {
+                        long v = row.getLong(i);
+                        if (row.wasNull()) {
+                            out.writeByte(TAG_NULL);
+                        } else {
+                            out.writeByte(TAG_LONG);
+                            out.writeLong(v);
+                        }
+                        break;
+                    }
+                    case Types.REAL:
+                    case Types.FLOAT:
+                    case Types.DOUBLE: {
+                        double v = row.getDouble(i);
+                        if (row.wasNull()) {
+                            out.writeByte(TAG_NULL);
+                        } else {
+                            out.writeByte(TAG_DOUBLE);
+                            out.writeDouble(v);
+                        }
+                        break;
+                    }
+                    case Types.DECIMAL:
+                    case Types.NUMERIC:
+                        writeString(TAG_DECIMAL, row.getString(i));
+                        break;
+                    case Types.DATE:
+                    case Types.TIMESTAMP: {
+                        Timestamp v = row.getTimestamp(i);
+                        if (v == null) {
+                            out.writeByte(TAG_NULL);
+                        } else {
+                            out.writeByte(TAG_TIMESTAMP);
+                            out.writeLong(v.getTime());
+                            out.writeInt(v.getNanos());
+                        }
+                        break;
+                    }
+                    case Types.BINARY:
+                    case Types.VARBINARY:
+                    case Types.LONGVARBINARY:
+                    case Types.BLOB: {
+                        byte[] v = row.getBytes(i);
+                        if (v == null) {
+                            out.writeByte(TAG_NULL);
+                        } else {
+                            out.writeByte(TAG_BYTES);
+                            out.writeInt(v.length);
+                            out.write(v);
+                        }
+                        break;
+                    }
+                    default:
+                        writeString(TAG_STRING, row.getString(i));
+                }
+            }
+        }
+
+        private void writeString(byte tag, String value) throws IOException {
+            if (value == null) {
+                out.writeByte(TAG_NULL);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeByte(tag);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.writeByte(0);
+            out.close();
+        }
+    }
+
+    private static final class BinaryReader implements Reader {
+        private final DataInputStream in;
+        private final int[] types;
+
+        BinaryReader(Path file, int[] types) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(
+                    new GZIPInputStream(Files.newInputStream(file), 64 * 1024), 64 * 1024));
+            this.types = types;
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!java.util.Arrays.equals(magic, MAGIC)) {
+                throw new IOException(file + " is not a binary row file");
+            }
+        }
+
+        @Override
+        public Object[] read() throws IOException {
+            if (in.readByte() == 0) {
+                return null;
+            }
+            Object[] row = new Object[types.length];
+            for (int i = 0; i < row.length; i++) {
+                byte tag = in.readByte();
+                switch (tag) {
+                    case TAG_NULL:
+                        row[i] = null;
+                        break;
+                    case TAG_INT:
+                        row[i] = in.readInt();
+                        break;
+                    case TAG_LONG:
+                        row[i] = in.readLong();
+                        break;
+                    case TAG_DOUBLE:
+                        row[i] = in.readDouble();
+                        break;
+                    case TAG_DECIMAL:
+                        row[i] = new BigDecimal(readString());
+                        break;
+                    case TAG_TIMESTAMP: {
+                        Timestamp ts = new Timestamp(in.readLong());
+                        ts.setNanos(in.readInt());
+                        row[i] = ts;
+                        break;
+                    }
+                    case TAG_BYTES: {
+                        byte[] bytes = new byte[in.readInt()];
+                        in.readFully(bytes);
+                        row[i] = bytes;
+                        break;
+                    }
+                    case TAG_STRING:
+                        row[i] = readString();
+                        break;
+                    default:
+                        throw new IOException("Unknown value tag " + tag);
+                }
+            }
+            return row;
+        }
+
+        private String readString() throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example;
+
+import java.sql.SQLException;
+
+/**
+ * Receives the rows of a query from {@link DB1#streamRows}, one at a time.
+ * The {@link Row} is only valid during the call; copy out what you need.
+ */
+public interface RowVisitor {
+
+    void visit(Row row) throws SQLException;
+}
@@ -0,0 +1,529 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Copies a table out to files and back in, in parallel.
+ *
+ * Export splits the table into ranges of its integer primary key and streams
+ * each range ({@link DB1#streamRows}) on its own connection into its own
+ * gzip file, csv or binary (see {@link RowFiles}). Import loads those files
+ * back, one {@link BulkLoader} per file, again in parallel.
+ *
+ * The directory keeps a manifest (columns, types, ranges) and a checkpoint
+ * log of finished partitions, so a rerun after a failure only does the
+ * partitions that did not finish. An import partition that started but did
+ * not finish has its key range deleted before it is loaded again, since
+ * some of its chunks may already be committed.
+ *
+ * <pre>
+ * TableTransfer export --table=student --pk=id --dir=out [--partitions=8] [--format=csv|binary]
+ * TableTransfer import --table=student --dir=out [--into=student_copy] [--chunk=5000]
+ *   common: [--db=test | --url=jdbc:...] [--user=root] [--password=] [--threads=4] [--progress=5]
+ * </pre>
+ */
+public class TableTransfer {
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int threads;
+    private int fetchSize = 1000;
+    private long progressSeconds = 5;
+
+    public TableTransfer(String url, String user, String password, int threads) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.threads = Math.max(1, threads);
+    }
+
+    /** Rows per round trip when reading a partition; MySQL always streams row by row. */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /** Seconds between progress lines; 0 for none. */
+    public void setProgressSeconds(long progressSeconds) {
+        this.progressSeconds = progressSeconds;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || !(args[0].equals("export") || args[0].equals("import"))) {
+            System.err.println("Usage: TableTransfer export|import --table=T --dir=D [options], see the class comment");
+            System.exit(2);
+        }
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                System.err.println("Unrecognised argument: " + arg);
+                System.exit(2);
+            }
+            opts.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        String url = opts.containsKey("url") ? opts.get("url")
+                : "jdbc:mysql://localhost:3306/" + opts.getOrDefault("db", "test");
+        TableTransfer transfer = new TableTransfer(url, opts.getOrDefault("user", "root"),
+                opts.getOrDefault("password", ""), Integer.parseInt(opts.getOrDefault("threads", "4")));
+        transfer.setProgressSeconds(Long.parseLong(opts.getOrDefault("progress", "5")));
+        Path dir = Paths.get(required(opts, "dir"));
+        String table = required(opts, "table");
+
+        try {
+            long rows;
+            if (args[0].equals("export")) {
+                rows = transfer.export(table, required(opts, "pk"), dir,
+                        Integer.parseInt(opts.getOrDefault("partitions", "8")), opts.getOrDefault("format", "csv"));
+            } else {
+                rows = transfer.importTable(table, dir, opts.getOrDefault("into", table),
+                        Integer.parseInt(opts.getOrDefault("chunk", "5000")));
+            }
+            System.out.println(args[0] + " of " + table + " finished: " + rows + " rows");
+        } catch (SQLException | IOException e) {
+            System.err.println(args[0] + " of " + table + " failed: " + e.getMessage());
+            System.err.println("Run the same command again to resume.");
+            System.exit(1);
+        }
+    }
+
+    private static String required(Map<String, String> opts, String name) {
+        String value = opts.get(name);
+        if (value == null || value.isEmpty()) {
+            System.err.println("Missing --" + name + "=");
+            System.exit(2);
+        }
+        return value;
+    }
+
+    /**
+     * Exports the table into {@code partitions} files under {@code dir}.
+     * Returns the rows written by this run (finished partitions from an
+     * earlier run are not counted again).
+     */
+    public long export(String table, String pk, Path dir, int partitions, String format)
+            throws SQLException, IOException {
+        if (!format.equals("csv") && !format.equals("binary")) {
+            throw new IllegalArgumentException("format must be csv or binary");
+        }
+        Files.createDirectories(dir);
+        Manifest manifest = Manifest.load(dir, table);
+        if (manifest == null) {
+            manifest = plan(table, pk, partitions, format);
+            manifest.store(dir);
+        } else if (!manifest.pk.equalsIgnoreCase(pk) || !manifest.format.equals(format)) {
+            throw new IOException(dir + " holds an export of " + table + " by " + manifest.pk + " as "
+                    + manifest.format + "; use another directory or delete it");
+        }
+
+        Checkpoint checkpoint = new Checkpoint(dir.resolve(table + ".checkpoint"));
+        Manifest m = manifest;
+        String select = "SELECT " + String.join(", ", m.columns) + " FROM " + table
+                + " WHERE " + m.pk + " >= ? AND " + m.pk + " <= ? ORDER BY " + m.pk;
+
+        List<Integer> todo = new ArrayList<>();
+        for (int p = 0; p < m.ranges.length; p++) {
+            if (!checkpoint.isDone("export", p) || !Files.exists(m.file(dir, p))) {
+                todo.add(p);
+            }
+        }
+        return runPartitions("export " + table, m.ranges.length, todo, (p, rows) -> {
+            Path file = m.file(dir, p);
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            long written;
+            try (Connection conn = connect(false);
+                 RowFiles.Writer out = RowFiles.writer(m.format, tmp, m.columns, m.types)) {
+                int fetch = conn.getMetaData().getDatabaseProductName().equals("MySQL")
+                        ? DB1.STREAM_FETCH_SIZE : fetchSize;
+                written = new DB1().streamRows(conn, select, new Object[] {m.ranges[p][0], m.ranges[p][1]},
+                        m.columns, fetch, row -> {
+                            try {
+                                out.write(row);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            rows.increment();
+                        });
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            checkpoint.record("export", p, "done", written);
+        });
+    }
+
+    /**
+     * Loads the files of an export of {@code table} into {@code into} (the
+     * same table or another with the exported columns). Returns the rows
+     * loaded by this run.
+     */
+    public long importTable(String table, Path dir, String into, int chunkSize) throws SQLException, IOException {
+        Manifest m = Manifest.load(dir, table);
+        if (m == null) {
+            throw new IOException("No export of " + table + " in " + dir);
+        }
+        Checkpoint checkpoint = new Checkpoint(dir.resolve(table + ".checkpoint"));
+        for (int p = 0; p < m.ranges.length; p++) {
+            if (!checkpoint.isDone("export", p)) {
+                throw new IOException("Export partition " + p + " of " + table + " did not finish; run the export again");
+            }
+        }
+
+        String phase = "import:" + into;
+        List<Integer> todo = new ArrayList<>();
+        for (int p = 0; p < m.ranges.length; p++) {
+            if (!checkpoint.isDone(phase, p)) {
+                todo.add(p);
+            }
+        }
+        return runPartitions("import " + into, m.ranges.length, todo, (p, rows) -> {
+            try (Connection conn = connect(true);
+                 RowFiles.Reader in = RowFiles.reader(m.format, m.file(dir, p), m.types)) {
+                if (checkpoint.isStarted(phase, p)) {
+                    try (PreparedStatement delete = conn.prepareStatement("DELETE FROM " + into
+                            + " WHERE " + m.pk + " >= ? AND " + m.pk + " <= ?")) {
+                        delete.setLong(1, m.ranges[p][0]);
+                        delete.setLong(2, m.ranges[p][1]);
+                        delete.executeUpdate();
+                    }
+                }
+                checkpoint.record(phase, p, "started", 0);
+                BulkLoader loader = new BulkLoader(conn, into, m.columns);
+                loader.setChunkSize(chunkSize);
+                BulkLoader.Result result = loader.load(new CountingIterator(in, rows));
+                checkpoint.record(phase, p, "done", result.getRows());
+            }
+        });
+    }
+
+    private interface PartitionTask {
+        void run(int partition, LongAdder rows) throws SQLException, IOException;
+    }
+
+    /**
+     * Runs the given partitions on the thread pool, printing progress, and
+     * waits for all of them. Fails with the first error after every
+     * partition has finished or failed, so the others still get checkpointed.
+     */
+    private long runPartitions(String what, int total, List<Integer> todo, PartitionTask task)
+            throws SQLException, IOException {
+        LongAdder rows = new LongAdder();
+        AtomicInteger finished = new AtomicInteger(total - todo.size());
+        long start = System.currentTimeMillis();
+        if (finished.get() > 0) {
+            System.out.println(what + ": resuming, " + finished.get() + "/" + total + " partitions already done");
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, todo.size())), r -> {
+            Thread t = new Thread(r, "table-transfer-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "table-transfer-progress");
+            t.setDaemon(true);
+            return t;
+        });
+        if (progressSeconds > 0) {
+            reporter.scheduleAtFixedRate(() -> System.out.println(progress(what, finished.get(), total, rows.sum(), start)),
+                    progressSeconds, progressSeconds, TimeUnit.SECONDS);
+        }
+
+        Map<Integer, Future<?>> futures = new LinkedHashMap<>();
+        for (int p : todo) {
+            futures.put(p, pool.submit(() -> {
+                task.run(p, rows);
+                finished.incrementAndGet();
+                return null;
+            }));
+        }
+        Exception failure = null;
+        int failed = 0;
+        try {
+            for (Map.Entry<Integer, Future<?>> entry : futures.entrySet()) {
+                try {
+                    entry.getValue().get();
+                } catch (ExecutionException e) {
+                    failed++;
+                    Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+                    System.err.println(what + ": partition " + entry.getKey() + " failed: " + cause);
+                    if (failure == null && cause instanceof Exception) {
+                        failure = (Exception) cause;
+                    } else if (failure == null) {
+                        failure = new IOException(cause);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(what + " interrupted", e);
+        } finally {
+            pool.shutdownNow();
+            reporter.shutdownNow();
+        }
+
+        System.out.println(progress(what, finished.get(), total, rows.sum(), start));
+        if (failure instanceof SQLException) {
+            throw new SQLException(failed + " partition(s) failed, first: " + failure.getMessage(), failure);
+        } else if (failure != null) {
+            throw new IOException(failed + " partition(s) failed, first: " + failure, failure);
+        }
+        return rows.sum();
+    }
+
+    private static String progress(String what, int finished, int total, long rows, long start) {
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        return String.format("%s: %d/%d partitions, %d rows, %.0f rows/sec",
+                what, finished, total, rows, rows * 1000.0 / elapsed);
+    }
+
+    private Connection connect(boolean forLoading) throws SQLException {
+        String u = url;
+        if (forLoading && u.startsWith("jdbc:mysql:") && !u.contains("rewriteBatchedStatements")) {
+            u += (u.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true";
+        }
+        return DriverManager.getConnection(u, user, password);
+    }
+
+    /** Reads the columns and splits [MIN(pk), MAX(pk)] into equal ranges, both ends inclusive. */
+    private Manifest plan(String table, String pk, int partitions, String format) throws SQLException {
+        try (Connection conn = connect(false); Statement stmt = conn.createStatement()) {
+            Manifest m = new Manifest(table, format);
+            try (ResultSet rs = stmt.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")) {
+                ResultSetMetaData meta = rs.getMetaData();
+                m.columns = new String[meta.getColumnCount()];
+                m.types = new int[m.columns.length];
+                for (int i = 0; i < m.columns.length; i++) {
+                    m.columns[i] = meta.getColumnName(i + 1);
+                    m.types[i] = meta.getColumnType(i + 1);
+                    if (format.equals("csv") && isBytes(m.types[i])) {
+                        // getString would turn the bytes into text and they wouldn't come back
+                        throw new SQLException("Column " + m.columns[i] + " of " + table
+                                + " holds bytes, which csv can't carry; use --format=binary");
+                    }
+                    if (m.columns[i].equalsIgnoreCase(pk)) {
+                        m.pk = m.columns[i];
+                        if (!isInteger(m.types[i])) {
+                            throw new SQLException("Key column " + pk + " of " + table + " is not an integer");
+                        }
+                    }
+                }
+            }
+            if (m.pk == null) {
+                throw new SQLException(table + " has no column " + pk);
+            }
+
+            long min = 0;
+            long max = -1;
+            try (ResultSet rs = stmt.executeQuery("SELECT MIN(" + m.pk + "), MAX(" + m.pk + ") FROM " + table)) {
+                if (rs.next() && rs.getObject(1) != null) {
+                    min = rs.getLong(1);
+                    max = rs.getLong(2);
+                }
+            }
+            if (max < min) {
+                m.ranges = new long[][] {{min, max}}; // empty table
+                return m;
+            }
+            // in BigInteger, since max - min + 1 doesn't fit a long for keys spanning most of its range
+            BigInteger count = BigInteger.valueOf(max).subtract(BigInteger.valueOf(min)).add(BigInteger.ONE);
+            int n = count.min(BigInteger.valueOf(Math.max(1, partitions))).intValue();
+            m.ranges = new long[n][];
+            long lo = min;
+            for (int p = 0; p < n; p++) {
+                long hi = p == n - 1 ? max : BigInteger.valueOf(min)
+                        .add(count.multiply(BigInteger.valueOf(p + 1)).divide(BigInteger.valueOf(n)))
+                        .longValue() - 1;
+                m.ranges[p] = new long[] {lo, hi};
+                lo = hi + 1;
+            }
+            return m;
+        }
+    }
+
+    private static boolean isInteger(int type) {
+        return type == Types.TINYINT || type == Types.SMALLINT || type == Types.INTEGER || type == Types.BIGINT;
+    }
+
+    private static boolean isBytes(int type) {
+        return type == Types.BINARY || type == Types.VARBINARY || type == Types.LONGVARBINARY || type == Types.BLOB;
+    }
+
+    /** Hands the rows of a file to the loader, counting them for the progress line. */
+    private static final class CountingIterator implements Iterator<Object[]> {
+        private final RowFiles.Reader in;
+        private final LongAdder rows;
+        private Object[] next;
+        private boolean done;
+
+        CountingIterator(RowFiles.Reader in, LongAdder rows) {
+            this.in = in;
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                try {
+                    next = in.read();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                done = next == null;
+            }
+            return next != null;
+        }
+
+        @Override
+        public Object[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Object[] row = next;
+            next = null;
+            rows.increment();
+            return row;
+        }
+    }
+
+    /** table.manifest: what was exported and how it was split. */
+    private static final class Manifest {
+        final String table;
+        final String format;
+        String pk;
+        String[] columns;
+        int[] types;
+        long[][] ranges;
+
+        Manifest(String table, String format) {
+            this.table = table;
+            this.format = format;
+        }
+
+        Path file(Path dir, int partition) {
+            return dir.resolve(String.format("%s.part-%04d%s", table, partition, RowFiles.extension(format)));
+        }
+
+        void store(Path dir) throws IOException {
+            Properties props = new Properties();
+            props.setProperty("table", table);
+            props.setProperty("format", format);
+            props.setProperty("pk", pk);
+            props.setProperty("columns", String.join(",", columns));
+            StringBuilder typeList = new StringBuilder();
+            for (int type : types) {
+                typeList.append(typeList.length() == 0 ? "" : ",").append(type);
+            }
+            props.setProperty("types", typeList.toString());
+            props.setProperty("partitions", String.valueOf(ranges.length));
+            props.setProperty("bounds", "inclusive");
+            for (int p = 0; p < ranges.length; p++) {
+                props.setProperty("partition." + p, ranges[p][0] + "," + ranges[p][1]);
+            }
+            Path tmp = dir.resolve(table + ".manifest.tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                props.store(out, "TableTransfer export of " + table);
+            }
+            Files.move(tmp, dir.resolve(table + ".manifest"), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        static Manifest load(Path dir, String table) throws IOException {
+            Path path = dir.resolve(table + ".manifest");
+            if (!Files.exists(path)) {
+                return null;
+            }
+            Properties props = new Properties();
+            try (InputStream in = Files.newInputStream(path)) {
+                props.load(in);
+            }
+            Manifest m = new Manifest(table, props.getProperty("format"));
+            m.pk = props.getProperty("pk");
+            m.columns = props.getProperty("columns").split(",");
+            String[] typeList = props.getProperty("types").split(",");
+            m.types = new int[typeList.length];
+            for (int i = 0; i < typeList.length; i++) {
+                m.types[i] = Integer.parseInt(typeList[i]);
+            }
+            m.ranges = new long[Integer.parseInt(props.getProperty("partitions"))][];
+            for (int p = 0; p < m.ranges.length; p++) {
+                String[] range = props.getProperty("partition." + p).split(",");
+                m.ranges[p] = new long[] {Long.parseLong(range[0]), Long.parseLong(range[1])};
+                if (!"inclusive".equals(props.getProperty("bounds"))) {
+                    m.ranges[p][1]--; // written before ranges included their upper end
+                }
+            }
+            return m;
+        }
+    }
+
+    /**
+     * table.checkpoint: one line per partition event ("export 3 done 12000",
+     * "import:student 3 started 0"), appended and synced as it happens.
+     */
+    private static final class Checkpoint {
+        private final Path path;
+        private final Map<String, String> state = new HashMap<>();
+
+        Checkpoint(Path path) throws IOException {
+            this.path = path;
+            if (Files.exists(path)) {
+                for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                    String[] parts = line.split(" ");
+                    if (parts.length == 4) {
+                        state.put(parts[0] + " " + parts[1], parts[2]);
+                    }
+                }
+            }
+        }
+
+        synchronized boolean isDone(String phase, int partition) {
+            return "done".equals(state.get(phase + " " + partition));
+        }
+
+        synchronized boolean isStarted(String phase, int partition) {
+            return state.containsKey(phase + " " + partition);
+        }
+
+        synchronized void record(String phase, int partition, String status, long rows) throws IOException {
+            String line = phase + " " + partition + " " + status + " " + rows + System.lineSeparator();
+            Files.write(path, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+            state.put(phase + " " + partition, status);
+        }
+    }
+}
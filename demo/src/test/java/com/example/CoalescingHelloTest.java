@@ -0,0 +1,178 @@
+package com.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * CoalescingHello against a local Hello that takes a millisecond per
+ * round trip, standing in for the RMI stub.
+ */
+public class CoalescingHelloTest
+{
+    private final AtomicInteger roundTrips = new AtomicInteger();
+    private volatile boolean down;
+
+    private final Hello slowHello = new Hello() {
+        public String sayHello() throws RemoteException
+        {
+            return sayHelloAll(new String[] {null})[0];
+        }
+
+        public String sayHello(String name) throws RemoteException
+        {
+            return sayHelloAll(new String[] {name})[0];
+        }
+
+        public String[] sayHelloAll(String[] names) throws RemoteException
+        {
+            roundTrips.incrementAndGet();
+            if (down) {
+                throw new RemoteException("connection refused");
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                throw new RemoteException("interrupted", e);
+            }
+            String[] replies = new String[names.length];
+            for (int i = 0; i < names.length; i++) {
+                replies[i] = names[i] == null ? "Hello, world!" : "Hello, " + names[i] + "!";
+            }
+            return replies;
+        }
+    };
+
+    @Test
+    public void concurrentCallsShareRoundTrips() throws Exception
+    {
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        try (CoalescingHello hello = new CoalescingHello(slowHello, 64, 0, 0)) {
+            List<Future<String>> replies = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                final String name = "caller" + i;
+                replies.add(callers.submit(() -> hello.sayHello(name)));
+            }
+            for (int i = 0; i < replies.size(); i++) {
+                assertEquals("Hello, caller" + i + "!", replies.get(i).get());
+            }
+            assertEquals(2000, hello.getCallCount());
+            assertTrue("expected batching, got " + hello, roundTrips.get() < 1000);
+            assertTrue(hello.getAverageBatchSize() > 2);
+        } finally {
+            callers.shutdown();
+        }
+    }
+
+    @Test
+    public void repeatedCallsAreAnsweredFromTheCache() throws Exception
+    {
+        try (CoalescingHello hello = new CoalescingHello(slowHello, 64, 0, 60000)) {
+            assertEquals("Hello, world!", hello.sayHello());
+            assertEquals("Hello, world!", hello.sayHello(null));
+            assertEquals("Hello, rmi!", hello.sayHello("rmi"));
+            assertEquals("Hello, rmi!", hello.sayHello("rmi"));
+            assertEquals(2, roundTrips.get());
+            assertEquals(2, hello.getCacheHitCount());
+
+            hello.invalidate();
+            hello.sayHello("rmi");
+            assertEquals(3, roundTrips.get());
+        }
+    }
+
+    @Test
+    public void failedBatchFailsItsCallsAndIsNotCached() throws Exception
+    {
+        try (CoalescingHello hello = new CoalescingHello(slowHello, 64, 0, 60000)) {
+            down = true;
+            try {
+                hello.sayHello("rmi");
+                fail("expected the RemoteException");
+            } catch (RemoteException e) {
+                assertEquals("connection refused", e.getMessage());
+            }
+            down = false;
+            assertEquals("Hello, rmi!", hello.sayHello("rmi"));
+        }
+    }
+
+    @Test
+    public void shortReplyFailsTheUnansweredCalls() throws Exception
+    {
+        Hello forgetful = new Hello() {
+            public String sayHello() throws RemoteException
+            {
+                return sayHelloAll(new String[] {null})[0];
+            }
+
+            public String sayHello(String name) throws RemoteException
+            {
+                return sayHelloAll(new String[] {name})[0];
+            }
+
+            public String[] sayHelloAll(String[] names) throws RemoteException
+            {
+                return new String[0];
+            }
+        };
+        try (CoalescingHello hello = new CoalescingHello(forgetful, 64, 0, 60000)) {
+            try {
+                hello.sayHello("rmi");
+                fail("expected the RemoteException");
+            } catch (RemoteException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("sayHelloAll answered 0 of 1"));
+            }
+            try {
+                hello.sayHelloAll(new String[] {"a", "b"});
+                fail("expected the RemoteException");
+            } catch (RemoteException e) {
+                assertEquals("sayHelloAll answered 0 of 2 names", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void aNulCharacterNameIsNotTheMissingName() throws Exception
+    {
+        try (CoalescingHello hello = new CoalescingHello(slowHello, 64, 0, 60000)) {
+            assertEquals("Hello, world!", hello.sayHello());
+            assertEquals("Hello, \u0000!", hello.sayHello("\u0000"));
+            assertEquals("Hello, world!", hello.sayHello(null));
+            assertEquals(2, roundTrips.get());
+        }
+    }
+
+    @Test
+    public void closeFailsTheBatchBeingHeldOpen() throws Exception
+    {
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> reply;
+            try (CoalescingHello hello = new CoalescingHello(slowHello, 64, 60000000, 0)) {
+                reply = callers.submit(() -> hello.sayHello("rmi"));
+                Thread.sleep(200); // the sender has taken the call and waits for more
+            }
+            try {
+                reply.get(5, TimeUnit.SECONDS);
+                fail("expected the RemoteException");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RemoteException);
+            }
+            assertEquals(0, roundTrips.get());
+        } finally {
+            callers.shutdown();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.example.db.StatementCache;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * DB1 against an in-memory H2 database in MySQL mode.
+ */
+public class DB1Test
+{
+    private final DB1 db = new DB1();
+    private Connection conn;
+
+    @Before
+    public void createTable() throws SQLException
+    {
+        conn = DriverManager.getConnection("jdbc:h2:mem:db1test;MODE=MySQL", "sa", "");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE student (id INT PRIMARY KEY, name VARCHAR(50), number BIGINT)");
+            for (int i = 1; i <= 500; i++) {
+                stmt.execute("INSERT INTO student VALUES (" + i + ", 'student" + i + "', " + (i * 1000L) + ")");
+            }
+        }
+    }
+
+    @After
+    public void close() throws SQLException
+    {
+        conn.close();
+    }
+
+    @Test
+    public void streamRowsVisitsEveryRowWithTypedColumns() throws SQLException
+    {
+        final List<String> names = new ArrayList<>();
+        final long[] sum = new long[1];
+
+        long rows = db.streamRows(conn, "SELECT number, name FROM student WHERE id > ? ORDER BY id",
+                new Object[] {100}, new String[] {"name", "number"}, 50, row -> {
+                    names.add(row.getString(0));
+                    sum[0] += row.getLong(1);
+                });
+
+        assertEquals(400, rows);
+        assertEquals("student101", names.get(0));
+        assertEquals(400, names.size());
+        long expected = 0;
+        for (int i = 101; i <= 500; i++) {
+            expected += i * 1000L;
+        }
+        assertEquals(expected, sum[0]);
+    }
+
+    @Test
+    public void streamRowsWithoutColumnListUsesTheWholeResult() throws SQLException
+    {
+        final List<Integer> counts = new ArrayList<>();
+        db.streamRows(conn, "SELECT * FROM student WHERE id = ?", new Object[] {7}, null, 0, row -> {
+            counts.add(row.getColumnCount());
+            assertEquals(7, row.getInt(row.position("id")));
+            row.getString(row.position("name"));
+            assertTrue(!row.wasNull());
+        });
+        assertEquals(1, counts.size());
+        assertEquals(Integer.valueOf(3), counts.get(0));
+    }
+
+    @Test
+    public void bulkLoaderCommitsInChunksWithMultiRowStatements() throws SQLException
+    {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 1001; i <= 3500; i++) {
+            rows.add(new Object[] {i, "bulk" + i, (long) i * 7});
+        }
+        BulkLoader loader = new BulkLoader(conn, "student", new String[] {"id", "name", "number"});
+        loader.setChunkSize(1000);
+        loader.setRowsPerStatement(0);
+
+        BulkLoader.Result result = loader.load(rows);
+
+        assertEquals(2500, result.getRows());
+        assertEquals(3, result.getChunks());
+        assertEquals(3000, count("SELECT COUNT(*) FROM student"));
+        assertEquals(3500L * 7, count("SELECT number FROM student WHERE id = 3500"));
+        assertTrue(conn.getAutoCommit());
+    }
+
+    @Test
+    public void bulkLoaderKeepsTheInputOrder() throws SQLException
+    {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE arrivals (seq INT AUTO_INCREMENT PRIMARY KEY, n INT)");
+        }
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 1; i <= 23; i++) {
+            rows.add(new Object[] {i});
+        }
+        BulkLoader loader = new BulkLoader(conn, "arrivals", new String[] {"n"});
+        loader.setChunkSize(10);
+        loader.setRowsPerStatement(4); // each chunk ends with rows that don't fill a statement
+        loader.load(rows);
+
+        final List<Integer> order = new ArrayList<>();
+        db.streamRows(conn, "SELECT n FROM arrivals WHERE seq > ? ORDER BY seq", new Object[] {0}, null, 0,
+                row -> order.add(row.getInt(0)));
+        assertEquals(23, order.size());
+        for (int i = 0; i < order.size(); i++) {
+            assertEquals(Integer.valueOf(i + 1), order.get(i));
+        }
+    }
+
+    @Test
+    public void failedChunkIsRolledBackAndEarlierChunksStay() throws SQLException
+    {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 1001; i <= 1250; i++) {
+            rows.add(new Object[] {i, "bulk" + i, (long) i});
+        }
+        rows.add(new Object[] {1, "duplicate key", 0L});
+
+        try {
+            db.bulkInsert(conn, "student", new String[] {"id", "name", "number"}, rows, 100);
+            fail("expected the duplicate key to stop the load");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("after 200 committed rows"));
+        }
+        assertEquals(700, count("SELECT COUNT(*) FROM student"));
+    }
+
+    @Test
+    public void repeatedQueriesReuseTheirPreparedStatements() throws SQLException
+    {
+        db.insertInBatch(conn, "INSERT INTO student (id, name, number) VALUES (?, ?, ?)",
+                new Object[] {601, "0042", 1L, 602, "typed", 2L});
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1, db.streamRows(conn, "SELECT name FROM student WHERE id = ?", new Object[] {601 + i % 2},
+                    null, 0, row -> assertTrue(row.getString(0).equals("0042") || row.getString(0).equals("typed"))));
+        }
+
+        StatementCache.Stats stats = db.getStatementCacheStats();
+        assertEquals(2, stats.getMissCount());
+        assertEquals(9, stats.getHitCount());
+        db.closeStatements(conn);
+    }
+
+    private long count(String sql) throws SQLException
+    {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
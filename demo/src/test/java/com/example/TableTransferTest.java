@@ -0,0 +1,158 @@
+package com.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Export and re-import through TableTransfer against an in-memory H2
+ * database in MySQL mode, shared by the worker connections.
+ */
+public class TableTransferTest
+{
+    private static final String URL = "jdbc:h2:mem:transfer;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Connection conn;
+    private TableTransfer transfer;
+
+    @Before
+    public void createTables() throws SQLException
+    {
+        conn = DriverManager.getConnection(URL, "sa", "");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE student (id INT PRIMARY KEY, name VARCHAR(50), number BIGINT, score DOUBLE)");
+            stmt.execute("CREATE TABLE student_copy (id INT PRIMARY KEY, name VARCHAR(50), number BIGINT, score DOUBLE)");
+        }
+        try (PreparedStatement insert = conn.prepareStatement("INSERT INTO student VALUES (?, ?, ?, ?)")) {
+            for (int i = 1; i <= 1000; i++) {
+                insert.setInt(1, i * 3);
+                // nulls, quotes, commas, line breaks of every kind and a literal \N all have to survive csv
+                insert.setString(2, i % 50 == 0 ? null : i % 7 == 0 ? "O\"Brien, \\N\nline " + i
+                        : i % 11 == 0 ? "CRLF\r\nline\r" + i : "student" + i);
+                insert.setLong(3, i * 1000L);
+                insert.setDouble(4, i / 4.0);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        transfer = new TableTransfer(URL, "sa", "", 4);
+        transfer.setProgressSeconds(0);
+    }
+
+    @After
+    public void dropTables() throws SQLException
+    {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        conn.close();
+    }
+
+    @Test
+    public void csvRoundTrip() throws Exception
+    {
+        roundTrip("csv");
+    }
+
+    @Test
+    public void binaryRoundTrip() throws Exception
+    {
+        roundTrip("binary");
+    }
+
+    @Test
+    public void rerunOnlyRedoesUnfinishedPartitions() throws Exception
+    {
+        Path dir = folder.getRoot().toPath();
+        transfer.export("student", "id", dir, 4, "csv");
+
+        // ids 3..3000 split into [3,751] [752,1501] [1502,2250] [2251,3000];
+        // the last import died with partition 2 partly committed
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO student_copy SELECT * FROM student WHERE id < 1600 OR id >= 2253");
+        }
+        Files.write(dir.resolve("student.checkpoint"), ("import:student_copy 0 done 250\n"
+                + "import:student_copy 1 done 250\nimport:student_copy 2 started 0\n"
+                + "import:student_copy 3 done 250\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        assertEquals(250, transfer.importTable("student", dir, "student_copy", 100));
+        assertEquals(1000, count("student_copy"));
+    }
+
+    @Test
+    public void keysAtTheEndsOfTheLongRangeAreSplitAndCopied() throws Exception
+    {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE wide (id BIGINT PRIMARY KEY, name VARCHAR(50))");
+            stmt.execute("CREATE TABLE wide_copy (id BIGINT PRIMARY KEY, name VARCHAR(50))");
+            stmt.execute("INSERT INTO wide VALUES (" + Long.MIN_VALUE + ", 'min'), (-1, 'a'), (0, 'b'), (1, 'c'), ("
+                    + Long.MAX_VALUE + ", 'max')");
+        }
+        Path dir = folder.getRoot().toPath();
+        assertEquals(5, transfer.export("wide", "id", dir, 4, "csv"));
+        assertEquals(5, transfer.importTable("wide", dir, "wide_copy", 100));
+        assertEquals(2, count("wide_copy WHERE id IN (" + Long.MIN_VALUE + ", " + Long.MAX_VALUE + ")"));
+    }
+
+    @Test
+    public void csvRefusesBinaryColumns() throws Exception
+    {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE blobs (id INT PRIMARY KEY, data VARBINARY(10))");
+            stmt.execute("INSERT INTO blobs VALUES (1, X'00ff10')");
+        }
+        try {
+            transfer.export("blobs", "id", folder.newFolder("csv").toPath(), 2, "csv");
+            fail("expected the SQLException");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().toLowerCase().contains("column data"));
+        }
+        assertEquals(1, transfer.export("blobs", "id", folder.newFolder("binary").toPath(), 2, "binary"));
+    }
+
+    private void roundTrip(String format) throws Exception
+    {
+        Path dir = folder.getRoot().toPath();
+        assertEquals(1000, transfer.export("student", "id", dir, 8, format));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(8, files.filter(p -> p.toString().endsWith(".gz")).count());
+        }
+
+        assertEquals(1000, transfer.importTable("student", dir, "student_copy", 100));
+        assertEquals(1000, count("student_copy"));
+        assertEquals(0, count("student s JOIN student_copy c ON s.id = c.id"
+                + " WHERE NOT (s.name IS NOT DISTINCT FROM c.name AND s.number = c.number AND s.score = c.score)"));
+
+        // a second run finds everything done
+        assertEquals(0, transfer.export("student", "id", dir, 8, format));
+        assertEquals(0, transfer.importTable("student", dir, "student_copy", 100));
+    }
+
+    private long count(String from) throws SQLException
+    {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + from)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.webresources.DirResourceSet;
+import org.apache.catalina.webresources.StandardRoot;
+import org.apache.tomcat.util.descriptor.web.ApplicationParameter;
+import org.apache.tomcat.util.scan.StandardJarScanner;
+
+/**
+ * The WebStore webapp in an embedded Tomcat, from its own web.xml and
+ * annotations, on a port picked by the OS.
+ *
+ * Context parameters given to the constructor replace the ones in web.xml
+ * (that is how the database is pointed at H2). JSPs are not compiled: the
+ * load test only calls servlets and does not follow their redirects.
+ */
+public class EmbeddedWebStore implements AutoCloseable {
+
+    private final Tomcat tomcat = new Tomcat();
+    private final File baseDir;
+
+    public EmbeddedWebStore(File webappDir, File classesDir, Map<String, String> contextParams)
+            throws IOException, LifecycleException {
+        baseDir = Files.createTempDirectory("webstore-loadtest").toFile();
+        tomcat.setBaseDir(baseDir.getAbsolutePath());
+        tomcat.setPort(0);
+        tomcat.getConnector().setProperty("maxThreads", "200");
+        tomcat.setAddDefaultWebXmlToWebapp(false);
+
+        Context context = tomcat.addWebapp("", webappDir.getAbsolutePath());
+        // under exec:java the servlet API is not on the system class path
+        context.setParentClassLoader(EmbeddedWebStore.class.getClassLoader());
+        for (Map.Entry<String, String> param : contextParams.entrySet()) {
+            ApplicationParameter override = new ApplicationParameter();
+            override.setName(param.getKey());
+            override.setValue(param.getValue());
+            override.setOverride(false); // wins over the web.xml value
+            context.addApplicationParameter(override);
+        }
+
+        // the compiled WebStore classes, so the @WebServlet / @WebListener annotations are scanned
+        WebResourceRoot resources = new StandardRoot(context);
+        resources.addPreResources(new DirResourceSet(resources, "/WEB-INF/classes",
+                classesDir.getAbsolutePath(), "/"));
+        context.setResources(resources);
+        ((StandardJarScanner) context.getJarScanner()).setScanClassPath(false);
+
+        tomcat.start();
+    }
+
+    public int getPort() {
+        return tomcat.getConnector().getLocalPort();
+    }
+
+    @Override
+    public void close() throws LifecycleException {
+        tomcat.stop();
+        tomcat.destroy();
+        deleteRecursively(baseDir);
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
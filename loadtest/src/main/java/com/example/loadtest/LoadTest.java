@@ -0,0 +1,420 @@
+package com.example.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives /login, /register, /upload-resume and /http-action on an embedded
+ * WebStore (see {@link EmbeddedWebStore}) and reports throughput and
+ * latency percentiles per endpoint.
+ *
+ * Before the run it registers {@code users} accounts, and every virtual user
+ * logs in as one of them. Each of the {@code threads} virtual users then
+ * loops over requests picked by {@code mix} for {@code warmup} seconds
+ * (not recorded) and {@code duration} seconds (recorded). A request counts
+ * as an error unless it gets the servlet's success answer: the redirect to
+ * dashboard.jsp, login.jsp or upload=success, or the relayed 200.
+ *
+ * <pre>
+ *   --threads=16 --duration=30 --warmup=5 --users=200
+ *   --mix=login:30,register:10,upload:20,http:40
+ *   --upstreamDelayMillis=0 --upstreamMaxAge=-1 --upstreamItems=1000
+ *   --report=target/loadtest-report.json --maxErrorRate=0.01
+ *   --sessionStore=offheap (or jdbc, container)
+ *   --webapp=../WebStore/src/main/webapp --classes=target/classes
+ * </pre>
+ *
+ * The report is JSON: the options, then for "total" and each endpoint the
+ * request and error counts, requests/sec, and mean, p50, p90, p99, p99.9
+ * and max latency in milliseconds, plus the /pool-stats, /cache-stats,
+ * /ingest-stats and /session-stats counters at the end of the run. The exit status is 1 if the
+ * error rate went over maxErrorRate.
+ *
+ * The stub upstream sends with Nagle off (see {@link StubUpstream}), so the
+ * "http" numbers are WebStore's relay and not a delayed-ACK wait on the stub.
+ */
+public class LoadTest {
+
+    enum Endpoint {
+        LOGIN("login"), REGISTER("register"), UPLOAD("upload"), HTTP("http");
+
+        final String key;
+
+        Endpoint(String key) {
+            this.key = key;
+        }
+    }
+
+    /** Latencies recorded by one virtual user for one endpoint. */
+    static final class Samples {
+        long[] nanos = new long[1024];
+        int count;
+        long errors;
+
+        void add(long latencyNanos, boolean ok) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = latencyNanos;
+            if (!ok) {
+                errors++;
+            }
+        }
+    }
+
+    private static final String[] SERVER_STATS = {"/pool-stats", "/cache-stats", "/ingest-stats", "/session-stats"};
+
+    final int users;
+    final int upstreamItems;
+    final int mixTotal;
+    private final Endpoint[] mixTable;
+    private final Map<String, String> options;
+    private URI baseUri;
+    StubUpstream upstream;
+
+    volatile boolean running = true;
+    volatile boolean measuring;
+
+    LoadTest(Map<String, String> options) {
+        this.options = options;
+        this.users = Integer.parseInt(options.get("users"));
+        this.upstreamItems = Integer.parseInt(options.get("upstreamItems"));
+
+        // mix "login:30,http:70" becomes a 100-slot table to index with a random number
+        List<Endpoint> table = new ArrayList<>();
+        for (String part : options.get("mix").split(",")) {
+            String[] kv = part.trim().split(":");
+            Endpoint endpoint = null;
+            for (Endpoint e : Endpoint.values()) {
+                if (e.key.equals(kv[0])) {
+                    endpoint = e;
+                }
+            }
+            if (endpoint == null || kv.length != 2) {
+                throw new IllegalArgumentException("Bad mix entry \"" + part + "\"; use login, register, upload or http with a weight");
+            }
+            for (int i = Integer.parseInt(kv[1]); i > 0; i--) {
+                table.add(endpoint);
+            }
+        }
+        if (table.isEmpty()) {
+            throw new IllegalArgumentException("The mix has no weight");
+        }
+        this.mixTable = table.toArray(new Endpoint[0]);
+        this.mixTotal = mixTable.length;
+    }
+
+    Endpoint pick(int slot) {
+        return mixTable[slot];
+    }
+
+    URI uri(String path) {
+        return URI.create(baseUri + path);
+    }
+
+    static String seededUsername(int user) {
+        return "lt-user-" + user;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("threads", "16");
+        options.put("duration", "30");
+        options.put("warmup", "5");
+        options.put("users", "200");
+        options.put("mix", "login:30,register:10,upload:20,http:40");
+        options.put("upstreamDelayMillis", "0");
+        options.put("upstreamMaxAge", "-1");
+        options.put("upstreamItems", "1000");
+        options.put("report", "target/loadtest-report.json");
+        options.put("maxErrorRate", "0.01");
+        options.put("sessionStore", "offheap");
+        options.put("webapp", "../WebStore/src/main/webapp");
+        options.put("classes", "target/classes");
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            String name = arg.startsWith("--") && eq > 2 ? arg.substring(2, eq) : null;
+            if (name == null || !options.containsKey(name)) {
+                System.err.println("Unknown option " + arg + "; options and defaults: " + options);
+                System.exit(2);
+            }
+            options.put(name, arg.substring(eq + 1));
+        }
+
+        double errorRate = new LoadTest(options).run();
+        System.exit(errorRate > Double.parseDouble(options.get("maxErrorRate")) ? 1 : 0);
+    }
+
+    /** Runs the whole test and writes the report; returns the error rate. */
+    double run() throws Exception {
+        Map<String, String> contextParams = new LinkedHashMap<>();
+        contextParams.put("db.driver", "org.h2.Driver");
+        contextParams.put("db.url", "jdbc:h2:mem:webstore;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        contextParams.put("db.username", "sa");
+        contextParams.put("db.password", "");
+        contextParams.put("session.store", options.get("sessionStore"));
+        contextParams.put("db.pool.maxSize", String.valueOf(Math.max(10, Integer.parseInt(options.get("threads")))));
+
+        int threads = Integer.parseInt(options.get("threads"));
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(4, daemon("loadtest-client")))
+                .build();
+
+        try (StubUpstream stub = new StubUpstream(Long.parseLong(options.get("upstreamDelayMillis")),
+                     Integer.parseInt(options.get("upstreamMaxAge")));
+             EmbeddedWebStore webStore = new EmbeddedWebStore(new File(options.get("webapp")),
+                     new File(options.get("classes")), contextParams)) {
+            upstream = stub;
+            baseUri = URI.create("http://127.0.0.1:" + webStore.getPort());
+            System.out.println("WebStore up at " + baseUri + ", upstream stub at " + stub.itemUrl(0));
+
+            seedUsers(client, threads);
+
+            List<VirtualUser> virtualUsers = new ArrayList<>();
+            ExecutorService pool = Executors.newFixedThreadPool(threads, daemon("virtual-user"));
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                VirtualUser user = new VirtualUser(i, this, client);
+                virtualUsers.add(user);
+                futures.add(pool.submit(user));
+            }
+
+            long warmupSeconds = Long.parseLong(options.get("warmup"));
+            long durationSeconds = Long.parseLong(options.get("duration"));
+            System.out.println("Warming up for " + warmupSeconds + " s with " + threads + " threads");
+            Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSeconds));
+            measuring = true;
+            long start = System.nanoTime();
+            System.out.println("Measuring for " + durationSeconds + " s");
+            Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+            measuring = false;
+            long elapsedNanos = System.nanoTime() - start;
+            running = false;
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            pool.shutdown();
+
+            Map<String, Map<String, String>> serverStats = new LinkedHashMap<>();
+            for (String path : SERVER_STATS) {
+                serverStats.put(path.substring(1), fetchStats(client, path));
+            }
+            return report(virtualUsers, elapsedNanos, serverStats);
+        }
+    }
+
+    private void seedUsers(HttpClient client, int threads) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, 16), daemon("seed"));
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            String username = seededUsername(i);
+            results.add(pool.submit(() -> new VirtualUser(-1, this, client).register(username)));
+        }
+        int failed = 0;
+        for (Future<Boolean> result : results) {
+            if (!result.get()) {
+                failed++;
+            }
+        }
+        pool.shutdown();
+        System.out.println("Registered " + (users - failed) + " of " + users + " users");
+    }
+
+    // "name: value" lines from one of the webapp's stats servlets
+    private Map<String, String> fetchStats(HttpClient client, String path) {
+        Map<String, String> stats = new LinkedHashMap<>();
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri(path)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            for (String line : response.body().split("\n")) {
+                int colon = line.indexOf(": ");
+                if (colon > 0) {
+                    stats.put(line.substring(0, colon).trim(), line.substring(colon + 2).trim());
+                }
+            }
+        } catch (IOException e) {
+            stats.put("error", e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return stats;
+    }
+
+    private double report(List<VirtualUser> virtualUsers, long elapsedNanos,
+                          Map<String, Map<String, String>> serverStats) throws IOException {
+        double seconds = elapsedNanos / 1e9;
+        Map<String, Summary> summaries = new LinkedHashMap<>();
+        List<Samples> all = new ArrayList<>();
+        for (Endpoint endpoint : Endpoint.values()) {
+            List<Samples> parts = new ArrayList<>();
+            for (VirtualUser user : virtualUsers) {
+                parts.add(user.getSamples().get(endpoint));
+            }
+            all.addAll(parts);
+            summaries.put(endpoint.key, new Summary(parts, seconds));
+        }
+        Summary total = new Summary(all, seconds);
+
+        StringBuilder json = new StringBuilder("{\n  \"options\": {");
+        String sep = "";
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            json.append(sep).append("\n    ").append(quote(option.getKey())).append(": ").append(quote(option.getValue()));
+            sep = ",";
+        }
+        json.append("\n  },\n  \"durationSeconds\": ").append(format(seconds)).append(",\n");
+        json.append("  \"total\": ").append(total.toJson()).append(",\n  \"endpoints\": {");
+        sep = "";
+        for (Map.Entry<String, Summary> entry : summaries.entrySet()) {
+            json.append(sep).append("\n    ").append(quote(entry.getKey())).append(": ").append(entry.getValue().toJson());
+            sep = ",";
+        }
+        json.append("\n  },\n  \"server\": {");
+        sep = "";
+        for (Map.Entry<String, Map<String, String>> stats : serverStats.entrySet()) {
+            json.append(sep).append("\n    ").append(quote(stats.getKey())).append(": {");
+            String inner = "";
+            for (Map.Entry<String, String> stat : stats.getValue().entrySet()) {
+                json.append(inner).append(quote(stat.getKey())).append(": ").append(quote(stat.getValue()));
+                inner = ", ";
+            }
+            json.append('}');
+            sep = ",";
+        }
+        json.append("\n  }\n}\n");
+
+        Path reportPath = Paths.get(options.get("report"));
+        if (reportPath.getParent() != null) {
+            Files.createDirectories(reportPath.getParent());
+        }
+        try (Writer out = Files.newBufferedWriter(reportPath, StandardCharsets.UTF_8)) {
+            out.write(json.toString());
+        }
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%-10s %9s %7s %10s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<String, Summary> entry : summaries.entrySet()) {
+            entry.getValue().print(entry.getKey());
+        }
+        total.print("total");
+        System.out.println("Report written to " + reportPath.toAbsolutePath());
+        return total.requests == 0 ? 1.0 : (double) total.errors / total.requests;
+    }
+
+    /** Counts and percentiles over the merged samples of one endpoint (or all). */
+    private static final class Summary {
+        final long requests;
+        final long errors;
+        final double perSecond;
+        final double meanMs;
+        final double p50Ms;
+        final double p90Ms;
+        final double p99Ms;
+        final double p999Ms;
+        final double maxMs;
+
+        Summary(List<Samples> parts, double seconds) {
+            int count = 0;
+            long errorCount = 0;
+            for (Samples s : parts) {
+                count += s.count;
+                errorCount += s.errors;
+            }
+            long[] merged = new long[count];
+            int offset = 0;
+            long sum = 0;
+            for (Samples s : parts) {
+                System.arraycopy(s.nanos, 0, merged, offset, s.count);
+                offset += s.count;
+            }
+            Arrays.sort(merged);
+            for (long nanos : merged) {
+                sum += nanos;
+            }
+            requests = count;
+            errors = errorCount;
+            perSecond = count / seconds;
+            meanMs = count == 0 ? 0 : sum / (count * 1e6);
+            p50Ms = percentile(merged, 0.50);
+            p90Ms = percentile(merged, 0.90);
+            p99Ms = percentile(merged, 0.99);
+            p999Ms = percentile(merged, 0.999);
+            maxMs = count == 0 ? 0 : merged[count - 1] / 1e6;
+        }
+
+        // nearest rank
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(p * sorted.length);
+            return sorted[Math.max(0, rank - 1)] / 1e6;
+        }
+
+        String toJson() {
+            return "{\"requests\": " + requests + ", \"errors\": " + errors
+                    + ", \"requestsPerSecond\": " + format(perSecond)
+                    + ", \"meanMs\": " + format(meanMs) + ", \"p50Ms\": " + format(p50Ms)
+                    + ", \"p90Ms\": " + format(p90Ms) + ", \"p99Ms\": " + format(p99Ms)
+                    + ", \"p999Ms\": " + format(p999Ms) + ", \"maxMs\": " + format(maxMs) + "}";
+        }
+
+        void print(String name) {
+            System.out.printf(Locale.ROOT, "%-10s %9d %7d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    name, requests, errors, perSecond, p50Ms, p99Ms, p999Ms, maxMs);
+        }
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger number = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + number.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
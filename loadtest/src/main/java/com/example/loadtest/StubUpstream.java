@@ -0,0 +1,94 @@
+package com.example.loadtest;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The upstream /http-action relays to during a load test: GET /item/{n}
+ * answers a small JSON document after {@code delayMillis}. With
+ * {@code maxAgeSeconds} of 0 or more the answers carry that max-age and an
+ * ETag, so HttpActionServlet's cache takes part; below 0 they are no-store
+ * and every request goes through.
+ */
+public class StubUpstream implements AutoCloseable {
+
+    static {
+        // The JDK server leaves Nagle on, and its small replies then wait out the client's delayed
+        // ACK, about 40 ms each; that would be measured as /http-action latency. The property is
+        // read once, when the first server is created, so it has to be set before then.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requests = new AtomicLong();
+
+    public StubUpstream(long delayMillis, int maxAgeSeconds) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(32, r -> {
+            Thread t = new Thread(r, "stub-upstream-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+
+        StringBuilder padding = new StringBuilder();
+        while (padding.length() < 512) {
+            padding.append("lorem ipsum ");
+        }
+        String filler = padding.toString();
+
+        server.createContext("/item/", exchange -> {
+            requests.incrementAndGet();
+            try {
+                if (delayMillis > 0) {
+                    Thread.sleep(delayMillis);
+                }
+                String item = exchange.getRequestURI().getPath().substring("/item/".length());
+                byte[] body = ("{\"item\":\"" + item + "\",\"description\":\"" + filler + "\"}")
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                if (maxAgeSeconds >= 0) {
+                    exchange.getResponseHeaders().set("Cache-Control", "max-age=" + maxAgeSeconds);
+                    exchange.getResponseHeaders().set("ETag", "\"" + item + "\"");
+                } else {
+                    exchange.getResponseHeaders().set("Cache-Control", "no-store");
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException e) {
+                exchange.sendResponseHeaders(503, -1);
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    public String itemUrl(int item) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/item/" + item;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
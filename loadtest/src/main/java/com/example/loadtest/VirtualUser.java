@@ -0,0 +1,178 @@
+package com.example.loadtest;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One simulated browser: its own session cookie, looping over requests
+ * picked at random by the configured mix until the run ends. Latencies go
+ * into its own {@link LoadTest.Samples}, so threads never contend on them.
+ */
+class VirtualUser implements Runnable {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final String BOUNDARY = "----loadtest-boundary-7MA4YWxkTrZu0gW";
+
+    private final int id;
+    private final LoadTest test;
+    private final HttpClient client;
+    private final Map<LoadTest.Endpoint, LoadTest.Samples> samples = new EnumMap<>(LoadTest.Endpoint.class);
+    private final byte[] resumeUpload;
+    private final Map<String, String> cookies = new LinkedHashMap<>();
+    private long registered;
+
+    VirtualUser(int id, LoadTest test, HttpClient client) {
+        this.id = id;
+        this.test = test;
+        this.client = client;
+        for (LoadTest.Endpoint endpoint : LoadTest.Endpoint.values()) {
+            samples.put(endpoint, new LoadTest.Samples());
+        }
+        this.resumeUpload = multipart(resumeXml(id));
+    }
+
+    Map<LoadTest.Endpoint, LoadTest.Samples> getSamples() {
+        return samples;
+    }
+
+    @Override
+    public void run() {
+        try {
+            // every user needs a session before it can upload
+            boolean loggedIn;
+            try {
+                loggedIn = login(id % test.users);
+            } catch (IOException e) {
+                loggedIn = false;
+            }
+            if (!loggedIn) {
+                System.err.println("user " + id + " could not log in; uploads will fail");
+            }
+            while (test.running) {
+                LoadTest.Endpoint endpoint = test.pick(ThreadLocalRandom.current().nextInt(test.mixTotal));
+                boolean measured = test.measuring;
+                long start = System.nanoTime();
+                boolean ok;
+                try {
+                    ok = call(endpoint);
+                } catch (IOException e) {
+                    ok = false;
+                }
+                if (measured && test.measuring) {
+                    samples.get(endpoint).add(System.nanoTime() - start, ok);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean call(LoadTest.Endpoint endpoint) throws IOException, InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (endpoint) {
+            case LOGIN:
+                return login(random.nextInt(test.users));
+            case REGISTER:
+                return register("lt-" + id + "-" + registered++);
+            case UPLOAD: {
+                HttpResponse<Void> response = send(HttpRequest.newBuilder(test.uri("/upload-resume"))
+                        .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(resumeUpload)), HttpResponse.BodyHandlers.discarding());
+                return redirectsTo(response, "upload=success");
+            }
+            case HTTP: {
+                String url = test.upstream.itemUrl(random.nextInt(test.upstreamItems));
+                HttpResponse<String> response = send(HttpRequest.newBuilder(
+                        test.uri("/http-action?url=" + URLEncoder.encode(url, StandardCharsets.UTF_8))).GET(),
+                        HttpResponse.BodyHandlers.ofString());
+                return response.statusCode() == 200 && response.body().startsWith("GET Response Code :: 200");
+            }
+            default:
+                throw new IllegalArgumentException(endpoint.name());
+        }
+    }
+
+    boolean register(String username) throws IOException, InterruptedException {
+        HttpResponse<Void> response = send(form("/register", "username", username, "password", password(username),
+                "name", "Load Test " + username, "email", username + "@example.com"), HttpResponse.BodyHandlers.discarding());
+        return redirectsTo(response, "login.jsp");
+    }
+
+    private boolean login(int user) throws IOException, InterruptedException {
+        String username = LoadTest.seededUsername(user);
+        HttpResponse<Void> response = send(form("/login", "username", username, "password", password(username)),
+                HttpResponse.BodyHandlers.discarding());
+        return redirectsTo(response, "dashboard.jsp");
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest.Builder request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        request.timeout(TIMEOUT);
+        if (!cookies.isEmpty()) {
+            request.header("Cookie", String.join("; ", cookies.values()));
+        }
+        HttpResponse<T> response = client.send(request.build(), handler);
+        // whichever session cookie the webapp uses (JSESSIONID, or the session store's own)
+        for (String cookie : response.headers().allValues("Set-Cookie")) {
+            int end = cookie.indexOf(';');
+            String pair = end < 0 ? cookie : cookie.substring(0, end);
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                cookies.put(pair.substring(0, eq), pair);
+            }
+        }
+        return response;
+    }
+
+    private HttpRequest.Builder form(String path, String... namesAndValues) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (body.length() > 0) {
+                body.append('&');
+            }
+            body.append(namesAndValues[i]).append('=')
+                    .append(URLEncoder.encode(namesAndValues[i + 1], StandardCharsets.UTF_8));
+        }
+        return HttpRequest.newBuilder(test.uri(path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()));
+    }
+
+    private static boolean redirectsTo(HttpResponse<?> response, String target) {
+        return response.statusCode() == 302
+                && response.headers().firstValue("Location").map(l -> l.contains(target)).orElse(false);
+    }
+
+    static String password(String username) {
+        return "pw-" + username;
+    }
+
+    private static String resumeXml(int id) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<resumes>\n");
+        for (int i = 0; i < 5; i++) {
+            xml.append("  <resume><name>Candidate ").append(id).append('-').append(i).append("</name>")
+                    .append("<email>candidate").append(i).append("@example.com</email>")
+                    .append("<phone>555-01").append(i).append("</phone></resume>\n");
+        }
+        return xml.append("</resumes>\n").toString();
+    }
+
+    private static byte[] multipart(String xml) {
+        String body = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"resume\"; filename=\"resume.xml\"\r\n"
+                + "Content-Type: text/xml\r\n\r\n"
+                + xml + "\r\n"
+                + "--" + BOUNDARY + "--\r\n";
+        return body.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,276 @@
+package com.example.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prepared statements of one connection, kept by SQL text and reused, least
+ * recently used evicted first.
+ *
+ * {@link #prepare} hands out a proxy; closing it closes any result set it
+ * returned, clears the parameters and puts the statement back instead of
+ * closing it. So code written as prepare / bind / execute / close
+ * only pays for parsing (and, with useServerPrepStmts=true on MySQL, the
+ * server-side prepare) the first time a connection sees a query.
+ *
+ * A statement is lent to one caller at a time. Preparing the same SQL again
+ * while it is out gets a plain, uncached statement. Callers may change the
+ * fetch size and direction; those are reset on return. Changing any other
+ * statement-level setting (max rows, timeout, ...) drops the statement from
+ * the cache when it is closed.
+ */
+public class StatementCache implements AutoCloseable {
+
+    /** Counters shared by all the caches of one pool. */
+    public static final class Stats {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+
+        public long getHitCount() {
+            return hits.get();
+        }
+
+        public long getMissCount() {
+            return misses.get();
+        }
+
+        public long getEvictionCount() {
+            return evictions.get();
+        }
+
+        public double getHitRate() {
+            long h = hits.get();
+            long total = h + misses.get();
+            return total == 0 ? 0.0 : (double) h / total;
+        }
+    }
+
+    private final Connection conn;
+    private final int maxSize;
+    private final Stats stats;
+    private final Map<String, Cached> entries;
+    private final List<Lease> out = new ArrayList<>();
+    private boolean closed;
+
+    public StatementCache(Connection conn, int maxSize, Stats stats) {
+        this.conn = conn;
+        this.maxSize = maxSize;
+        this.stats = stats;
+        this.entries = new LinkedHashMap<String, Cached>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                if (size() <= StatementCache.this.maxSize) {
+                    return false;
+                }
+                stats.evictions.incrementAndGet();
+                eldest.getValue().evicted = true;
+                if (!eldest.getValue().inUse) {
+                    closeQuietly(eldest.getValue().stmt);
+                }
+                return true;
+            }
+        };
+    }
+
+    public PreparedStatement prepare(String sql) throws SQLException {
+        synchronized (this) {
+            Cached entry = entries.get(sql);
+            if (entry != null && !entry.inUse) {
+                stats.hits.incrementAndGet();
+                entry.inUse = true;
+                return lend(entry, entry.stmt);
+            }
+        }
+        stats.misses.incrementAndGet();
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        synchronized (this) {
+            if (maxSize <= 0 || closed || entries.containsKey(sql)) {
+                return lend(null, stmt);
+            }
+            Cached entry = new Cached(sql, stmt);
+            entry.inUse = true;
+            entries.put(sql, entry);
+            return lend(entry, stmt);
+        }
+    }
+
+    private PreparedStatement lend(Cached entry, PreparedStatement stmt) {
+        Lease lease = new Lease(entry, stmt);
+        out.add(lease);
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                lease);
+    }
+
+    /** Takes back every statement still lent out, as if its borrower had closed it. */
+    public void releaseAll() {
+        List<Lease> leases;
+        synchronized (this) {
+            leases = new ArrayList<>(out);
+        }
+        for (Lease lease : leases) {
+            lease.release();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Closes the cached statements; the connection itself is left alone. */
+    @Override
+    public void close() {
+        List<Cached> cached;
+        synchronized (this) {
+            closed = true;
+            cached = new ArrayList<>(entries.values());
+            entries.clear();
+        }
+        for (Cached entry : cached) {
+            if (!entry.inUse) {
+                closeQuietly(entry.stmt);
+            }
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            // closing anyway
+        }
+    }
+
+    private static final class Cached {
+        final String sql;
+        final PreparedStatement stmt;
+        boolean inUse;
+        boolean evicted;
+
+        Cached(String sql, PreparedStatement stmt) {
+            this.sql = sql;
+            this.stmt = stmt;
+        }
+    }
+
+    // One loan of a statement; a fresh proxy per loan so a stale reference cannot touch the next borrower's
+    private final class Lease implements InvocationHandler {
+        private final Cached entry;
+        private final PreparedStatement stmt;
+        private List<ResultSet> resultSets;
+        private boolean resetFetch;
+        private boolean dirty;
+        private boolean returned;
+
+        Lease(Cached entry, PreparedStatement stmt) {
+            this.entry = entry;
+            this.stmt = stmt;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    release();
+                    return null;
+                case "isClosed":
+                    return returned || stmt.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached[" + stmt + "]";
+                case "setFetchSize":
+                case "setFetchDirection":
+                    resetFetch = true;
+                    break;
+                case "setMaxRows":
+                case "setLargeMaxRows":
+                case "setMaxFieldSize":
+                case "setQueryTimeout":
+                case "setEscapeProcessing":
+                case "setCursorName":
+                case "setPoolable":
+                case "closeOnCompletion":
+                    dirty = true;
+                    break;
+                default:
+                    break;
+            }
+            synchronized (this) {
+                if (returned) {
+                    throw new SQLException("Statement is closed");
+                }
+            }
+            try {
+                Object result = method.invoke(stmt, args);
+                if (result instanceof ResultSet) {
+                    if (resultSets == null) {
+                        resultSets = new ArrayList<>(1);
+                    }
+                    resultSets.add((ResultSet) result);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        void release() {
+            synchronized (this) {
+                if (returned) {
+                    return;
+                }
+                returned = true;
+            }
+            boolean keep = entry != null && !dirty;
+            try {
+                if (resultSets != null) {
+                    for (ResultSet rs : resultSets) {
+                        rs.close();
+                    }
+                }
+                if (keep) {
+                    stmt.clearParameters();
+                    stmt.clearBatch();
+                    if (resetFetch) {
+                        stmt.setFetchDirection(ResultSet.FETCH_FORWARD);
+                        stmt.setFetchSize(0);
+                    }
+                }
+            } catch (SQLException e) {
+                keep = false;
+            }
+
+            synchronized (StatementCache.this) {
+                out.remove(this);
+                if (entry != null) {
+                    entry.inUse = false;
+                    if (!keep && !entry.evicted) {
+                        entries.remove(entry.sql);
+                        entry.evicted = true;
+                    }
+                    keep = keep && !entry.evicted && !closed;
+                }
+            }
+            if (!keep) {
+                closeQuietly(stmt);
+            }
+        }
+    }
+}